@@ -0,0 +1,75 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator reading the elements of an ordered source in chunks of a fixed size.
+ * The next chunk is requested with the last element of the previous chunk as key,
+ * so that elements removed from or added to the source in the meantime do not shift the iteration.
+ * At most one chunk is held in memory.
+ *
+ * {@link DataWrapper}
+ */
+public abstract class ChunkedIterator<T> implements Iterator<T> {
+	private final int chunkSize;
+	private List<T> chunk;
+	private int index;
+	private T last;
+	private boolean isExhausted;
+
+	/**
+	 * Creates an iterator.
+	 * @param chunkSize Maximum number of elements read at once. Has to be positive.
+	 */
+	protected ChunkedIterator(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("The chunk size has to be positive.");
+		}
+		this.chunkSize = chunkSize;
+		this.chunk = Collections.emptyList();
+		this.index = 0;
+		this.last = null;
+		this.isExhausted = false;
+	}
+
+	/**
+	 * Reads the next chunk of elements.
+	 * @param last Last element of the previous chunk or <code>null</code> to read the first chunk.
+	 * @param chunkSize Maximum number of elements to read.
+	 * @return Elements following the given one in the order of the source. If less than <code>chunkSize</code> elements are returned, the iteration ends.
+	 */
+	protected abstract List<T> readChunk(T last, int chunkSize);
+
+	@Override
+	public boolean hasNext() {
+		if (index < chunk.size()) {
+			return true;
+		}
+		if (isExhausted) {
+			return false;
+		}
+		chunk = readChunk(last, chunkSize);
+		index = 0;
+		if (chunk.size() < chunkSize) {
+			isExhausted = true;
+		}
+		return !chunk.isEmpty();
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		last = chunk.get(index++);
+		return last;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Elements cannot be removed through the iterator.");
+	}
+}
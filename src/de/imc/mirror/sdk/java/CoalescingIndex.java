@@ -0,0 +1,107 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Index of pending data objects in which a newer object replaces an older one describing the same state.
+ * An object supersedes a pending object if both have the same namespace and CDM custom identifier,
+ * or if it updates the pending object, i.e., refers to its identifier in the CDM <code>updates</code> attribute.
+ * A replacing object takes over the position of the replaced one. Objects are returned in insertion order.
+ * The index is not synchronized.
+ *
+ * {@link DataHandler}
+ */
+public class CoalescingIndex<V> {
+	private final LinkedHashMap<String, V> values; // <coalescing key, value>
+	private final Map<String, String> keys; // <data object id, coalescing key>
+	private final Map<String, String> objectIds; // <coalescing key, data object id>
+	private long uniqueKeyCount;
+	
+	/**
+	 * Creates an empty index.
+	 */
+	public CoalescingIndex() {
+		values = new LinkedHashMap<String, V>();
+		keys = new HashMap<String, String>();
+		objectIds = new HashMap<String, String>();
+		uniqueKeyCount = 0;
+	}
+	
+	/**
+	 * Adds a value for a data object.
+	 * If a pending value is superseded by the data object, it is replaced.
+	 * @param header Header of the data object.
+	 * @param value Value to add.
+	 * @return Replaced value or <code>null</code> if no value was superseded.
+	 */
+	public V put(DataObjectHeader header, V value) {
+		String key = null;
+		String updates = header.getUpdates();
+		if (updates != null) {
+			key = keys.get(updates);
+		}
+		if (key == null && header.getCustomId() != null) {
+			key = "custom " + header.getNamespaceURI() + " " + header.getCustomId();
+		}
+		if (key == null) {
+			key = "#" + uniqueKeyCount++;
+		}
+		V replaced = values.put(key, value);
+		String replacedObjectId = objectIds.remove(key);
+		if (replacedObjectId != null) {
+			keys.remove(replacedObjectId);
+		}
+		String objectId = header.getId();
+		if (objectId != null) {
+			keys.put(objectId, key);
+			objectIds.put(key, objectId);
+		}
+		return replaced;
+	}
+	
+	/**
+	 * Removes and returns the oldest pending value.
+	 * @return Value or <code>null</code> if the index is empty.
+	 */
+	public V poll() {
+		Iterator<Map.Entry<String, V>> iterator = values.entrySet().iterator();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		Map.Entry<String, V> entry = iterator.next();
+		iterator.remove();
+		String objectId = objectIds.remove(entry.getKey());
+		if (objectId != null) {
+			keys.remove(objectId);
+		}
+		return entry.getValue();
+	}
+	
+	/**
+	 * Returns the number of pending values.
+	 * @return Number of values.
+	 */
+	public int size() {
+		return values.size();
+	}
+	
+	/**
+	 * Checks if no value is pending.
+	 * @return <code>true</code> if the index is empty, otherwise <code>false</code>.
+	 */
+	public boolean isEmpty() {
+		return values.isEmpty();
+	}
+	
+	/**
+	 * Removes all pending values.
+	 */
+	public void clear() {
+		values.clear();
+		keys.clear();
+		objectIds.clear();
+	}
+}
@@ -14,9 +14,19 @@ public class ConnectionConfiguration implements
 	private String applicationID;
 	private boolean isSecureConnection;
 	private boolean selfSignedCertificateEnabled;
+	private int maxPendingPublishes;
+	private int maxPendingPublishesPerSpace;
+	private double maxPublishRate;
 
 	protected ConnectionConfiguration(String domain, String host, int port, int timeout,
 							String applicationID, boolean isSecureConnection, boolean selfSigned){
+		this(domain, host, port, timeout, applicationID, isSecureConnection, selfSigned,
+				ConnectionConfigurationBuilder.DEFAULT_MAX_PENDING_PUBLISHES, ConnectionConfigurationBuilder.DEFAULT_MAX_PENDING_PUBLISHES_PER_SPACE, 0);
+	}
+	
+	protected ConnectionConfiguration(String domain, String host, int port, int timeout,
+							String applicationID, boolean isSecureConnection, boolean selfSigned,
+							int maxPendingPublishes, int maxPendingPublishesPerSpace, double maxPublishRate){
 		this.domain = domain;
 		this.host = host;
 		this.port = port;
@@ -24,6 +34,9 @@ public class ConnectionConfiguration implements
 		this.applicationID = applicationID;
 		this.isSecureConnection = isSecureConnection;
 		this.selfSignedCertificateEnabled = selfSigned;
+		this.maxPendingPublishes = maxPendingPublishes;
+		this.maxPendingPublishesPerSpace = maxPendingPublishesPerSpace;
+		this.maxPublishRate = maxPublishRate;
 	}
 	
 	/**
@@ -95,5 +108,32 @@ public class ConnectionConfiguration implements
 	public int requestTimeout() {
 		return timeout;
 	}
+	
+	/**
+	 * Returns the maximum number of unacknowledged publish requests for the connection.
+	 * Defaults to 64.
+	 * @return Maximum number of pending publish requests.
+	 */
+	public int getMaxPendingPublishes() {
+		return maxPendingPublishes;
+	}
+	
+	/**
+	 * Returns the maximum number of unacknowledged publish requests for a single space.
+	 * Defaults to 16.
+	 * @return Maximum number of pending publish requests per space.
+	 */
+	public int getMaxPendingPublishesPerSpace() {
+		return maxPendingPublishesPerSpace;
+	}
+	
+	/**
+	 * Returns the maximum number of publish requests sent per second to a pubsub service.
+	 * Defaults to 0, i.e., the rate is only limited by the adaptive flow control.
+	 * @return Maximum publish rate in requests per second, or <code>0</code> if not limited.
+	 */
+	public double getMaxPublishRate() {
+		return maxPublishRate;
+	}
 
 }
@@ -10,6 +10,8 @@ public class ConnectionConfigurationBuilder {
 	private static final boolean DEFAULT_SECURE_CONNECTION = true;
 	private static final boolean DEFAULT_ALLOW_SELFSIGNED_CERTS = true;
 	private static final int DEFAULT_TIMEOUT = 2000;
+	static final int DEFAULT_MAX_PENDING_PUBLISHES = 64;
+	static final int DEFAULT_MAX_PENDING_PUBLISHES_PER_SPACE = 16;
 	
 	private String domain;
 	private String host;
@@ -18,6 +20,9 @@ public class ConnectionConfigurationBuilder {
 	private String applicationID;
 	private boolean isSecureConnection;
 	private boolean selfSignedCertificateEnabled;
+	private int maxPendingPublishes;
+	private int maxPendingPublishesPerSpace;
+	private double maxPublishRate;
 	
 	/**
 	 * Creates the builder with default values.
@@ -29,6 +34,9 @@ public class ConnectionConfigurationBuilder {
 		isSecureConnection = DEFAULT_SECURE_CONNECTION;
 		selfSignedCertificateEnabled = DEFAULT_ALLOW_SELFSIGNED_CERTS;
 		timeout = DEFAULT_TIMEOUT;
+		maxPendingPublishes = DEFAULT_MAX_PENDING_PUBLISHES;
+		maxPendingPublishesPerSpace = DEFAULT_MAX_PENDING_PUBLISHES_PER_SPACE;
+		maxPublishRate = 0;
 		this.domain = domain;
 		this.applicationID = applicationID;
 	}
@@ -107,6 +115,42 @@ public class ConnectionConfigurationBuilder {
 		return this;
 	}
 	
+	/**
+	 * Sets the maximum number of unacknowledged publish requests for the connection.
+	 * When the limit is reached, asynchronous publish calls block until a pending request is acknowledged.
+	 * The limit also caps the adaptive window of each pubsub service.
+	 * If not set, 64 requests are allowed.
+	 * @param maxPendingPublishes Maximum number of pending publish requests. Has to be positive.
+	 * @return Builder instance.
+	 */
+	public ConnectionConfigurationBuilder setMaxPendingPublishes(int maxPendingPublishes) {
+		this.maxPendingPublishes = maxPendingPublishes;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of unacknowledged publish requests for a single space.
+	 * If not set, 16 requests are allowed.
+	 * @param maxPendingPublishesPerSpace Maximum number of pending publish requests per space. Has to be positive.
+	 * @return Builder instance.
+	 */
+	public ConnectionConfigurationBuilder setMaxPendingPublishesPerSpace(int maxPendingPublishesPerSpace) {
+		this.maxPendingPublishesPerSpace = maxPendingPublishesPerSpace;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of publish requests sent per second to a pubsub service.
+	 * The send rate is adapted to the measured round-trip times and errors, but never exceeds this limit.
+	 * If not set, the rate is only limited by the adaptive flow control.
+	 * @param maxPublishRate Maximum publish rate in requests per second, or <code>0</code> for no limit.
+	 * @return Builder instance.
+	 */
+	public ConnectionConfigurationBuilder setMaxPublishRate(double maxPublishRate) {
+		this.maxPublishRate = maxPublishRate;
+		return this;
+	}
+	
 	/**
 	 * Builds an connection configuration object based on the given settings.
 	 * @return Connection configuration object.
@@ -125,7 +169,14 @@ public class ConnectionConfigurationBuilder {
 		} else if (!isHostSet && isDomainSet){
 			host = domain;
 		}
-		return new ConnectionConfiguration(domain, host, port, timeout, applicationID, isSecureConnection, selfSignedCertificateEnabled);
+		if (maxPendingPublishes < 1 || maxPendingPublishesPerSpace < 1) {
+			throw new IllegalStateException("The maximum numbers of pending publish requests have to be positive.");
+		}
+		if (maxPublishRate < 0) {
+			throw new IllegalStateException("The maximum publish rate must not be negative.");
+		}
+		return new ConnectionConfiguration(domain, host, port, timeout, applicationID, isSecureConnection, selfSignedCertificateEnabled,
+				maxPendingPublishes, maxPendingPublishesPerSpace, maxPublishRate);
 	}
 
 }
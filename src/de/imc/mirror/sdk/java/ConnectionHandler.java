@@ -36,6 +36,7 @@ import de.imc.mirror.sdk.UserInfo;
 import de.imc.mirror.sdk.config.NamespaceConfig;
 import de.imc.mirror.sdk.exceptions.ConnectionStatusException;
 import de.imc.mirror.sdk.exceptions.EntityExistsException;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 /**
  * Java implementation of the connection handler interface.
@@ -91,7 +92,7 @@ public class ConnectionHandler implements de.imc.mirror.sdk.ConnectionHandler, C
 				if (pendingIQRequests.containsKey(packet.getPacketID())){
 					RequestFuture<Element> iqFuture = pendingIQRequests.get(packet.getPacketID());
 					pendingIQRequests.remove(packet.getPacketID());
-					SAXBuilder reader = new SAXBuilder();
+					SAXBuilder reader = XMLCodec.getBuilder();
 					Document document = null;
 					try {
 						document = reader.build(new StringReader(packet.toXML()));
@@ -232,7 +233,7 @@ public class ConnectionHandler implements de.imc.mirror.sdk.ConnectionHandler, C
 				public String getChildElementXML() {
 					Element childElement = new Element("spaces", NamespaceConfig.SPACES_SERVICE);
 					childElement.addContent(new Element("version", NamespaceConfig.SPACES_SERVICE));
-					XMLOutputter out = new XMLOutputter();
+					XMLOutputter out = XMLCodec.getOutputter();
 					return out.outputString(childElement);
 				}
 			};
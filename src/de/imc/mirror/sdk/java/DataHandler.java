@@ -3,15 +3,28 @@ package de.imc.mirror.sdk.java;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,13 +33,13 @@ import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
 import org.jdom2.output.XMLOutputter;
-import org.jivesoftware.smack.PacketInterceptor;
 import org.jivesoftware.smack.PacketListener;
 import org.jivesoftware.smack.XMPPConnection;
 import org.jivesoftware.smack.XMPPException;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.IQ;
 import org.jivesoftware.smack.packet.Packet;
+import org.jivesoftware.smack.packet.PacketExtension;
 import org.jivesoftware.smack.packet.XMPPError;
 import org.jivesoftware.smackx.pubsub.ItemPublishEvent;
 import org.jivesoftware.smackx.pubsub.ItemsExtension;
@@ -35,10 +48,12 @@ import org.jivesoftware.smackx.pubsub.Node;
 import org.jivesoftware.smackx.pubsub.PayloadItem;
 import org.jivesoftware.smackx.pubsub.PubSubElementType;
 import org.jivesoftware.smackx.pubsub.PubSubManager;
+import org.jivesoftware.smackx.pubsub.PublishItem;
 import org.jivesoftware.smackx.pubsub.SimplePayload;
 import org.jivesoftware.smackx.pubsub.Subscription;
 import org.jivesoftware.smackx.pubsub.listener.ItemEventListener;
 import org.jivesoftware.smackx.pubsub.packet.PubSub;
+import org.xmlpull.v1.XmlPullParserException;
 
 import de.imc.mirror.sdk.ConnectionStatus;
 import de.imc.mirror.sdk.ConnectionStatusListener;
@@ -58,10 +73,14 @@ import de.imc.mirror.sdk.exceptions.SpaceManagementException;
 import de.imc.mirror.sdk.exceptions.SpaceManagementException.Type;
 import de.imc.mirror.sdk.exceptions.UnknownEntityException;
 import de.imc.mirror.sdk.java.exceptions.RequestException;
+import de.imc.mirror.sdk.java.filter.EnvelopeFilter;
+import de.imc.mirror.sdk.java.packet.DataObjectPayload;
 import de.imc.mirror.sdk.java.packet.DeleteRequestIQ;
 import de.imc.mirror.sdk.java.packet.DeleteResponseIQ;
 import de.imc.mirror.sdk.java.packet.QueryRequestIQ;
 import de.imc.mirror.sdk.java.packet.QueryResponseIQ;
+import de.imc.mirror.sdk.java.xml.DataObjectReader;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 
 /**
@@ -72,20 +91,58 @@ import de.imc.mirror.sdk.java.packet.QueryResponseIQ;
  * @author mach
  *
  */
-public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHandler, ItemEventListener<PayloadItem<SimplePayload>> {
+public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHandler, ItemEventListener<PayloadItem<PacketExtension>> {
 	
 	private static final Logger logger = Logger.getLogger(DataHandler.class.getName());
 	
+	private static final ScheduledExecutorService publishTimeoutScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "DataHandler-PublishTimeout");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private static final ExecutorService replayExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "DataHandler-OutboxReplay");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private static final int REPLAY_CHECKPOINT_INTERVAL = 100;
+	
+	private static final ExecutorService coalescingExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "DataHandler-CoalescingPublisher");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
 	private int timeout = 2000;
 	private ConnectionHandler connectionHandler;
 	private XMPPConnection connection;
+	private volatile QueryStreamRouter queryRouter;
 	private ConnectionStatusListener connectionStatusListener;
 	private boolean isConnectionResetted;
 	private SpaceHandler spaceHandler;
 	private de.imc.mirror.sdk.UserInfo userInfo;
-	private List<DataObjectListener> listeners;
+	private ListenerRegistry listeners;
+	private volatile DataObjectDispatcher dispatcher;
+	private volatile DataObjectCache queryCache;
+	private QueryDeduplicator queryDeduplicator;
 	private DataWrapper datawrapper;
 	private List<Space> handledSpaces;
+	private Map<String, NodeRoute> nodeRoutes; // <pubsub node id, route>
+	private PublishTargetCache publishTargets;
+	private Map<String, RequestFuture<DataObject>> pendingRetrievals; // <pubsub item id, request>
+	private Set<LeafNode> retrievalNodes;
+	private ItemEventListener<PayloadItem<PacketExtension>> retrievalListener;
 	private Mode userWantedMode;
 	private Mode realMode;
 	
@@ -93,12 +150,21 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	
 
 	private Map<String, RequestFuture<IQ>> pendingPersistenceServiceQueries;
-	private Map<String, RequestFuture<List<PayloadItem<SimplePayload>>>> pendingPayloadRequests;
-	private Map<String, RequestFuture<IQ>> pendingPublishingRequests; // <pubsub item id, request>
-	private Map<String, String> publishIdMap; // <iq packet id, pubsub item id>
+	private Map<String, PayloadRequest> pendingPayloadRequests; // <iq packet id, request>
+	private Map<String, String> pendingPayloadItems; // <pubsub item id, iq packet id>
+	private Map<String, RequestFuture<IQ>> pendingPublishingRequests; // <iq packet id, request>
+	private volatile PublishWindow publishWindow;
+	private ConcurrentMap<String, PublishFlowController> flowControllers; // <pubsub service, controller>
+	private volatile int maxItemsPerPublish = 1;
+	private volatile int streamCapacity = 100;
+	private volatile boolean isCoalescingEnabled = false;
+	private ConcurrentMap<String, CoalescingQueue> coalescingQueues; // <space id, queue>
+	private Map<String, CoalescingIndex<String>> outboxIndexes; // <space id, index of payload ids>
+	private AtomicLong supersededCount;
+	private AtomicBoolean isReplaying;
+	private volatile boolean isReplayRequested;
 	private Map<String, PacketListener> pubsubServiceListeners;
 	private Map<String, PubSubManager> pubsubManagers;
-	private PacketInterceptor pubsubInterceptor;
 	
 	private Map<String, PacketListener> persistenceServiceListeners;
 
@@ -119,24 +185,53 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		this.timeout = connectionHandler.getConfiguration().requestTimeout();
 		this.userWantedMode = Mode.OFFLINE;
 		this.connection = this.connectionHandler.getXMPPConnection();
-		this.listeners = new ArrayList<DataObjectListener>();
-		this.handledSpaces = new ArrayList<Space>();
+		this.queryRouter = QueryStreamRouter.getInstance(connection);
+		this.listeners = new ListenerRegistry();
+		this.dispatcher = new DataObjectDispatcher();
+		this.queryCache = new DataObjectCache();
+		this.queryDeduplicator = new QueryDeduplicator();
+		this.handledSpaces = new CopyOnWriteArrayList<Space>();
+		this.nodeRoutes = new ConcurrentHashMap<String, NodeRoute>();
+		this.publishTargets = new PublishTargetCache();
+		this.pendingRetrievals = new ConcurrentHashMap<String, RequestFuture<DataObject>>();
+		this.retrievalNodes = Collections.newSetFromMap(new ConcurrentHashMap<LeafNode, Boolean>());
+		this.retrievalListener = new ItemEventListener<PayloadItem<PacketExtension>>() {
+			@Override
+			public void handlePublishedItems(ItemPublishEvent<PayloadItem<PacketExtension>> event) {
+				if (pendingRetrievals.isEmpty()) {
+					return;
+				}
+				for (PayloadItem<PacketExtension> item : event.getItems()) {
+					RequestFuture<DataObject> retrievalFuture = pendingRetrievals.remove(item.getId());
+					if (retrievalFuture != null) {
+						retrievalFuture.setResponse(parseItemToDataObject(item));
+					}
+				}
+			}
+		};
 		this.datawrapper = DataWrapper.getInstance();
 		
-		this.pendingPayloadRequests = new HashMap<String, RequestFuture<List<PayloadItem<SimplePayload>>>>();
-		this.pendingPublishingRequests = new HashMap<String, RequestFuture<IQ>>();
-		this.pendingPersistenceServiceQueries = new HashMap<String, RequestFuture<IQ>>();
+		this.pendingPayloadRequests = new ConcurrentHashMap<String, PayloadRequest>();
+		this.pendingPayloadItems = new ConcurrentHashMap<String, String>();
+		this.pendingPublishingRequests = new ConcurrentHashMap<String, RequestFuture<IQ>>();
+		this.publishWindow = createPublishWindow(connectionHandler.getConfiguration());
+		this.flowControllers = new ConcurrentHashMap<String, PublishFlowController>();
+		this.coalescingQueues = new ConcurrentHashMap<String, CoalescingQueue>();
+		this.outboxIndexes = new HashMap<String, CoalescingIndex<String>>();
+		this.supersededCount = new AtomicLong();
+		this.isReplaying = new AtomicBoolean(false);
+		this.isReplayRequested = false;
+		this.pendingPersistenceServiceQueries = new ConcurrentHashMap<String, RequestFuture<IQ>>();
 		this.userInfo = this.connectionHandler.getCurrentUser();
 		this.dataObjectFilter = null;
 		
-		this.publishIdMap = new HashMap<String, String>();
-		
 		this.pubsubServiceListeners = new HashMap<String, PacketListener>();
 		this.persistenceServiceListeners = new HashMap<String, PacketListener>();
 		this.pubsubManagers = new HashMap<String, PubSubManager>();
-		
-		setPubSubPacketInterceptor();
+
 		setConnectionStatusListener();
+		
+		publishTargets.register(spaceHandler);
 	}
 	
 	private void setConnectionStatusListener() {
@@ -147,6 +242,7 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 				switch (newStatus) {
 				case OFFLINE:
 					isConnectionResetted = true;
+					queryRouter.reset();
 					break;
 				case ONLINE:
 					if (isConnectionResetted) {
@@ -156,13 +252,7 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 						}
 						isConnectionResetted = false;
 					}
-					try {
-						sendSavedPayloads();
-					} catch (UnknownEntityException e) {
-						logger.log(Level.WARNING, "An UnknownEntityException was thrown while trying to send saved payloads.", e);
-					} catch (InvalidDataException e) {
-						logger.log(Level.WARNING, "A cached data object could not be published as it was rejected.", e);
-					}
+					sendSavedPayloads();
 					break;
 				default:
 					// Do nothing.
@@ -204,16 +294,17 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		
 		PacketListener packetListener = new PacketListener() {
 
-			@SuppressWarnings("unchecked")
 			@Override
 			public void processPacket(Packet packet) {
 				String packetId = packet.getPacketID();
-				if (publishIdMap.containsKey(packetId)) {
-					pendingPublishingRequests.get(publishIdMap.get(packetId)).setResponse((IQ) packet);
-				} else if (pendingPayloadRequests.containsKey(packetId)) {
-					RequestFuture<List<PayloadItem<SimplePayload>>> spaceFuture = pendingPayloadRequests.get(packet.getPacketID());
-					ItemsExtension itemsElem = (ItemsExtension) ((PubSub)packet).getExtension(PubSubElementType.ITEMS);
-					spaceFuture.setResponse((List<PayloadItem<SimplePayload>>) itemsElem.getItems());
+				RequestFuture<IQ> publishFuture = pendingPublishingRequests.remove(packetId);
+				if (publishFuture != null) {
+					publishFuture.setResponse((IQ) packet);
+				} else {
+					PayloadRequest payloadRequest = pendingPayloadRequests.remove(packetId);
+					if (payloadRequest != null) {
+						handlePayloadResponse(payloadRequest, (IQ) packet);
+					}
 				}
 			}
 		};
@@ -267,6 +358,10 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 			@Override
 			public void processPacket(Packet packet) {
 				String packetId = packet.getPacketID();
+				queryRouter.complete(packetId);
+				if (packet instanceof QueryResponseIQ) {
+					queryRouter.bind(((QueryResponseIQ) packet).getSource());
+				}
 				if (pendingPersistenceServiceQueries.containsKey(packetId)) {
 					RequestFuture<IQ> iqFuture = (RequestFuture<IQ>) pendingPersistenceServiceQueries.get(packetId);
 					pendingPersistenceServiceQueries.remove(packetId);
@@ -294,36 +389,6 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		persistenceServiceListeners.remove(componentJID);
 	}
 	
-	/**
-	 * Registers a packet interceptor for pubsub publishing requests.
-	 * When a publishing request is intercepted, the related request future is complemented by the IQ packet id.
-	 */
-	private void setPubSubPacketInterceptor() {
-		PacketFilter packetFilter = new PacketFilter() {
-			@Override
-			public boolean accept(Packet packet) {
-				if (!(packet instanceof IQ)) return false;
-				IQ iqPacket = (IQ) packet;
-				if (iqPacket.getType() != IQ.Type.SET) return false; 
-				if (packet.getExtension(NamespaceConfig.XMPP_PUBSUB) == null) return false;
-				return true;
-			}
-		};
-		pubsubInterceptor = new PacketInterceptor() {
-			@Override
-			public void interceptPacket(Packet packet) {
-				IQ iq = (IQ) packet;
-				String childElement = iq.getChildElementXML();
-				for (String itemId : pendingPublishingRequests.keySet()) {
-					if (childElement.contains(itemId)) {
-						publishIdMap.put(iq.getPacketID(), itemId);
-					}
-				}
-			}
-		};
-		connection.addPacketInterceptor(pubsubInterceptor, packetFilter);
-	}
-
 	/**
 	 * Adds a listener for data objects published on any space handled by this handler.
 	 * @param listener Listener to add.
@@ -331,8 +396,20 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	 */
 	@Override
 	public void addDataObjectListener(DataObjectListener listener){
-		if (!listeners.contains(listener))
-			listeners.add(listener);
+		listeners.addListener(listener);
+	}
+	
+	/**
+	 * Adds a listener for a subset of the data objects published on the spaces handled by this handler.
+	 * The listener is only notified about data objects matching all given restrictions.
+	 * A listener may be added multiple times with different restrictions, it is notified once per data object.
+	 * @param listener Listener to add.
+	 * @param spaceId Identifier of the space to listen to. If <code>null</code>, data objects of all handled spaces are passed.
+	 * @param namespace Namespace of the data objects to listen to. If <code>null</code>, data objects of all namespaces are passed.
+	 * @param filter Filter the data objects have to pass. May be <code>null</code>.
+	 */
+	public void addDataObjectListener(DataObjectListener listener, String spaceId, String namespace, DataObjectFilter filter){
+		listeners.addListener(listener, spaceId, namespace, filter);
 	}
 	
 	/**
@@ -356,37 +433,53 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	}
 	
 	/**
-	 * Item handler of this data handler implementation. Checks if received items are already cached,
-	 * if not, it caches them. Ultimately it sends the items to the subscribed listeners.
+	 * Item handler of this data handler implementation. Applies the data object filter, starting with the
+	 * header of the items if the filter supports it. Checks if received items are already cached,
+	 * if not, it caches them. Ultimately it passes the items to the dispatcher, which notifies the subscribed listeners.
 	 */
 	@Override
-	public void handlePublishedItems(ItemPublishEvent<PayloadItem<SimplePayload>> items){
-		String spaceId = getSpaceId(items.getNodeId());
+	public void handlePublishedItems(ItemPublishEvent<PayloadItem<PacketExtension>> items){
+		final String spaceId = getSpaceId(items.getNodeId());
 		if (spaceId == null) return;
+		de.imc.mirror.sdk.DataObjectFilter filter = dataObjectFilter;
+		EnvelopeFilter envelopeFilter = filter instanceof EnvelopeFilter ? (EnvelopeFilter) filter : null;
 		List<String> toRequest = new ArrayList<String>();
-		for (PayloadItem<SimplePayload> item:items.getItems()){
-        	if (item.getPayload() == null && !pendingPayloadRequests.containsKey(item.getId())){
-        		toRequest.add(item.getId());
+		for (PayloadItem<PacketExtension> item:items.getItems()){
+        	if (item.getPayload() == null){
+        		if (!pendingPayloadItems.containsKey(item.getId())){
+        			toRequest.add(item.getId());
+        		}
         		continue;
         	}
-        	DataObject obj = parseItemToDataObject(item);
-        	if (dataObjectFilter == null || dataObjectFilter.isDataObjectValid(obj)) {
+        	DataObjectHeader header = item.getPayload() instanceof DataObjectPayload ? ((DataObjectPayload) item.getPayload()).getHeader() : null;
+        	if (header != null) {
+        		// An update invalidates the cached object, even if the update itself is filtered.
+        		invalidateUpdatedDataObject(header);
+        		if (envelopeFilter != null && !envelopeFilter.isEnvelopeValid(header)) {
+        			continue;
+        		}
+        	}
+        	final DataObject obj = parseItemToDataObject(item);
+        	if (header == null && obj instanceof de.imc.mirror.sdk.java.DataObject) {
+        		invalidateUpdatedDataObject(((de.imc.mirror.sdk.java.DataObject) obj).getHeader());
+        	}
+        	if (filter == null || filter.isDataObjectValid(obj)) {
 				if (!datawrapper.isDataObjectAlreadyCached(item.getId())){
 					datawrapper.saveDataObject(items.getNodeId(), obj, item.getId());
 				}
-				for (DataObjectListener listener:listeners){
-					listener.handleDataObject(obj, spaceId);
-				}
+				dispatcher.dispatch(spaceId, new Runnable() {
+					@Override
+					public void run() {
+						listeners.notifyListeners(obj, spaceId);
+					}
+				});
 			}
 		}
 		if (!toRequest.isEmpty()){
-			for (String id:toRequest){
-				try {
-					retrievePayload(items.getNodeId(), id);
-				} catch (Exception e) {
-					//Ignore
-					continue;
-				}
+			try {
+				retrievePayloads(items.getNodeId(), toRequest);
+			} catch (Exception e) {
+				logger.log(Level.WARNING, "Failed to request the payloads of " + toRequest.size() + " items of node " + items.getNodeId() + ".", e);
 			}
 		}
 	}
@@ -394,16 +487,11 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	/**
 	 * Gets the id of the space with the given nodeId.
 	 * @param nodeId The nodeId to look for.
-	 * @return A spaceId or <code>null</code> if no space was found.
+	 * @return A spaceId or <code>null</code> if no handled space was found.
 	 */
 	private String getSpaceId(String nodeId){
-		for (Space space:handledSpaces){
-			Map<String, String> prop = space.getPubSubChannel().getProperties();
-			if (prop.get("node").equals(nodeId)){
-				return space.getId();
-			}
-		}
-		return null;
+		NodeRoute route = nodeRoutes.get(nodeId);
+		return route != null ? route.getSpaceId() : null;
 	}
 
 	/**
@@ -420,7 +508,167 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		de.imc.mirror.sdk.java.DataObject obj = (de.imc.mirror.sdk.java.DataObject) object;
 		SimplePayload payload = new SimplePayload(obj.getElementName(), 
 				obj.getNamespaceURI(), obj.toString());
-		publish(spaceId, payload);
+		if (isCoalescingEnabled) {
+			waitForPublish(publishCoalesced(spaceId, obj.getHeader(), payload));
+		} else {
+			publish(spaceId, payload);
+		}
+	}
+	
+	/**
+	 * Publishes a data object on the space with the given id without waiting for the acknowledgement of the server.
+	 * The number of unacknowledged publish requests is limited for the connection and for each space.
+	 * If the limit is reached, the call blocks until a pending request is acknowledged.
+	 * ONLINE mode: The object is directly published on the related pubsub node. The returned future is completed when the server acknowledges the request.
+	 * OFFLINE mode: The object is stored locally and published when the connection is establised again. The returned future is already completed.
+	 * @param object Data object to publish.
+	 * @param spaceId Identifier if the space to publish.
+	 * @return Future completed with the pubsub item id when the server acknowledges the request.
+	 * Fails with an {@link InvalidDataException} if the data was rejected by the spaces service,
+	 * or with a {@link TimeoutException} if no acknowledgement is received within the request timeout.
+	 * @throws UnknownEntityException A space with the given id is not known to the space handler.
+	 */
+	public RequestFuture<String> publishDataObjectAsync(DataObject object, String spaceId) throws UnknownEntityException {
+		de.imc.mirror.sdk.java.DataObject obj = (de.imc.mirror.sdk.java.DataObject) object;
+		SimplePayload payload = new SimplePayload(obj.getElementName(), 
+				obj.getNamespaceURI(), obj.toString());
+		if (isCoalescingEnabled) {
+			return publishCoalesced(spaceId, obj.getHeader(), payload);
+		}
+		return publishAsync(spaceId, payload);
+	}
+	
+	/**
+	 * Publishes multiple data objects on the space with the given id without waiting for the acknowledgements of the server.
+	 * The data objects are sent in as few publish requests as allowed, each data object as an item with its own identifier.
+	 * See {@link #setMaxItemsPerPublish(int)}.
+	 * ONLINE mode: The objects are directly published on the related pubsub node. A future is completed when the server acknowledges the request containing the object.
+	 * OFFLINE mode: The objects are stored locally and published when the connection is establised again. The returned futures are already completed.
+	 * @param objects Data objects to publish.
+	 * @param spaceId Identifier if the space to publish.
+	 * @return List of futures in the iteration order of the given data objects. Each future is completed with the pubsub item id of the related object.
+	 * A future fails with an {@link InvalidDataException} if the request containing the object was rejected by the spaces service,
+	 * or with a {@link TimeoutException} if no acknowledgement is received within the request timeout.
+	 * @throws UnknownEntityException A space with the given id is not known to the space handler.
+	 */
+	public List<RequestFuture<String>> publishDataObjects(Collection<DataObject> objects, String spaceId) throws UnknownEntityException {
+		List<SimplePayload> payloads = new ArrayList<SimplePayload>(objects.size());
+		for (DataObject object : objects) {
+			de.imc.mirror.sdk.java.DataObject obj = (de.imc.mirror.sdk.java.DataObject) object;
+			payloads.add(new SimplePayload(obj.getElementName(), obj.getNamespaceURI(), obj.toString()));
+		}
+		if (payloads.isEmpty()) {
+			return new ArrayList<RequestFuture<String>>();
+		}
+		return publishAsync(spaceId, payloads);
+	}
+	
+	/**
+	 * Returns the maximum number of items sent in a single publish request.
+	 * @return Maximum number of items per publish request.
+	 */
+	public int getMaxItemsPerPublish() {
+		return maxItemsPerPublish;
+	}
+	
+	/**
+	 * Sets the maximum number of items sent in a single publish request.
+	 * XEP-0060 allows only a single item per publish request, so that larger values must only be set
+	 * if the pubsub service is known to accept publish requests with multiple items.
+	 * Defaults to 1.
+	 * @param maxItemsPerPublish Maximum number of items per publish request. Has to be positive.
+	 */
+	public void setMaxItemsPerPublish(int maxItemsPerPublish) {
+		if (maxItemsPerPublish < 1) {
+			throw new IllegalArgumentException("The maximum number of items per publish request has to be positive.");
+		}
+		this.maxItemsPerPublish = maxItemsPerPublish;
+	}
+	
+	/**
+	 * Checks if data objects are coalesced before they are published.
+	 * @return <code>true</code> if coalescing is enabled, otherwise <code>false</code>.
+	 */
+	public boolean isCoalescingEnabled() {
+		return isCoalescingEnabled;
+	}
+	
+	/**
+	 * Enables or disables the coalescing of data objects published with {@link #publishDataObject(DataObject, String)}
+	 * or {@link #publishDataObjectAsync(DataObject, String)}.
+	 * If enabled, a data object supersedes a data object of the same space which is not yet sent,
+	 * if both have the same namespace and custom identifier, or if it updates the pending data object.
+	 * ONLINE mode: Data objects are queued per space and sent whenever the publish window permits a request.
+	 * Only the latest data object of a superseded chain is published, the futures of the superseded data objects
+	 * are completed with the item id of the superseding one.
+	 * OFFLINE mode: A superseded data object is removed from the sendcache.
+	 * Disabled by default, as the spaces service may be expected to persist every state change.
+	 * @param isCoalescingEnabled <code>true</code> to enable coalescing, <code>false</code> to disable it.
+	 */
+	public void setCoalescingEnabled(boolean isCoalescingEnabled) {
+		this.isCoalescingEnabled = isCoalescingEnabled;
+	}
+	
+	/**
+	 * Returns the number of data objects which were not published because they were superseded by a newer data object.
+	 * @return Number of superseded data objects.
+	 */
+	public long getSupersededCount() {
+		return supersededCount.get();
+	}
+	
+	/**
+	 * Returns the number of publish requests which are not yet acknowledged by the server.
+	 * @return Number of pending publish requests of the connection.
+	 */
+	public int getPendingPublishCount() {
+		return publishWindow.getPendingCount();
+	}
+	
+	/**
+	 * Returns the number of publish requests for a space which are not yet acknowledged by the server.
+	 * @param spaceId Space identifier.
+	 * @return Number of pending publish requests for the space.
+	 */
+	public int getPendingPublishCount(String spaceId) {
+		return publishWindow.getPendingCount(spaceId);
+	}
+	
+	/**
+	 * Returns the flow controller for publish requests to the given pubsub service.
+	 * The controller provides the current window and send rate, which are adapted to the measured round-trip times and errors.
+	 * @param pubsubService JID of the pubsub service component, e.g. pubsub.mydomain.com.
+	 * @return Flow controller or <code>null</code> if no request was published to the service over the current connection.
+	 */
+	public PublishFlowController getPublishFlowController(String pubsubService) {
+		return flowControllers.get(pubsubService);
+	}
+	
+	private PublishFlowController getOrCreateFlowController(String pubsubService) {
+		PublishFlowController flowController = flowControllers.get(pubsubService);
+		if (flowController == null) {
+			de.imc.mirror.sdk.ConnectionConfiguration configuration = connectionHandler.getConfiguration();
+			int maxWindow = ConnectionConfigurationBuilder.DEFAULT_MAX_PENDING_PUBLISHES;
+			double maxRate = 0;
+			if (configuration instanceof ConnectionConfiguration) {
+				maxWindow = ((ConnectionConfiguration) configuration).getMaxPendingPublishes();
+				maxRate = ((ConnectionConfiguration) configuration).getMaxPublishRate();
+			}
+			PublishFlowController newFlowController = new PublishFlowController(maxWindow, maxRate, timeout);
+			flowController = flowControllers.putIfAbsent(pubsubService, newFlowController);
+			if (flowController == null) {
+				flowController = newFlowController;
+			}
+		}
+		return flowController;
+	}
+	
+	private static PublishWindow createPublishWindow(de.imc.mirror.sdk.ConnectionConfiguration configuration) {
+		if (configuration instanceof ConnectionConfiguration) {
+			ConnectionConfiguration config = (ConnectionConfiguration) configuration;
+			return new PublishWindow(config.getMaxPendingPublishes(), config.getMaxPendingPublishesPerSpace());
+		}
+		return new PublishWindow(ConnectionConfigurationBuilder.DEFAULT_MAX_PENDING_PUBLISHES, ConnectionConfigurationBuilder.DEFAULT_MAX_PENDING_PUBLISHES_PER_SPACE);
 	}
 	
 	/**
@@ -434,10 +682,28 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	 * @throws ConnectionStatusException The data handler has to be online in order to make a synchronous call.
 	 */
 	public DataObject publishAndRetrieveDataObject(DataObject dataObject, String spaceId) throws UnknownEntityException, InvalidDataException, ConnectionStatusException {
-		SimplePayload payload = new SimplePayload(dataObject.getElement().getName(), dataObject.getNamespaceURI(), dataObject.toString());
+		de.imc.mirror.sdk.java.DataObject obj = (de.imc.mirror.sdk.java.DataObject) dataObject;
+		SimplePayload payload = new SimplePayload(obj.getElementName(), obj.getNamespaceURI(), obj.toString());
 		return publishAndRetrieve(spaceId, payload);
 	}
 	
+	/**
+	 * Publishes a data object without waiting and returns a future for the object sent over the space.
+	 * Use this method to access fields set server-side like the data object identifier, timestamp, or publisher.
+	 * @param dataObject Data object to publish.
+	 * @param spaceId Identifier if the space to publish.
+	 * @return Future completed with the data object as published on the space.
+	 * Fails with an {@link InvalidDataException} if the data was rejected by the spaces service,
+	 * or with a {@link TimeoutException} if the published object is not received in time.
+	 * @throws UnknownEntityException A space with the given id is not known to the space handler.
+	 * @throws ConnectionStatusException The data handler has to be online in order to retrieve the published object.
+	 */
+	public RequestFuture<DataObject> publishAndRetrieveDataObjectAsync(DataObject dataObject, String spaceId) throws UnknownEntityException, ConnectionStatusException {
+		de.imc.mirror.sdk.java.DataObject obj = (de.imc.mirror.sdk.java.DataObject) dataObject;
+		SimplePayload payload = new SimplePayload(obj.getElementName(), obj.getNamespaceURI(), obj.toString());
+		return publishAndRetrieveAsync(spaceId, payload);
+	}
+	
 	/**
 	 * If online, the method publishs a payload.
 	 * If offline, it only saves the payload in the sendcache.
@@ -448,193 +714,613 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	 * @throws RequestException The request failed.
 	 */
 	private void publish(String spaceId, SimplePayload payload) throws UnknownEntityException, InvalidDataException, RequestException {
-		if (getMode() == Mode.ONLINE) {
+		waitForPublish(publishAsync(spaceId, payload));
+	}
+	
+	/**
+	 * Waits until a publish request is acknowledged.
+	 * @param publishFuture Future of the publish request.
+	 * @throws InvalidDataException The data was rejected by the spaces service.
+	 * @throws RequestException Waiting was interrupted or no response was received.
+	 */
+	private static void waitForPublish(RequestFuture<String> publishFuture) throws InvalidDataException, RequestException {
+		try {
+			publishFuture.get();
+		} catch (InterruptedException e){
+			throw new RequestException("Receiving a response was interrupted.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidDataException) {
+				throw (InvalidDataException) cause;
+			} else if (cause instanceof TimeoutException) {
+				throw new RequestException("Receiving a response timed out.", cause);
+			}
+			throw new RequestException("Couldn't receive a response.", cause);
+		}
+	}
+	
+	/**
+	 * If online, the method publishs a payload without waiting for the response.
+	 * If offline, it only saves the payload in the sendcache.
+	 * @param spaceId The id of the space to send the payload to.
+	 * @param payload The payload to send.
+	 * @return Future completed with the pubsub item id when the request is acknowledged.
+	 * @throws UnknownEntityException Thrown when given space id cannot be mapped.
+	 */
+	private RequestFuture<String> publishAsync(String spaceId, SimplePayload payload) throws UnknownEntityException {
+		return publishAsync(spaceId, Collections.singletonList(payload)).get(0);
+	}
+	
+	/**
+	 * If online, the method publishs the payloads without waiting for the responses.
+	 * The payloads are sent in as few publish requests as allowed by the maximum number of items per request.
+	 * If offline, it only saves the payloads in the sendcache.
+	 * @param spaceId The id of the space to send the payloads to.
+	 * @param payloads The payloads to send.
+	 * @return List of futures in the order of the given payloads. Each future is completed with the pubsub item id of the payload when the related request is acknowledged.
+	 * @throws UnknownEntityException Thrown when given space id cannot be mapped.
+	 */
+	private List<RequestFuture<String>> publishAsync(String spaceId, List<SimplePayload> payloads) throws UnknownEntityException {
+		List<RequestFuture<String>> publishFutures = new ArrayList<RequestFuture<String>>(payloads.size());
+		if (getMode() != Mode.ONLINE) {
+			for (SimplePayload payload : payloads) {
+				RequestFuture<String> publishFuture = new RequestFuture<String>();
+				publishFuture.setResponse(saveToOutbox(spaceId, null, payload));
+				publishFutures.add(publishFuture);
+			}
+			return publishFutures;
+		}
+		NodeRoute target = getPublishTarget(spaceId);
+		List<PublishBatch> batches = PublishBatch.split(payloads, maxItemsPerPublish);
+		for (PublishBatch batch : batches) {
+			publishFutures.addAll(batch.getFutures());
+		}
+		for (int i = 0; i < batches.size(); i++) {
+			try {
+				batches.get(i).complete(sendPublishRequest(target, batches.get(i).getItems()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (PublishBatch batch : batches.subList(i, batches.size())) {
+					batch.fail(e);
+				}
+				break;
+			}
+		}
+		return publishFutures;
+	}
+	
+	/**
+	 * Saves a payload in the sendcache.
+	 * If coalescing is enabled and the header of the data object is given,
+	 * a cached payload superseded by the data object is removed from the sendcache.
+	 * This includes payloads saved before the last replay or by a previous session, as the index of a space is built from the sendcache.
+	 * @param spaceId The id of the space to send the payload to.
+	 * @param header Header of the data object or <code>null</code> if the payload must not be coalesced.
+	 * @param payload The payload to save.
+	 * @return Identifier of the cached payload.
+	 */
+	private String saveToOutbox(String spaceId, DataObjectHeader header, SimplePayload payload) {
+		String payloadId = UUID.randomUUID().toString();
+		if (header == null || !isCoalescingEnabled) {
+			datawrapper.savePayloadToSend(userInfo.getBareJID(), payloadId, spaceId, payload);
+			return payloadId;
+		}
+		synchronized (outboxIndexes) {
+			CoalescingIndex<String> index = outboxIndexes.get(spaceId);
+			if (index == null) {
+				index = createOutboxIndex(spaceId);
+				outboxIndexes.put(spaceId, index);
+			}
+			String replacedPayloadId = index.put(header, payloadId);
+			if (replacedPayloadId != null) {
+				datawrapper.removePayloadToSend(userInfo.getBareJID(), replacedPayloadId);
+				supersededCount.incrementAndGet();
+			}
+			datawrapper.savePayloadToSend(userInfo.getBareJID(), payloadId, spaceId, payload);
+		}
+		return payloadId;
+	}
+	
+	/**
+	 * Creates the coalescing index of the payloads of a space which are in the sendcache.
+	 * Superseded payloads found in the sendcache are removed.
+	 * @param spaceId The id of the space.
+	 * @return Index of the payload ids.
+	 */
+	private CoalescingIndex<String> createOutboxIndex(String spaceId) {
+		CoalescingIndex<String> index = new CoalescingIndex<String>();
+		Iterator<SavedPayload> iterator = datawrapper.iteratePayloadsToSend(userInfo.getBareJID());
+		while (iterator.hasNext()) {
+			SavedPayload savedPayload = iterator.next();
+			if (!spaceId.equals(savedPayload.getSpaceId())) {
+				continue;
+			}
+			DataObjectHeader header;
+			try {
+				header = DataObjectReader.readHeader(savedPayload.getPayload().toXML());
+			} catch (XmlPullParserException e) {
+				logger.log(Level.WARNING, "Failed to read the header of a saved payload. It is not coalesced.", e);
+				continue;
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Failed to read the header of a saved payload. It is not coalesced.", e);
+				continue;
+			}
+			String replacedPayloadId = index.put(header, savedPayload.getPayloadId());
+			if (replacedPayloadId != null) {
+				datawrapper.removePayloadToSend(userInfo.getBareJID(), replacedPayloadId);
+				supersededCount.incrementAndGet();
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Publishes a payload through the coalescing queue of the space.
+	 * @param spaceId The id of the space to send the payload to.
+	 * @param header Header of the data object.
+	 * @param payload The payload to send.
+	 * @return Future completed with the pubsub item id when the request is acknowledged.
+	 * If the data object is superseded before it is sent, the future is completed with the item id of the superseding data object.
+	 * @throws UnknownEntityException Thrown when given space id cannot be mapped.
+	 */
+	private RequestFuture<String> publishCoalesced(String spaceId, DataObjectHeader header, SimplePayload payload) throws UnknownEntityException {
+		if (getMode() != Mode.ONLINE) {
+			RequestFuture<String> publishFuture = new RequestFuture<String>();
+			publishFuture.setResponse(saveToOutbox(spaceId, header, payload));
+			return publishFuture;
+		}
+		getPublishTarget(spaceId);
+		CoalescingQueue queue = coalescingQueues.get(spaceId);
+		if (queue == null) {
+			CoalescingQueue newQueue = new CoalescingQueue(spaceId);
+			queue = coalescingQueues.putIfAbsent(spaceId, newQueue);
+			if (queue == null) {
+				queue = newQueue;
+			}
+		}
+		return queue.add(header, payload);
+	}
+	
+	/**
+	 * Returns the resolved publish target of a space.
+	 * The pubsub channel and node of a space are resolved once and cached until the space is configured or deleted,
+	 * the connection is changed, or the server rejects a publish request because of a stale node.
+	 * @param spaceId The id of the space to publish on.
+	 * @return Publish target with a resolved pubsub node.
+	 * @throws UnknownEntityException Thrown when given space id cannot be mapped or the node could not be retrieved.
+	 */
+	private NodeRoute getPublishTarget(String spaceId) throws UnknownEntityException {
+		NodeRoute target = publishTargets.get(spaceId);
+		if (target == null) {
 			SpaceChannel channel = spaceHandler.getPubSubChannel(spaceId);
 			Map<String, String> properties = channel.getProperties();
-			LeafNode node = (LeafNode) getNode(properties.get("node"), properties.get("domain"));
+			target = new NodeRoute(spaceId, properties.get("node"), properties.get("domain"));
+		}
+		if (target.getNode() == null) {
+			LeafNode node = (LeafNode) getNode(target.getNodeId(), target.getPubsubService());
 			if (node == null) {
 				throw new UnknownEntityException("There's no node with this id.");
 			}
-			String itemId = UUID.randomUUID().toString();
-			PayloadItem<SimplePayload> item = new PayloadItem<SimplePayload>(itemId, payload);
-			RequestFuture<IQ> requestFuture = new RequestFuture<IQ>();
-			pendingPublishingRequests.put(itemId, requestFuture);
-			node.publish(item);
-			try {
-				IQ response = requestFuture.get(timeout, TimeUnit.MILLISECONDS);
-				XMPPError error = response.getError(); 
-				if (error != null) {
-					throw new InvalidDataException(error.getMessage());
+			target.setNode(node);
+			publishTargets.put(spaceId, target);
+		}
+		return target;
+	}
+	
+	/**
+	 * Checks if an error response to a publish request indicates that the node of the cached publish target is no longer valid.
+	 * @param error Error of the response.
+	 * @return <code>true</code> if the publish target should be resolved again, otherwise <code>false</code>.
+	 */
+	private static boolean isStaleNodeError(XMPPError error) {
+		String condition = error.getCondition();
+		return XMPPError.Condition.item_not_found.toString().equals(condition)
+				|| XMPPError.Condition.forbidden.toString().equals(condition)
+				|| XMPPError.Condition.remote_server_not_found.toString().equals(condition);
+	}
+	
+	/**
+	 * Checks if an error response to a publish request indicates that the pubsub service is overloaded.
+	 * @param error Error of the response.
+	 * @return <code>true</code> if the send rate should be decreased, otherwise <code>false</code>.
+	 */
+	private static boolean isOverloadError(XMPPError error) {
+		String condition = error.getCondition();
+		return error.getType() == XMPPError.Type.WAIT
+				|| XMPPError.Condition.resource_constraint.toString().equals(condition)
+				|| XMPPError.Condition.service_unavailable.toString().equals(condition)
+				|| XMPPError.Condition.interna_server_error.toString().equals(condition);
+	}
+	
+	/**
+	 * Waits until a publish request may be sent to the given target.
+	 * The method blocks until a slot in the publish window is available and the flow control of the pubsub service allows the request to be sent.
+	 * @param target The resolved publish target of the space.
+	 * @return Acquired slot. Has to be passed to {@link #sendPublishRequest(NodeRoute, PublishSlot, List)} or released.
+	 * @throws InterruptedException Waiting for a free slot was interrupted.
+	 */
+	private PublishSlot acquirePublishSlot(NodeRoute target) throws InterruptedException {
+		String spaceId = target.getSpaceId();
+		PublishWindow window = publishWindow;
+		window.acquire(spaceId);
+		PublishFlowController flowController = getOrCreateFlowController(target.getPubsubService());
+		try {
+			flowController.acquire();
+		} catch (InterruptedException e) {
+			window.release(spaceId);
+			throw e;
+		}
+		return new PublishSlot(spaceId, window, flowController);
+	}
+	
+	/**
+	 * Sends a single publish request for the given items.
+	 * The method blocks until a slot in the publish window is available and the flow control of the pubsub service allows the request to be sent.
+	 * @param target The resolved publish target of the space.
+	 * @param items The items to publish.
+	 * @return Future completed with the response of the server, or failed with a {@link TimeoutException} if no response is received within the request timeout.
+	 * @throws InterruptedException Waiting for a free slot in the publish window was interrupted.
+	 */
+	private RequestFuture<IQ> sendPublishRequest(NodeRoute target, List<PayloadItem<SimplePayload>> items) throws InterruptedException {
+		return sendPublishRequest(target, acquirePublishSlot(target), items);
+	}
+	
+	/**
+	 * Sends a single publish request for the given items using an acquired slot.
+	 * The slot is released when the request is completed.
+	 * The response is correlated by the packet id of the request, which is registered before the request is sent.
+	 * If the server indicates that the node is no longer available, the publish target of the space is invalidated.
+	 * @param target The resolved publish target of the space.
+	 * @param slot The slot acquired for the request.
+	 * @param items The items to publish.
+	 * @return Future completed with the response of the server, or failed with a {@link TimeoutException} if no response is received within the request timeout.
+	 */
+	private RequestFuture<IQ> sendPublishRequest(final NodeRoute target, PublishSlot slot, List<PayloadItem<SimplePayload>> items) {
+		final String spaceId = target.getSpaceId();
+		final PublishWindow window = slot.window;
+		final PublishFlowController flowController = slot.flowController;
+		PubSub publishRequest = new PubSub();
+		publishRequest.setTo(target.getPubsubService());
+		publishRequest.setType(IQ.Type.SET);
+		publishRequest.addExtension(new PublishItem<PayloadItem<SimplePayload>>(target.getNodeId(), items));
+		final String packetId = publishRequest.getPacketID();
+		final RequestFuture<IQ> requestFuture = new RequestFuture<IQ>();
+		pendingPublishingRequests.put(packetId, requestFuture);
+		final ScheduledFuture<?> timeoutTask = publishTimeoutScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				requestFuture.setException(new TimeoutException("Receiving a response timed out."));
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+		final long sendTime = System.nanoTime();
+		requestFuture.addCallback(new RequestFuture.Callback<IQ>() {
+			@Override
+			public void onSuccess(IQ response) {
+				timeoutTask.cancel(false);
+				XMPPError error = response.getError();
+				flowController.onAcknowledged(System.nanoTime() - sendTime, error != null && isOverloadError(error));
+				window.release(spaceId);
+				if (error != null && isStaleNodeError(error)) {
+					publishTargets.remove(spaceId, target);
 				}
-			} catch (InterruptedException e){
-				throw new RequestException("Receiving a response was interrupted.", e);
-			} catch (ExecutionException e) {
-				throw new RequestException("Couldn't receive a response.", e);
-			} catch (TimeoutException e) {
-				throw new RequestException("Receiving a response timed out.", e);
 			}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				timeoutTask.cancel(false);
+				if (cause instanceof TimeoutException) {
+					flowController.onTimeout();
+				} else {
+					flowController.onFailure();
+				}
+				window.release(spaceId);
+				pendingPublishingRequests.remove(packetId);
+			}
+		});
+		try {
+			connection.sendPacket(publishRequest);
+		} catch (RuntimeException e) {
+			requestFuture.setException(e);
 		}
-		else {
-			String id = UUID.randomUUID().toString();
-			datawrapper.savePayloadToSend(userInfo.getBareJID(), id, spaceId, payload);
-		}
+		return requestFuture;
 	}
 	
 	private DataObject publishAndRetrieve(String spaceId, SimplePayload payload) throws UnknownEntityException, ConnectionStatusException, InvalidDataException {
+		RequestFuture<DataObject> retrievalFuture = publishAndRetrieveAsync(spaceId, payload);
+		try {
+			return retrievalFuture.get();
+		} catch (InterruptedException e) {
+			throw new RequestException("Receiving a response was interrupted.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidDataException) {
+				throw (InvalidDataException) cause;
+			} else if (cause instanceof TimeoutException) {
+				throw new RequestException("The request timed out.", cause);
+			}
+			throw new RequestException("Couldn't receive a response.", cause);
+		}
+	}
+	
+	/**
+	 * Publishes a payload and registers a future which is completed when the published item is received.
+	 * The item is received by a single listener per node, which completes the futures waiting for the items.
+	 * @param spaceId The id of the space to send the payload to.
+	 * @param payload The payload to send.
+	 * @return Future completed with the data object as published on the space.
+	 * @throws UnknownEntityException Thrown when given space id cannot be mapped.
+	 * @throws ConnectionStatusException The data handler is not online.
+	 */
+	private RequestFuture<DataObject> publishAndRetrieveAsync(String spaceId, SimplePayload payload) throws UnknownEntityException, ConnectionStatusException {
 		if (getMode() != Mode.ONLINE) {
 			throw new ConnectionStatusException("The data handler has to be ONLINE to publish data objects synchronously.");
 		}
-		SpaceChannel channel = spaceHandler.getPubSubChannel(spaceId);
-		Map<String, String> properties = channel.getProperties();
-		LeafNode node = (LeafNode) getNode(properties.get("node"), properties.get("domain"));
+		NodeRoute target = getPublishTarget(spaceId);
+		LeafNode node = target.getNode();
+		if (retrievalNodes.add(node)) {
+			node.addItemEventListener(retrievalListener);
+		}
 		final String itemId = UUID.randomUUID().toString();
-		final RequestFuture<DataObject> requestFuture = new RequestFuture<DataObject>();
-		final PayloadItem<SimplePayload> itemToPublish = new PayloadItem<SimplePayload>(itemId, payload);
-		
-		ItemEventListener<PayloadItem<SimplePayload>> itemEventListener = new ItemEventListener<PayloadItem<SimplePayload>>() {
+		final RequestFuture<DataObject> retrievalFuture = new RequestFuture<DataObject>();
+		pendingRetrievals.put(itemId, retrievalFuture);
+		// The acknowledgement and the notification are awaited in parallel.
+		final ScheduledFuture<?> timeoutTask = publishTimeoutScheduler.schedule(new Runnable() {
 			@Override
-			public void handlePublishedItems(ItemPublishEvent<PayloadItem<SimplePayload>> event) {
-				for (PayloadItem<SimplePayload> item : event.getItems()) {
-					if (itemToPublish.getId().equals(item.getId())) {
-			        	DataObject dataObject = parseItemToDataObject(item);
-			        	requestFuture.setResponse(dataObject);
-					}
-				}
+			public void run() {
+				retrievalFuture.setException(new TimeoutException("The request timed out."));
 			}
-		}; 
-		node.addItemEventListener(itemEventListener);
-		
-		RequestFuture<IQ> sentNotificationFuture = new RequestFuture<IQ>();
-		pendingPublishingRequests.put(itemId, sentNotificationFuture);
-		node.publish(itemToPublish);
-		try {
-			IQ response = sentNotificationFuture.get(timeout, TimeUnit.MILLISECONDS);
-			XMPPError error = response.getError(); 
-			if (error != null) {
-				throw new InvalidDataException(error.getMessage());
+		}, 2L * timeout, TimeUnit.MILLISECONDS);
+		retrievalFuture.addCallback(new RequestFuture.Callback<DataObject>() {
+			@Override
+			public void onSuccess(DataObject response) {
+				timeoutTask.cancel(false);
 			}
-		} catch (InterruptedException e){
-			throw new RequestException("Failed to sent data object: Receiving a response was interrupted.", e);
-		} catch (ExecutionException e) {
-			throw new RequestException("Failed to sent data object: Couldn't receive a response.", e);
-		} catch (TimeoutException e) {
-			throw new RequestException("Failed to sent data object: Receiving a response timed out.", e);
-		}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				timeoutTask.cancel(false);
+				pendingRetrievals.remove(itemId);
+			}
+		});
 		
-		DataObject dataObject = null;
+		PayloadItem<SimplePayload> itemToPublish = new PayloadItem<SimplePayload>(itemId, payload);
+		RequestFuture<IQ> sentNotificationFuture;
 		try {
-			dataObject = requestFuture.get(timeout, TimeUnit.MILLISECONDS);
+			sentNotificationFuture = sendPublishRequest(target, Collections.singletonList(itemToPublish));
 		} catch (InterruptedException e) {
-			throw new RequestException("Receiving a response was interrupted.", e);
-		} catch (ExecutionException e) {
-			throw new RequestException("Couldn't receive a response.", e);
-		} catch (TimeoutException e) {
-			throw new RequestException("The request timed out.", e);
-		} finally {
-			node.removeItemEventListener(itemEventListener);
+			Thread.currentThread().interrupt();
+			retrievalFuture.setException(e);
+			return retrievalFuture;
 		}
-		
-		return dataObject;
+		sentNotificationFuture.addCallback(new RequestFuture.Callback<IQ>() {
+			@Override
+			public void onSuccess(IQ response) {
+				XMPPError error = response.getError();
+				if (error != null) {
+					retrievalFuture.setException(new InvalidDataException(error.getMessage()));
+				}
+			}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				retrievalFuture.setException(cause);
+			}
+		});
+		return retrievalFuture;
 	}
 
 	/**
-	 * Removes a data object listener.
+	 * Removes a data object listener with all its restrictions.
 	 * @param listener Listener to remove.
 	 */
 	@Override
 	public void removeDataObjectListener(DataObjectListener listener){
-		listeners.remove(listener);
+		listeners.removeListener(listener);
 	}
 	
 	/**
 	 * Gets the pubsub service of a pubsub node.
+	 * Only nodes of spaces handled by this data handler are known.
 	 * @param nodeId The id of the node to get the pubsub service for.
-	 * @return The pubsubservice.
+	 * @return The pubsubservice or <code>null</code> if the node does not belong to a handled space.
 	 */
 	protected String getPubsubService(String nodeId){
-		String pubsubService = null;
-		List<Space> spaces = spaceHandler.getAllSpaces();
-		for(Space space:spaces){
-			SpaceChannel pubsub = space.getPubSubChannel();
-			if (pubsub.getProperties().get("node").equalsIgnoreCase(nodeId))
-				return pubsubService = pubsub.getProperties().get("domain");
-		}
-		return pubsubService;
+		NodeRoute route = nodeRoutes.get(nodeId);
+		return route != null ? route.getPubsubService() : null;
 	}
 
 	/**
-	 * Sends a request to the server to retrieve the payload of an item
-	 * @param nodeId The id of the node the item is from.
-	 * @param payloadId The id of the payload.
-	 * @throws SpaceManagementException Thrown when an error occured while retrieving the payload from the server.
+	 * Sends a single request to the server to retrieve the payloads of the given items.
+	 * The method does not wait for the response. The retrieved items are handled when the response arrives.
+	 * @param nodeId The id of the node the items are from.
+	 * @param itemIds The ids of the items to retrieve.
+	 * @throws SpaceManagementException Thrown when the subscription to the node could not be retrieved from the server.
 	 * @throws UnknownEntityException Thrown when no pubsub node could be retrieved.
 	 */
-	private void retrievePayload(final String nodeId, final String payloadId) throws SpaceManagementException, UnknownEntityException{
+	private void retrievePayloads(final String nodeId, final List<String> itemIds) throws SpaceManagementException, UnknownEntityException{
 		if (getMode() == Mode.OFFLINE){
 			throw new IllegalStateException("Not connected");
 		}
-		String pubsubService = getPubsubService(nodeId);
-		if (pubsubService == null){
+		NodeRoute route = nodeRoutes.get(nodeId);
+		if (route == null){
 			return;
 		}
-		Node node = this.getNode(nodeId, pubsubService);
-		List<Subscription> subs;
-		try {
-			subs = node.getSubscriptions();
-		} catch (XMPPException e) {
-			throw new SpaceManagementException("The Server did not respond.", Type.OTHER, e);
-		}
-		final String subid = subs.get(0).getId();
+		final String subid = getSubscriptionId(route);
 		IQ requestIq = new IQ() {
 			
 			@Override
 			public String getChildElementXML() {
 				Element childElement = new Element("pubsub", NamespaceConfig.XMPP_PUBSUB);
 				Element itemsElement = new Element("items").setAttribute("node", nodeId);
-				itemsElement.setAttribute("subid", subid);
-				itemsElement.addContent(new Element("item").setAttribute("id", payloadId));
+				if (subid != null) {
+					itemsElement.setAttribute("subid", subid);
+				}
+				for (String itemId : itemIds) {
+					itemsElement.addContent(new Element("item").setAttribute("id", itemId));
+				}
 				childElement.addContent(itemsElement);
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 		};
 		requestIq.setType(IQ.Type.GET);
-		requestIq.setTo(pubsubService);
-		requestIq.setPacketID(payloadId);
-		RequestFuture<List<PayloadItem<SimplePayload>>> payloadFuture = new RequestFuture<List<PayloadItem<SimplePayload>>>();
-		pendingPayloadRequests.put(payloadId, payloadFuture);
+		requestIq.setTo(route.getPubsubService());
+		String packetId = requestIq.getPacketID();
+		
+		removeExpiredPayloadRequests();
+		PayloadRequest request = new PayloadRequest(packetId, nodeId, itemIds);
+		pendingPayloadRequests.put(packetId, request);
+		for (String itemId : itemIds) {
+			pendingPayloadItems.put(itemId, packetId);
+		}
 		connection.sendPacket(requestIq);
-		List<PayloadItem<SimplePayload>> response = null;
+	}
+	
+	/**
+	 * Returns the identifier of the subscription to the node of the given route.
+	 * The identifier is requested from the server once and cached afterwards.
+	 * @param route Route of the node.
+	 * @return Subscription identifier or <code>null</code> if the user has no subscription to the node.
+	 * @throws SpaceManagementException Thrown when the subscriptions could not be retrieved from the server.
+	 * @throws UnknownEntityException Thrown when no pubsub node could be retrieved.
+	 */
+	private String getSubscriptionId(NodeRoute route) throws SpaceManagementException, UnknownEntityException {
+		String subid = route.getSubscriptionId();
+		if (subid != null) {
+			return subid;
+		}
+		Node node = route.getNode();
+		if (node == null) {
+			node = this.getNode(route.getNodeId(), route.getPubsubService());
+		}
+		List<Subscription> subs;
 		try {
-			response = payloadFuture.get(timeout, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			throw new SpaceManagementException("Receiving a response was interrupted.", SpaceManagementException.Type.OTHER, e);
-		} catch (ExecutionException e) {
-			throw new SpaceManagementException("Couldn't receive a response.", SpaceManagementException.Type.OTHER, e);
-		} catch (TimeoutException e) {
-			throw new SpaceManagementException("Receiving a response timed out.", SpaceManagementException.Type.OTHER, e);
+			subs = node.getSubscriptions();
+		} catch (XMPPException e) {
+			throw new SpaceManagementException("The Server did not respond.", Type.OTHER, e);
 		}
-		if (response == null){
-			return;
+		if (subs.isEmpty()) {
+			return null;
+		}
+		subid = subs.get(0).getId();
+		route.setSubscriptionId(subid);
+		return subid;
+	}
+	
+	/**
+	 * Handles the response to a payload request and passes the retrieved items to the item handler.
+	 * @param request Request the response belongs to.
+	 * @param response Response IQ.
+	 */
+	@SuppressWarnings("unchecked")
+	private void handlePayloadResponse(PayloadRequest request, IQ response) {
+		try {
+			if (response.getType() == IQ.Type.RESULT && response instanceof PubSub) {
+				ItemsExtension itemsElem = (ItemsExtension) ((PubSub) response).getExtension(PubSubElementType.ITEMS);
+				if (itemsElem != null) {
+					ItemPublishEvent<PayloadItem<PacketExtension>> event =
+						new ItemPublishEvent<PayloadItem<PacketExtension>>(request.nodeId, (List<PayloadItem<PacketExtension>>) itemsElem.getItems());
+					handlePublishedItems(event);
+				}
+			} else {
+				logger.log(Level.WARNING, "Failed to retrieve " + request.itemIds.size() + " payloads of node " + request.nodeId + ": " + response.getError());
+			}
+		} finally {
+			releasePayloadRequest(request);
+		}
+	}
+	
+	/**
+	 * Removes payload requests which were not answered within the request timeout.
+	 * The items of these requests are requested again when they are received the next time.
+	 */
+	private void removeExpiredPayloadRequests() {
+		long now = System.currentTimeMillis();
+		for (PayloadRequest request : pendingPayloadRequests.values()) {
+			if (now - request.timestamp > timeout && pendingPayloadRequests.remove(request.packetId, request)) {
+				releasePayloadRequest(request);
+			}
+		}
+	}
+	
+	private void releasePayloadRequest(PayloadRequest request) {
+		for (String itemId : request.itemIds) {
+			pendingPayloadItems.remove(itemId, request.packetId);
+		}
+	}
+	
+	/**
+	 * Starts sending the payloads of the user, which are in the sendcache, in the background.
+	 * If payloads are already being sent, the sendcache is checked again when the running replay is finished.
+	 */
+	private void sendSavedPayloads() {
+		if (datawrapper == null) return;
+		isReplayRequested = true;
+		if (isReplaying.compareAndSet(false, true)) {
+			replayExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					do {
+						try {
+							while (isReplayRequested && getMode() == Mode.ONLINE) {
+								isReplayRequested = false;
+								replaySavedPayloads();
+							}
+						} catch (RuntimeException e) {
+							logger.log(Level.WARNING, "Failed to send the saved payloads.", e);
+						} finally {
+							isReplaying.set(false);
+						}
+					} while (isReplayRequested && getMode() == Mode.ONLINE && isReplaying.compareAndSet(false, true));
+				}
+			});
 		}
-		ItemPublishEvent<PayloadItem<SimplePayload>> event =
-			new ItemPublishEvent<PayloadItem<SimplePayload>>(nodeId, response);
-		handlePublishedItems(event);
 	}
 	
 	/**
-	 * Sends the payloads of the user, which are in the sendcache.
-	 * @throws UnknownEntityException Thrown when no pubsub node could be retrieved.
+	 * Checks if payloads of the sendcache are being sent.
+	 * @return <code>true</code> if the sendcache is replayed, otherwise <code>false</code>.
+	 */
+	public boolean isSendingSavedPayloads() {
+		return isReplaying.get();
+	}
+	
+	/**
+	 * Sends the payloads of the user, which are in the sendcache, in the order they were saved.
+	 * See {@link OutboxReplay} for the handling of the responses.
 	 */
-	private void sendSavedPayloads() throws UnknownEntityException, InvalidDataException {
-		if (datawrapper == null) return;
-		Map<String, SimplePayload> payloads = datawrapper.getPayloadsToSend(userInfo.getBareJID());
-		for (String id:payloads.keySet()){
-			String spaceId = datawrapper.getSpaceForPayload(id);
-			if (spaceId == null) continue;
-			publish(spaceId, payloads.get(id));
+	private void replaySavedPayloads() {
+		// The indexes refer to payloads which are sent now. They are built from the sendcache again when required.
+		synchronized (outboxIndexes) {
+			outboxIndexes.clear();
+		}
+		OutboxReplay.Publisher publisher = new OutboxReplay.Publisher() {
+			@Override
+			public boolean isOnline() {
+				return getMode() == Mode.ONLINE;
+			}
+			
+			@Override
+			public RequestFuture<IQ> publish(String spaceId, List<SavedPayload> payloads) throws UnknownEntityException, InterruptedException {
+				List<PayloadItem<SimplePayload>> items = new ArrayList<PayloadItem<SimplePayload>>(payloads.size());
+				for (SavedPayload payload : payloads) {
+					items.add(new PayloadItem<SimplePayload>(UUID.randomUUID().toString(), payload.getPayload()));
+				}
+				return sendPublishRequest(getPublishTarget(spaceId), items);
+			}
+			
+			@Override
+			public boolean isTemporaryError(XMPPError error) {
+				return isOverloadError(error) || isStaleNodeError(error);
+			}
+		};
+		try {
+			new OutboxReplay(datawrapper, userInfo.getBareJID(), maxItemsPerPublish, REPLAY_CHECKPOINT_INTERVAL, publisher).run();
+		} finally {
+			synchronized (outboxIndexes) {
+				outboxIndexes.clear();
+			}
 		}
-		datawrapper.clearSendCache(userInfo.getBareJID());
 	}
 
 	/**
@@ -647,8 +1333,6 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		for (String componentJID : registeredPubsubServiceComponents) {
 			removePubsubService(componentJID);
 		}
-		connection.removePacketInterceptor(pubsubInterceptor);
-		
 		// Unregister persistence services.
 		List<String> registeredPersistenceServiceComponents = new ArrayList<String>(persistenceServiceListeners.keySet());
 		for (String componentJID : registeredPersistenceServiceComponents) {
@@ -661,12 +1345,32 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		// Update handler.
 		this.connectionHandler = connectionHandler;
 		this.connection = connectionHandler.getXMPPConnection();
+		this.queryRouter = QueryStreamRouter.getInstance(connection);
+		
+		// Nodes and subscriptions are bound to the previous connection.
+		publishTargets.clear();
+		retrievalNodes.clear();
+		for (NodeRoute route : nodeRoutes.values()) {
+			route.setNode(null);
+			route.setSubscriptionId(null);
+		}
+		pendingPayloadRequests.clear();
+		pendingPayloadItems.clear();
+		
+		// Pending publish requests will not be acknowledged over the new connection.
+		for (String packetId : new ArrayList<String>(pendingPublishingRequests.keySet())) {
+			RequestFuture<IQ> publishFuture = pendingPublishingRequests.remove(packetId);
+			if (publishFuture != null) {
+				publishFuture.setException(new RequestException("The connection was changed before the publishing was acknowledged.", null));
+			}
+		}
+		this.publishWindow = createPublishWindow(connectionHandler.getConfiguration());
+		flowControllers.clear();
 		
 		// Register pubsub services.
 		for (String componentJID : registeredPubsubServiceComponents) {
 			registerPubsubService(componentJID);
 		}
-		this.setPubSubPacketInterceptor();
 		
 		// Register persistence services.
 		for (String componentJID : registeredPersistenceServiceComponents) {
@@ -708,6 +1412,8 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		if (handledSpaces.contains(space)) {
 			return;
 		} else {
+			Map<String, String> properties = space.getPubSubChannel().getProperties();
+			nodeRoutes.put(properties.get("node"), new NodeRoute(space.getId(), properties.get("node"), properties.get("domain")));
 			handledSpaces.add(space);
 			if (getMode() == Mode.ONLINE){
 				registerItemEventListener(space);
@@ -726,10 +1432,15 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		if (handledSpaces.remove(space)){
 			SpaceChannel channel = space.getPubSubChannel();
 			Map<String, String> properties = channel.getProperties();
+			NodeRoute route = nodeRoutes.remove(properties.get("node"));
 			datawrapper.deleteCachedDataObjectsForSpace(properties.get("node"));
+			dispatcher.removeSpace(space.getId());
 			if (getMode() == Mode.ONLINE){
 				try {
-					LeafNode node = (LeafNode) getNode(properties.get("node"), properties.get("domain"));
+					LeafNode node = route != null ? route.getNode() : null;
+					if (node == null) {
+						node = (LeafNode) getNode(properties.get("node"), properties.get("domain"));
+					}
 					node.removeItemEventListener(this);
 				} catch (UnknownEntityException e) {
 					logger.log(Level.SEVERE, "An UnknownEntityException was thrown while removing a registered space.", e);
@@ -774,17 +1485,25 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		}
 		if (node != null){
 			node.addItemEventListener(this);
+			NodeRoute route = nodeRoutes.get(properties.get("node"));
+			if (route != null) {
+				route.setNode(node);
+			}
 		}
 		return node;
 	}
 	
 	/**
 	 * Convenience method to parse an PayloadItem to an DataObject.
+	 * Payloads created by the item provider already contain the parsed element and are not parsed again.
 	 * @param item The Item to parse.
 	 * @return The parsed DataObject.
 	 */
-	private DataObject parseItemToDataObject(PayloadItem<SimplePayload> item){
-		SAXBuilder reader = new SAXBuilder();
+	private DataObject parseItemToDataObject(PayloadItem<PacketExtension> item){
+		if (item.getPayload() instanceof DataObjectPayload) {
+			return ((DataObjectPayload) item.getPayload()).getDataObject();
+		}
+		SAXBuilder reader = XMLCodec.getBuilder();
 		StringReader in = new StringReader(item.getPayload().toXML());
 		Document document = null;
 		try {
@@ -810,13 +1529,7 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	public void setMode(Mode mode){
 		this.userWantedMode = mode;
 		if (userWantedMode == Mode.ONLINE && this.getMode() == Mode.ONLINE) {
-			try {
-				sendSavedPayloads();
-			} catch (UnknownEntityException e) {
-				logger.log(Level.WARNING, "An UnknownEntityException was thrown while trying to send saved payloads.", e);
-			} catch (InvalidDataException e) {
-				logger.log(Level.WARNING, "A cached data object could not be published as it was rejected.", e);
-			}
+			sendSavedPayloads();
 		}
 	}
 
@@ -839,7 +1552,12 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	 */
 	@Override
 	public void clear() {
-		datawrapper.clearDataCache();		
+		datawrapper.clearDataCache();
+		DataObjectCache cache = queryCache;
+		if (cache != null) {
+			cache.clear();
+		}
+		queryDeduplicator.clearMemos();
 	}
 
 	@Override
@@ -852,36 +1570,191 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		this.dataObjectFilter = filter;
 	}
 
+	/**
+	 * Returns the dispatcher used to notify the data object listeners.
+	 * The dispatcher provides statistics about queue depths and dispatch latencies.
+	 * @return Dispatcher of this handler.
+	 */
+	public DataObjectDispatcher getDataObjectDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * Sets the dispatcher used to notify the data object listeners.
+	 * The previous dispatcher is shut down after the tasks already queued are processed.
+	 * @param dispatcher Dispatcher to use. May not be <code>null</code>.
+	 */
+	public void setDataObjectDispatcher(DataObjectDispatcher dispatcher) {
+		if (dispatcher == null) {
+			throw new IllegalArgumentException("The dispatcher must not be null.");
+		}
+		DataObjectDispatcher oldDispatcher = this.dispatcher;
+		this.dispatcher = dispatcher;
+		if (oldDispatcher != dispatcher) {
+			oldDispatcher.shutdown();
+		}
+	}
+	
+	/**
+	 * Returns the cache used to serve queries for data objects by their identifiers.
+	 * @return Query cache or <code>null</code> if queries are always sent to the persistence service.
+	 */
+	public DataObjectCache getQueryCache() {
+		return queryCache;
+	}
+	
+	/**
+	 * Sets the cache used to serve queries for data objects by their identifiers.
+	 * Data objects which are neither in the cache nor in the local data store are requested from the persistence service.
+	 * Cached data objects are invalidated if they are deleted or if a data object updating them is received.
+	 * A cache with default capacity and time to live is set initially.
+	 * @param queryCache Cache to use, or <code>null</code> to send all queries to the persistence service.
+	 */
+	public void setQueryCache(DataObjectCache queryCache) {
+		this.queryCache = queryCache;
+	}
+	
+	/**
+	 * Returns the deduplicator of persistence service queries.
+	 * Identical queries issued concurrently are sent once and share their result.
+	 * A short-lived memo of the results can be enabled using {@link QueryDeduplicator#setMemoTime(long)}.
+	 * @return Query deduplicator.
+	 */
+	public QueryDeduplicator getQueryDeduplicator() {
+		return queryDeduplicator;
+	}
+	
+	/**
+	 * Returns a data object from the query cache or the local data store.
+	 * Data objects read from the store are added to the cache. Invalidated data objects are not read from the store.
+	 * @param objectId Identifier of the data object.
+	 * @return Data object or <code>null</code> if it has to be requested from the persistence service.
+	 */
+	private DataObject getLocalDataObject(String objectId) {
+		DataObjectCache cache = queryCache;
+		if (cache == null) {
+			return null;
+		}
+		DataObject dataObject = cache.get(objectId);
+		if (dataObject != null || cache.isInvalidated(objectId)) {
+			return dataObject;
+		}
+		dataObject = datawrapper.getCachedDataObject(objectId);
+		if (dataObject == null || !objectId.equals(dataObject.getId())) {
+			return null;
+		}
+		cache.put(dataObject);
+		return dataObject;
+	}
+	
+	/**
+	 * Adds data objects retrieved from the persistence service to the query cache.
+	 * @param dataObjects Data objects to cache.
+	 */
+	private void cacheDataObjects(List<DataObject> dataObjects) {
+		DataObjectCache cache = queryCache;
+		if (cache != null) {
+			for (DataObject dataObject : dataObjects) {
+				cache.put(dataObject);
+			}
+		}
+	}
+	
+	/**
+	 * Invalidates the data object which is updated by a received data object.
+	 * @param header Header of the received data object.
+	 */
+	private void invalidateUpdatedDataObject(DataObjectHeader header) {
+		DataObjectCache cache = queryCache;
+		if (cache == null) {
+			return;
+		}
+		String updatedId = header.getUpdates();
+		if (updatedId != null) {
+			cache.invalidate(updatedId);
+		}
+	}
+	
+	/**
+	 * Removes deleted data objects from the query cache and the local data store.
+	 * @param objectIds Identifiers of the deleted data objects.
+	 */
+	private void invalidateDeletedDataObjects(Collection<String> objectIds) {
+		DataObjectCache cache = queryCache;
+		for (String objectId : objectIds) {
+			if (cache != null) {
+				cache.invalidate(objectId);
+			}
+			datawrapper.deleteCachedDataObject(objectId);
+		}
+	}
+
 	@Override
 	public DataObject queryDataObjectById(final String objectId) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
 		checkPersistenceServiceAvailabilty();
+		DataObject localObject = getLocalDataObject(objectId);
+		if (localObject != null) {
+			return localObject;
+		}
 		
-		IQ requestIQ = QueryRequestIQ.createQueryByObjectId(objectId);
-		requestIQ.setFrom(userInfo.getFullJID());
-		requestIQ.setTo(connectionHandler.getNetworkInformation().getPersistenceServiceJID());
-		RequestFuture<IQ> queryFuture = new RequestFuture<IQ>();
-		pendingPersistenceServiceQueries.put(requestIQ.getPacketID(), queryFuture);
-		connection.sendPacket(requestIQ);
-		
-		List<DataObject> resultList = handleQueryResponse(queryFuture);
+		QueryRequestIQ requestIQ = QueryRequestIQ.createQueryByObjectId(objectId);
+		List<DataObject> resultList = sendSharedQuery("object", Collections.singleton(objectId), null, requestIQ);
+		cacheDataObjects(resultList);
 		return resultList.isEmpty() ? null : resultList.get(0);
 	}
 
+	/**
+	 * Queries data objects by their identifiers.
+	 * Data objects available in the query cache or the local data store are filtered locally,
+	 * all other data objects are requested from the persistence service with a single query.
+	 * @param objectIds Identifiers of the data objects to retrieve.
+	 * @param filters Filters to apply. May be empty.
+	 * @return List of the data objects found, starting with the locally available ones.
+	 * @throws UnsupportedOperationException No persistence service is available.
+	 * @throws ConnectionStatusException The handler is not online.
+	 * @throws QueryException No data object identifier is given or failed to perform the query.
+	 */
 	@Override
 	public List<DataObject> queryDataObjectsById(Set<String> objectIds, Set<SerializableDataObjectFilter> filters) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
 		checkPersistenceServiceAvailabilty();
+		List<DataObject> dataObjects = new ArrayList<DataObject>();
+		Set<String> missingIds = new LinkedHashSet<String>();
+		for (String objectId : objectIds) {
+			DataObject localObject = getLocalDataObject(objectId);
+			if (localObject == null) {
+				missingIds.add(objectId);
+			} else if (isDataObjectValid(localObject, filters)) {
+				dataObjects.add(localObject);
+			}
+		}
+		if (!objectIds.isEmpty() && missingIds.isEmpty()) {
+			return dataObjects;
+		}
 		
-		IQ requestIQ = QueryRequestIQ.createQueryByObjectIds(objectIds, filters);
-		requestIQ.setFrom(userInfo.getFullJID());
-		requestIQ.setTo(connectionHandler.getNetworkInformation().getPersistenceServiceJID());
-		RequestFuture<IQ> queryFuture = new RequestFuture<IQ>();
-		pendingPersistenceServiceQueries.put(requestIQ.getPacketID(), queryFuture);
-		connection.sendPacket(requestIQ);
-		
-		List<DataObject> dataObjects = handleQueryResponse(queryFuture);
+		QueryRequestIQ requestIQ = QueryRequestIQ.createQueryByObjectIds(missingIds, filters);
+		List<DataObject> retrievedObjects = sendSharedQuery("objects", missingIds, filters, requestIQ);
+		cacheDataObjects(retrievedObjects);
+		dataObjects.addAll(retrievedObjects);
 		return dataObjects;
 	}
 	
+	/**
+	 * Checks if a data object passes all given filters.
+	 * @param dataObject Data object to check.
+	 * @param filters Filters to apply. May be <code>null</code> or empty.
+	 * @return <code>true</code> if the data object passes all filters, otherwise <code>false</code>.
+	 */
+	private static boolean isDataObjectValid(DataObject dataObject, Set<SerializableDataObjectFilter> filters) {
+		if (filters != null) {
+			for (SerializableDataObjectFilter filter : filters) {
+				if (!filter.isDataObjectValid(dataObject)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * Queries data objects persisted on a pubsub node.
 	 * This method is used as fallback if no persistence service is available.
@@ -907,9 +1780,9 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		try {
 			node = (LeafNode) this.getNode(nodeId, pubsubJID);
 			datawrapper.deleteCachedDataObjectsForSpace(node.getId());
-			List<PayloadItem<SimplePayload>> items = ((LeafNode) node).getItems(node.getSubscriptions().get(0).getId());
+			List<PayloadItem<PacketExtension>> items = ((LeafNode) node).getItems(node.getSubscriptions().get(0).getId());
 			if (node != null && items != null) {
-				for (PayloadItem<SimplePayload> item : items) {
+				for (PayloadItem<PacketExtension> item : items) {
 					DataObject dataObject = this.parseItemToDataObject(item);
 					if (!filters.isEmpty()) {
 						boolean reject = false;
@@ -943,15 +1816,8 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 			return queryDataObjectsFromPubSubNode(spaceId, filters);
 		}
 		
-		IQ requestIQ = QueryRequestIQ.createQueryBySpace(spaceId, filters);
-		requestIQ.setFrom(userInfo.getFullJID());
-		requestIQ.setTo(connectionHandler.getNetworkInformation().getPersistenceServiceJID());
-		
-		RequestFuture<IQ> queryFuture = new RequestFuture<IQ>();
-		pendingPersistenceServiceQueries.put(requestIQ.getPacketID(), queryFuture);
-		connection.sendPacket(requestIQ);
-		
-		List<DataObject> dataObjects = handleQueryResponse(queryFuture);
+		QueryRequestIQ requestIQ = QueryRequestIQ.createQueryBySpace(spaceId, filters);
+		List<DataObject> dataObjects = sendSharedQuery("space", Collections.singleton(spaceId), filters, requestIQ);
 		return dataObjects;
 	}
 
@@ -959,15 +1825,8 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 	public List<DataObject> queryDataObjectsBySpaces(Set<String> spaceIds, Set<SerializableDataObjectFilter> filters) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
 		checkPersistenceServiceAvailabilty();
 		
-		IQ requestIQ = QueryRequestIQ.createQueryBySpaces(spaceIds, filters);
-		requestIQ.setFrom(userInfo.getFullJID());
-		requestIQ.setTo(connectionHandler.getNetworkInformation().getPersistenceServiceJID());
-		
-		RequestFuture<IQ> queryFuture = new RequestFuture<IQ>();
-		pendingPersistenceServiceQueries.put(requestIQ.getPacketID(), queryFuture);
-		connection.sendPacket(requestIQ);
-		
-		List<DataObject> dataObjects = handleQueryResponse(queryFuture);
+		QueryRequestIQ requestIQ = QueryRequestIQ.createQueryBySpaces(spaceIds, filters);
+		List<DataObject> dataObjects = sendSharedQuery("spaces", spaceIds, filters, requestIQ);
 		return dataObjects;
 	}
 	
@@ -984,6 +1843,8 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		connection.sendPacket(requestIq);
 		
 		int numberOfDeletedObjects = handleDeleteResponse(queryFuture);
+		invalidateDeletedDataObjects(Collections.singleton(objectId));
+		queryDeduplicator.clearMemos();
 		return numberOfDeletedObjects > 0;
 	}
 	
@@ -1000,35 +1861,255 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		connection.sendPacket(requestIq);
 		
 		int numberOfDeletedObjects = handleDeleteResponse(queryFuture);
+		invalidateDeletedDataObjects(objectIds);
+		queryDeduplicator.clearMemos();
 		return numberOfDeletedObjects;
 	}
 
-	private List<DataObject> handleQueryResponse(RequestFuture<IQ> queryFuture) throws QueryException {
-		List<DataObject> dataObjects;
-		
+	/**
+	 * Queries the data objects of a space in pages.
+	 * The persistence service has to support result set management (XEP-0059), otherwise the complete result is returned as one page.
+	 * @param spaceId Identifier of the space to request data objects for.
+	 * @param filters Filters to apply. May be empty.
+	 * @param pageSize Maximum number of data objects requested at once.
+	 * @return Cursor over the result. The first page is already requested.
+	 * @throws UnsupportedOperationException No persistence service is available.
+	 * @throws ConnectionStatusException The handler is not online.
+	 */
+	public QueryCursor queryDataObjectsBySpace(String spaceId, Set<SerializableDataObjectFilter> filters, int pageSize) throws UnsupportedOperationException, ConnectionStatusException {
+		checkPersistenceServiceAvailabilty();
+		return new QueryCursor(QueryRequestIQ.createQueryBySpace(spaceId, filters), pageSize, timeout, createQuerySender(null));
+	}
+	
+	/**
+	 * Queries the data objects of multiple spaces in pages.
+	 * The persistence service has to support result set management (XEP-0059), otherwise the complete result is returned as one page.
+	 * @param spaceIds Identifiers of the spaces to request data objects for.
+	 * @param filters Filters to apply. May be empty.
+	 * @param pageSize Maximum number of data objects requested at once.
+	 * @return Cursor over the result. The first page is already requested.
+	 * @throws UnsupportedOperationException No persistence service is available.
+	 * @throws ConnectionStatusException The handler is not online.
+	 * @throws QueryException No space identifier is given.
+	 */
+	public QueryCursor queryDataObjectsBySpaces(Set<String> spaceIds, Set<SerializableDataObjectFilter> filters, int pageSize) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
+		checkPersistenceServiceAvailabilty();
+		return new QueryCursor(QueryRequestIQ.createQueryBySpaces(spaceIds, filters), pageSize, timeout, createQuerySender(null));
+	}
+	
+	/**
+	 * Queries data objects by their identifiers in pages.
+	 * The persistence service has to support result set management (XEP-0059), otherwise the complete result is returned as one page.
+	 * @param objectIds Identifiers of the data objects to retrieve.
+	 * @param filters Filters to apply. May be empty.
+	 * @param pageSize Maximum number of data objects requested at once.
+	 * @return Cursor over the result. The first page is already requested.
+	 * @throws UnsupportedOperationException No persistence service is available.
+	 * @throws ConnectionStatusException The handler is not online.
+	 * @throws QueryException No data object identifier is given.
+	 */
+	public QueryCursor queryDataObjectsById(Set<String> objectIds, Set<SerializableDataObjectFilter> filters, int pageSize) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
+		checkPersistenceServiceAvailabilty();
+		return new QueryCursor(QueryRequestIQ.createQueryByObjectIds(objectIds, filters), pageSize, timeout, createQuerySender(null));
+	}
+	
+	/**
+	 * Returns the maximum number of data objects of a streamed query which are held until the caller processes them.
+	 * @return Capacity of the stream of a query.
+	 */
+	public int getStreamCapacity() {
+		return streamCapacity;
+	}
+	
+	/**
+	 * Sets the maximum number of data objects of a streamed query which are held until the caller processes them.
+	 * If the stream of a query is full, reading the connection waits until the consumer processed a data object.
+	 * Defaults to 100.
+	 * @param streamCapacity Capacity of the stream of a query. Has to be positive.
+	 */
+	public void setStreamCapacity(int streamCapacity) {
+		if (streamCapacity < 1) {
+			throw new IllegalArgumentException("The stream capacity has to be positive.");
+		}
+		this.streamCapacity = streamCapacity;
+	}
+	
+	/**
+	 * Queries the data objects of a space and passes them to the given consumer while the response is received.
+	 * The first data object is available before the complete response is received, and at most the number of data objects
+	 * set by {@link #setStreamCapacity(int)} is held in memory.
+	 * If other queries of the connection are pending when the response is received, the result is collected and passed afterwards.
+	 * @param spaceId Identifier of the space to request data objects for.
+	 * @param filters Filters to apply. May be empty.
+	 * @param consumer Consumer to pass the data objects to. Called by the calling thread.
+	 * @return Number of data objects passed to the consumer.
+	 * @throws UnsupportedOperationException No persistence service is available.
+	 * @throws ConnectionStatusException The handler is not online.
+	 * @throws QueryException Failed to perform the query.
+	 */
+	public int queryDataObjectsBySpace(String spaceId, Set<SerializableDataObjectFilter> filters, QueryResultConsumer consumer) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
+		checkPersistenceServiceAvailabilty();
+		return streamQuery(QueryRequestIQ.createQueryBySpace(spaceId, filters), consumer);
+	}
+	
+	/**
+	 * Queries the data objects of multiple spaces and passes them to the given consumer while the response is received.
+	 * If other queries of the connection are pending when the response is received, the result is collected and passed afterwards.
+	 * @param spaceIds Identifiers of the spaces to request data objects for.
+	 * @param filters Filters to apply. May be empty.
+	 * @param consumer Consumer to pass the data objects to. Called by the calling thread.
+	 * @return Number of data objects passed to the consumer.
+	 * @throws UnsupportedOperationException No persistence service is available.
+	 * @throws ConnectionStatusException The handler is not online.
+	 * @throws QueryException No space identifier is given or failed to perform the query.
+	 */
+	public int queryDataObjectsBySpaces(Set<String> spaceIds, Set<SerializableDataObjectFilter> filters, QueryResultConsumer consumer) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
+		checkPersistenceServiceAvailabilty();
+		return streamQuery(QueryRequestIQ.createQueryBySpaces(spaceIds, filters), consumer);
+	}
+	
+	/**
+	 * Queries data objects by their identifiers and passes them to the given consumer while the response is received.
+	 * If other queries of the connection are pending when the response is received, the result is collected and passed afterwards.
+	 * @param objectIds Identifiers of the data objects to retrieve.
+	 * @param filters Filters to apply. May be empty.
+	 * @param consumer Consumer to pass the data objects to. Called by the calling thread.
+	 * @return Number of data objects passed to the consumer.
+	 * @throws UnsupportedOperationException No persistence service is available.
+	 * @throws ConnectionStatusException The handler is not online.
+	 * @throws QueryException No data object identifier is given or failed to perform the query.
+	 */
+	public int queryDataObjectsById(Set<String> objectIds, Set<SerializableDataObjectFilter> filters, QueryResultConsumer consumer) throws UnsupportedOperationException, ConnectionStatusException, QueryException {
+		checkPersistenceServiceAvailabilty();
+		return streamQuery(QueryRequestIQ.createQueryByObjectIds(objectIds, filters), consumer);
+	}
+	
+	/**
+	 * Sends a query with its own stream and passes the data objects of the response to the consumer.
+	 * The timeout is extended as long as data objects are received.
+	 * @param requestIQ Query to send.
+	 * @param consumer Consumer to pass the data objects to.
+	 * @return Number of data objects passed to the consumer.
+	 * @throws QueryException Failed to perform the query.
+	 */
+	private int streamQuery(QueryRequestIQ requestIQ, QueryResultConsumer consumer) throws QueryException {
+		if (consumer == null) {
+			throw new IllegalArgumentException("The consumer must not be null.");
+		}
+		final QueryStream stream = new QueryStream(streamCapacity);
+		RequestFuture<IQ> queryFuture = createQuerySender(stream).sendQuery(requestIQ);
+		queryFuture.addCallback(new RequestFuture.Callback<IQ>() {
+			@Override
+			public void onSuccess(IQ response) {
+				stream.end();
+			}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				stream.end();
+			}
+		});
+		int count = 0;
 		try {
-			IQ responseIQ = queryFuture.get(2000, TimeUnit.MILLISECONDS);
-			if (responseIQ.getType() == IQ.Type.ERROR) {
-				XMPPError error = responseIQ.getError();
-				if (XMPPError.Condition.not_allowed.toString().equalsIgnoreCase(error.getCondition())) {
-					throw new QueryException(QueryException.Type.ACCESS_DENIED, "The currrent user is not allowed to access this data object.");
+			while (true) {
+				DataObject dataObject = stream.take(timeout);
+				if (dataObject != null) {
+					consumer.handleDataObject(dataObject);
+					count++;
+				} else if (stream.isDrained()) {
+					break;
 				} else {
-					throw new QueryException(QueryException.Type.FAILURE, "Failed to perform query. " + error.getCondition() + ": " + error.getMessage());
+					queryFuture.cancel(false);
+					throw new QueryException(QueryException.Type.FAILURE, "The request timed out.");
 				}
-			} else if (responseIQ instanceof QueryResponseIQ) {
-				dataObjects = ((QueryResponseIQ) responseIQ).getResult();
-			} else {
-				throw new QueryException(QueryException.Type.FAILURE, "Invalid query iq type as response: " + responseIQ.getChildElementXML());
 			}
+			// The result is collected if the response could not be routed to the stream.
+			for (DataObject dataObject : QueryCursor.checkResponse(queryFuture.get(timeout, TimeUnit.MILLISECONDS)).getResult()) {
+				consumer.handleDataObject(dataObject);
+				count++;
+			}
+			return count;
+		} catch (TimeoutException e) {
+			queryFuture.cancel(false);
+			throw new QueryException(QueryException.Type.FAILURE, "The request timed out.", e);
 		} catch (InterruptedException e) {
+			queryFuture.cancel(false);
 			throw new QueryException(QueryException.Type.FAILURE, "The request was interrupted.", e);
 		} catch (ExecutionException e) {
+			if (e.getCause() instanceof QueryException) {
+				throw (QueryException) e.getCause();
+			}
 			throw new QueryException(QueryException.Type.FAILURE, "The request handling procedure caused an excution error.", e);
-		} catch (TimeoutException e) {
-			throw new QueryException(QueryException.Type.FAILURE, "The request timed out.", e);
+		} finally {
+			stream.close();
 		}
-		
-		return dataObjects;
+	}
+	
+	/**
+	 * Creates a sender for queries to the persistence service of the current connection.
+	 * A query is removed from the pending queries if it is cancelled.
+	 * Queries are registered at the router of the connection until their response is received or the connection is reset.
+	 * @param stream Stream to pass the data objects of the response to, or <code>null</code> to collect them in the response.
+	 * A stream must only be given for a sender of a single query.
+	 * @return Query sender.
+	 */
+	private QueryCursor.QuerySender createQuerySender(final QueryStream stream) {
+		final String persistenceServiceJID = connectionHandler.getNetworkInformation().getPersistenceServiceJID();
+		final String fullJID = userInfo.getFullJID();
+		final XMPPConnection connection = this.connection;
+		final QueryStreamRouter queryRouter = this.queryRouter;
+		return new QueryCursor.QuerySender() {
+			@Override
+			public RequestFuture<IQ> sendQuery(QueryRequestIQ request) {
+				request.setFrom(fullJID);
+				request.setTo(persistenceServiceJID);
+				final String packetId = request.getPacketID();
+				RequestFuture<IQ> queryFuture = new RequestFuture<IQ>();
+				queryFuture.addCallback(new RequestFuture.Callback<IQ>() {
+					@Override
+					public void onSuccess(IQ response) {
+					}
+					
+					@Override
+					public void onFailure(Throwable cause) {
+						// The query stays registered at the router until its response is received.
+						pendingPersistenceServiceQueries.remove(packetId);
+					}
+				});
+				queryRouter.register(packetId, stream);
+				pendingPersistenceServiceQueries.put(packetId, queryFuture);
+				try {
+					connection.sendPacket(request);
+				} catch (RuntimeException e) {
+					queryRouter.complete(packetId);
+					queryFuture.setException(e);
+				}
+				return queryFuture;
+			}
+		};
+	}
+
+	/**
+	 * Sends a query unless an identical query is pending, in which case the result of the pending query is shared.
+	 * @param queryType Type of the query, part of the query key.
+	 * @param ids Space or data object identifiers of the query.
+	 * @param filters Filters of the query. May be <code>null</code>.
+	 * @param requestIQ Query to send.
+	 * @return Copy of the result list.
+	 * @throws QueryException Failed to perform the query.
+	 */
+	private List<DataObject> sendSharedQuery(String queryType, Collection<String> ids, Set<SerializableDataObjectFilter> filters, final QueryRequestIQ requestIQ) throws QueryException {
+		String key = QueryDeduplicator.createKey(queryType, ids, filters);
+		return queryDeduplicator.execute(key, new QueryDeduplicator.Query() {
+			@Override
+			public List<DataObject> execute() throws QueryException {
+				return handleQueryResponse(createQuerySender(null).sendQuery(requestIQ));
+			}
+		});
+	}
+
+	private List<DataObject> handleQueryResponse(RequestFuture<IQ> queryFuture) throws QueryException {
+		return QueryCursor.awaitResponse(queryFuture, timeout).getResult();
 	}
 	
 	private int handleDeleteResponse(RequestFuture<IQ> queryFuture) throws QueryException {
@@ -1076,4 +2157,193 @@ public class DataHandler implements OfflineModeHandler, de.imc.mirror.sdk.DataHa
 		}
 	}
 	
+	/**
+	 * Slot acquired in the publish window and the flow control of a pubsub service.
+	 */
+	private static class PublishSlot {
+		private final String spaceId;
+		private final PublishWindow window;
+		private final PublishFlowController flowController;
+		
+		public PublishSlot(String spaceId, PublishWindow window, PublishFlowController flowController) {
+			this.spaceId = spaceId;
+			this.window = window;
+			this.flowController = flowController;
+		}
+		
+		/**
+		 * Releases the slot without sending a request.
+		 */
+		public void release() {
+			flowController.onFailure();
+			window.release(spaceId);
+		}
+	}
+	
+	/**
+	 * Data object waiting in a coalescing queue.
+	 */
+	private static class PendingPublish {
+		private final DataObjectHeader header;
+		private final SimplePayload payload;
+		private final List<RequestFuture<String>> publishFutures;
+		
+		public PendingPublish(DataObjectHeader header, SimplePayload payload, RequestFuture<String> publishFuture) {
+			this.header = header;
+			this.payload = payload;
+			this.publishFutures = new ArrayList<RequestFuture<String>>();
+			this.publishFutures.add(publishFuture);
+		}
+	}
+	
+	/**
+	 * Queue of data objects to publish on a space, in which a newer data object replaces a superseded pending one.
+	 * The queue is drained by a single task, which sends as many data objects per request as allowed
+	 * whenever the publish window and the flow control permit a request.
+	 * Data objects are therefore coalesced while the space is congested.
+	 */
+	private class CoalescingQueue implements Runnable {
+		private final String spaceId;
+		private final CoalescingIndex<PendingPublish> index;
+		private boolean isDraining;
+		
+		public CoalescingQueue(String spaceId) {
+			this.spaceId = spaceId;
+			this.index = new CoalescingIndex<PendingPublish>();
+			this.isDraining = false;
+		}
+		
+		/**
+		 * Adds a data object to the queue and starts draining the queue if necessary.
+		 * @param header Header of the data object.
+		 * @param payload Payload to publish.
+		 * @return Future completed with the pubsub item id when the request is acknowledged.
+		 */
+		public RequestFuture<String> add(DataObjectHeader header, SimplePayload payload) {
+			RequestFuture<String> publishFuture = new RequestFuture<String>();
+			PendingPublish pending = new PendingPublish(header, payload, publishFuture);
+			boolean isDrainRequired;
+			synchronized (this) {
+				PendingPublish replaced = index.put(header, pending);
+				if (replaced != null) {
+					pending.publishFutures.addAll(0, replaced.publishFutures);
+					supersededCount.incrementAndGet();
+				}
+				isDrainRequired = !isDraining;
+				isDraining = true;
+			}
+			if (isDrainRequired) {
+				coalescingExecutor.execute(this);
+			}
+			return publishFuture;
+		}
+		
+		private synchronized List<PendingPublish> poll(int maxCount, boolean isLast) {
+			List<PendingPublish> polled = new ArrayList<PendingPublish>(Math.min(maxCount, index.size()));
+			while (polled.size() < maxCount && !index.isEmpty()) {
+				polled.add(index.poll());
+			}
+			if (isLast) {
+				isDraining = false;
+			}
+			return polled;
+		}
+		
+		private void fail(Throwable cause, boolean isLast) {
+			for (PendingPublish pending : poll(Integer.MAX_VALUE, isLast)) {
+				for (RequestFuture<String> publishFuture : pending.publishFutures) {
+					publishFuture.setException(cause);
+				}
+			}
+		}
+		
+		@Override
+		public void run() {
+			while (true) {
+				synchronized (this) {
+					if (index.isEmpty()) {
+						isDraining = false;
+						return;
+					}
+				}
+				if (getMode() != Mode.ONLINE) {
+					for (PendingPublish pending : poll(Integer.MAX_VALUE, false)) {
+						String payloadId = saveToOutbox(spaceId, pending.header, pending.payload);
+						for (RequestFuture<String> publishFuture : pending.publishFutures) {
+							publishFuture.setResponse(payloadId);
+						}
+					}
+					continue;
+				}
+				NodeRoute target;
+				PublishSlot slot;
+				try {
+					target = getPublishTarget(spaceId);
+					slot = acquirePublishSlot(target);
+				} catch (UnknownEntityException e) {
+					fail(e, false);
+					continue;
+				} catch (InterruptedException e) {
+					fail(e, true);
+					return;
+				} catch (RuntimeException e) {
+					logger.log(Level.WARNING, "Failed to publish data objects on space " + spaceId + ".", e);
+					fail(e, false);
+					continue;
+				}
+				List<PendingPublish> batch = poll(maxItemsPerPublish, false);
+				if (batch.isEmpty()) {
+					slot.release();
+					continue;
+				}
+				List<SimplePayload> payloads = new ArrayList<SimplePayload>(batch.size());
+				for (PendingPublish pending : batch) {
+					payloads.add(pending.payload);
+				}
+				PublishBatch publishBatch = new PublishBatch(payloads);
+				for (int i = 0; i < batch.size(); i++) {
+					forward(publishBatch.getFutures().get(i), batch.get(i).publishFutures);
+				}
+				publishBatch.complete(sendPublishRequest(target, slot, publishBatch.getItems()));
+			}
+		}
+		
+		/**
+		 * Completes the futures of all data objects coalesced into an item with the result of the item.
+		 */
+		private void forward(RequestFuture<String> itemFuture, final List<RequestFuture<String>> publishFutures) {
+			itemFuture.addCallback(new RequestFuture.Callback<String>() {
+				@Override
+				public void onSuccess(String itemId) {
+					for (RequestFuture<String> publishFuture : publishFutures) {
+						publishFuture.setResponse(itemId);
+					}
+				}
+				
+				@Override
+				public void onFailure(Throwable cause) {
+					for (RequestFuture<String> publishFuture : publishFutures) {
+						publishFuture.setException(cause);
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Pending request for the payloads of multiple items of a node.
+	 */
+	private static class PayloadRequest {
+		private final String packetId;
+		private final String nodeId;
+		private final List<String> itemIds;
+		private final long timestamp;
+		
+		public PayloadRequest(String packetId, String nodeId, List<String> itemIds) {
+			this.packetId = packetId;
+			this.nodeId = nodeId;
+			this.itemIds = itemIds;
+			this.timestamp = System.currentTimeMillis();
+		}
+	}
 }
@@ -7,6 +7,7 @@ import java.io.Serializable;
 
 import org.jdom2.Attribute;
 import org.jdom2.Element;
+import org.jdom2.JDOMException;
 import org.jdom2.Namespace;
 import org.jdom2.output.XMLOutputter;
 
@@ -16,9 +17,11 @@ import de.imc.mirror.sdk.java.cdm.CDMData_0_1;
 import de.imc.mirror.sdk.java.cdm.CDMData_0_2;
 import de.imc.mirror.sdk.java.cdm.CDMData_1_0;
 import de.imc.mirror.sdk.java.cdm.CDMData_2_0;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 /**
  * A data object represents an item published on a pubsub node of a space.
+ * Data objects are immutable. The XML string of a data object is created once and reused for publishing and caching.
  * @author nmach, simon.schwantzer(at)im-c.de
  *
  */
@@ -39,33 +42,60 @@ public class DataObject implements Serializable, de.imc.mirror.sdk.DataObject{
 	protected static final String CDM_0_2 = "0.2";
 	protected static final String CDM_1_0 = "1.0";
 	
-	private Element element;
+	private volatile Element element;
 	private String elementName;
-	private CDMData cdmData;
+	private volatile DataObjectHeader header; // built from the element on first use if the object was not created from its XML string
+	private volatile String xml;
+	private volatile CDMData cdmData;
+	private volatile boolean isCDMDataResolved;
 	
 	protected DataObject(DataObjectBuilder builder) {
 		this.elementName = builder.elementName;
 		this.element = builder.element;
+		this.header = null;
+		this.xml = null;
+		this.cdmData = null;
+		this.isCDMDataResolved = false;
+	}
+	
+	/**
+	 * Creates a data object from its XML string.
+	 * The XML element is only built when it is requested, the header information is available immediately.
+	 * @param header Header of the data object, e.g., read using a streaming parser.
+	 * @param xml XML string of the data object.
+	 */
+	public DataObject(DataObjectHeader header, String xml) {
+		this.elementName = header.getElementName();
+		this.element = null;
+		this.header = header;
+		this.xml = xml;
+		this.cdmData = null;
+		this.isCDMDataResolved = false;
+	}
+	
+	/**
+	 * Creates the CDM object for the data object element.
+	 * If the element declares a CDM version, only this version is verified. Otherwise the version is guessed.
+	 * @return CDM data object or <code>null</code> if no CDM version can be applied.
+	 */
+	private CDMData createCDMData() {
 		String cdmVersion = this.getCDMVersion();
+		Element element = getElement();
 		if (cdmVersion != null) {
 			switch (CDMVersion.getVersionForString(cdmVersion)) {
 			case CDM_0_1:
-				cdmData = CDMData_0_1.verify(element).isEmpty() ? new CDMData_0_1(element) : null;
-				break;
+				return CDMData_0_1.verify(element).isEmpty() ? new CDMData_0_1(element) : null;
 			case CDM_0_2:
-				cdmData = CDMData_0_2.verify(element).isEmpty() ? new CDMData_0_2(element) : null;
-				break;
+				return CDMData_0_2.verify(element).isEmpty() ? new CDMData_0_2(element) : null;
 			case CDM_1_0:
-				cdmData = CDMData_1_0.verify(element).isEmpty() ? new CDMData_1_0(element) : null;
-				break;
+				return CDMData_1_0.verify(element).isEmpty() ? new CDMData_1_0(element) : null;
 			case CDM_2_0:
-				cdmData = CDMData_2_0.verify(element).isEmpty() ? new CDMData_2_0(element) : null;
-				break;
+				return CDMData_2_0.verify(element).isEmpty() ? new CDMData_2_0(element) : null;
 			default:
-				cdmData = null;
+				return null;
 			}
 		} else {
-			cdmData = guessCDMVersion(element);
+			return guessCDMVersion(getElement());
 		}
 	}
 	
@@ -90,12 +120,23 @@ public class DataObject implements Serializable, de.imc.mirror.sdk.DataObject{
 
 	/**
 	 * Returns an XML string representing the data object.
+	 * The string is created on the first call and reused afterwards.
 	 * @return The object as XML string.
 	 */
 	@Override
 	public String toString(){
-		XMLOutputter out = new XMLOutputter();
-		return out.outputString(element);
+		String result = xml;
+		if (result == null) {
+			synchronized (this) {
+				result = xml;
+				if (result == null) {
+					XMLOutputter out = XMLCodec.getOutputter();
+					result = out.outputString(element);
+					xml = result;
+				}
+			}
+		}
+		return result;
 	}
 	
 	/**
@@ -107,11 +148,45 @@ public class DataObject implements Serializable, de.imc.mirror.sdk.DataObject{
 	
 	/**
 	 * Returns the XML element for this data object.
+	 * If the object was created from its XML string, the element is built on the first call.
+	 * The element must not be modified, as the data object and its XML string are shared.
 	 * @return XML element. This is the payload published on the pubsub node.
+	 * @throws IllegalStateException The XML string of the object could not be parsed.
 	 */
 	@Override
 	public Element getElement(){
-		return element;
+		Element result = element;
+		if (result == null) {
+			synchronized (this) {
+				result = element;
+				if (result == null) {
+					try {
+						result = XMLCodec.parseElement(xml);
+					} catch (JDOMException e) {
+						throw new IllegalStateException("Failed to parse data object.", e);
+					} catch (IOException e) {
+						throw new IllegalStateException("Failed to read data object.", e);
+					}
+					element = result;
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the header of the data object, i.e., the information of the root element.
+	 * For objects created from their XML string, the header is available without building the XML element.
+	 * Otherwise, it is built from the element once and kept, as the element must not be modified.
+	 * @return Header of the data object.
+	 */
+	public DataObjectHeader getHeader() {
+		DataObjectHeader result = header;
+		if (result == null) {
+			result = DataObjectHeader.fromElement(element);
+			header = result;
+		}
+		return result;
 	}
 	
 	/**
@@ -122,31 +197,40 @@ public class DataObject implements Serializable, de.imc.mirror.sdk.DataObject{
 	 */
 	@Override
 	public String getId() {
-		return element.getAttributeValue(ID);
+		return header != null ? header.getId() : element.getAttributeValue(ID);
 	}
 	
 	/**
 	 * @return The set cdmversion. If it wasn't set this method returns null.
 	 */
 	public String getCDMVersion(){
-		return element.getAttributeValue(CDMVERSION);		
+		return header != null ? header.getCDMVersion() : element.getAttributeValue(CDMVERSION);
 	}
 	
 	/**
 	 * @return The set modelversion. If it wasn't set this method returns null.
 	 */
 	public String getModelVersion(){
-		return element.getAttributeValue(MODELVERSION);		
+		return header != null ? header.getModelVersion() : element.getAttributeValue(MODELVERSION);
 	}
 
 	/**
 	 * Returns the common data model information for this object.
 	 * If no information is contained, i.e., the data object does not instantiate a
 	 * MIRROR data model, <code>null</code> will be returned.
+	 * The CDM information is verified on the first call and reused afterwards.
 	 * @return CDM information container or <code>null</code> if no CDM data is available.
 	 */
 	@Override
 	public CDMData getCDMData() {
+		if (!isCDMDataResolved) {
+			synchronized (this) {
+				if (!isCDMDataResolved) {
+					cdmData = createCDMData();
+					isCDMDataResolved = true;
+				}
+			}
+		}
 		return cdmData;
 	}
 
@@ -156,7 +240,7 @@ public class DataObject implements Serializable, de.imc.mirror.sdk.DataObject{
 	 */
 	@Override
 	public String getNamespaceURI() {
-		return element.getNamespaceURI();
+		return header != null ? header.getNamespaceURI() : element.getNamespaceURI();
 	}
 
 	/**
@@ -176,6 +260,9 @@ public class DataObject implements Serializable, de.imc.mirror.sdk.DataObject{
 	 */
 	@Override
 	public DataModel getDataModel(){
+		if (header != null) {
+			return header.getDataModel();
+		}
 		Namespace ns = element.getNamespace("xsi");
 		Attribute dataAttribute = element.getAttribute("schemaLocation", ns);
 		DataModel result = null;
@@ -188,14 +275,17 @@ public class DataObject implements Serializable, de.imc.mirror.sdk.DataObject{
 	}
 	
 	private synchronized void writeObject(ObjectOutputStream s) throws IOException{
-		s.writeObject(element);
-		s.writeObject(cdmData);
+		s.writeObject(getElement());
+		s.writeObject(getCDMData());
 	}
 	
 	private synchronized void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException{
 		this.element = (Element) s.readObject();
 		this.cdmData = (CDMData) s.readObject();
+		this.isCDMDataResolved = true;
 		this.elementName = element.getName();
+		this.header = null;
+		this.xml = null;
 	}
 
 }
@@ -18,6 +18,7 @@ import org.jdom2.input.SAXBuilder;
 
 import de.imc.mirror.sdk.cdm.CDMVersion;
 import de.imc.mirror.sdk.config.NamespaceConfig;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 /**
  * Builder for data objects.
@@ -27,6 +28,7 @@ public class DataObjectBuilder {
 	protected final String elementName;
 	protected final String namespace;
 	protected Element element;
+	private boolean isElementShared;
 	
 	/**
 	 * Builder for data objects.
@@ -41,11 +43,12 @@ public class DataObjectBuilder {
 	
 	/**
 	 * Builder for building a data object.
+	 * The given element is copied, so that neither the element nor a data object it belongs to is modified by the builder.
 	 * @param element A XML element to be used as root element.
 	 * @param namespace The namespace for the data object.
 	 */
 	public DataObjectBuilder(Element element, String namespace){
-		this.element = element;
+		this.element = element.clone();
 		this.elementName = element.getName();
 		this.namespace = namespace;
 	}
@@ -57,9 +60,9 @@ public class DataObjectBuilder {
 	 * @return This builder instance.
 	 */
 	public DataObjectBuilder setCDMData(CDMData cdmData){
-		cdmData.applyToElement(element);
+		cdmData.applyToElement(getMutableElement());
 		CDMVersion version = cdmData.getCDMVersion();
-		element.setAttribute("cdmVersion", version.getVersionString());
+		getMutableElement().setAttribute("cdmVersion", version.getVersionString());
 		return this;
 	}
 	
@@ -71,7 +74,7 @@ public class DataObjectBuilder {
 	 * @return This builder instance.
 	 */
 	public DataObjectBuilder addCDTCreationInfo(Date date, String person, String application) {
-		element.addNamespaceDeclaration(Namespace.getNamespace("cdt", NamespaceConfig.MODEL_CDT));
+		getMutableElement().addNamespaceDeclaration(Namespace.getNamespace("cdt", NamespaceConfig.MODEL_CDT));
 		Element creationInfoElement = new Element("creationInfo", this.namespace);
 		if (date != null) {
 			Element dateElement = new Element("date", NamespaceConfig.MODEL_CDT);
@@ -92,7 +95,7 @@ public class DataObjectBuilder {
 			applicationElement.setText(application);
 			creationInfoElement.addContent(applicationElement);
 		}
-		element.addContent(creationInfoElement);
+		getMutableElement().addContent(creationInfoElement);
 		return this;
 	}
 	
@@ -109,7 +112,7 @@ public class DataObjectBuilder {
 		if (content != null) {
 			if (parseContent) {
 				try {
-					SAXBuilder reader = new SAXBuilder();
+					SAXBuilder reader = XMLCodec.getBuilder();
 					StringReader in = new StringReader(content);
 					Document document = null;
 					document = reader.build(in);
@@ -126,7 +129,7 @@ public class DataObjectBuilder {
 			}	
 		}
 		
-		element.addContent(newElem);
+		getMutableElement().addContent(newElem);
 		return this;
 	}
 	
@@ -143,7 +146,7 @@ public class DataObjectBuilder {
 		if (content != null) {
 			if (parseContent) {
 				try {
-					SAXBuilder reader = new SAXBuilder();
+					SAXBuilder reader = XMLCodec.getBuilder();
 					StringReader in = new StringReader(content);
 					Document document;
 					document = reader.build(in);
@@ -165,7 +168,7 @@ public class DataObjectBuilder {
 				newElem.setAttribute(attrName, attributes.get(attrName));
 			}
 		}
-		element.addContent(newElem);
+		getMutableElement().addContent(newElem);
 		
 		return this;
 	}
@@ -176,7 +179,7 @@ public class DataObjectBuilder {
 	 * @return This builder instance.
 	 */
 	public DataObjectBuilder addElement(Element element) {
-		this.element.addContent(element);
+		getMutableElement().addContent(element);
 		return this;
 	}
 
@@ -187,7 +190,7 @@ public class DataObjectBuilder {
 	 * @return The modified Builder.
 	 */
 	public DataObjectBuilder setAttribute(String attributeName, String value) {
-		element.setAttribute(attributeName, value);
+		getMutableElement().setAttribute(attributeName, value);
 		return this;
 	}
 	
@@ -198,24 +201,41 @@ public class DataObjectBuilder {
 	 */
 	public DataObjectBuilder setAttributes(Map<String, String> attributes) {
 		for (String name:attributes.keySet()){
-			element.setAttribute(name, attributes.get(name));
+			getMutableElement().setAttribute(name, attributes.get(name));
 		}
 		return this;
 	}
 	
+	/**
+	 * Returns the root element to be modified.
+	 * After a data object was built, the element is owned by the data object and a copy is created for further modifications.
+	 * @return Root element which is not shared with a data object.
+	 */
+	private Element getMutableElement() {
+		if (isElementShared) {
+			element = element.clone();
+			isElementShared = false;
+		}
+		return element;
+	}
+	
 	/**
 	 * Returns the root element for the dataobject to be build.
+	 * Modifications of the element do not affect data objects already built by this builder.
 	 * @return The root element.
 	 */
 	public Element getRootElement() {
-		return element;
+		return getMutableElement();
 	}
 	
 	/**
 	 * Builds the data object.
+	 * The data object takes over the current root element. Subsequent modifications of the builder are applied to a copy,
+	 * so that the data object remains unchanged.
 	 * @return A new data object based on the given information.
 	 */
 	public DataObject build() {
+		isElementShared = true;
 		return new DataObject(this);
 	}
 }
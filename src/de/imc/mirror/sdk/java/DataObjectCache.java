@@ -0,0 +1,126 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.imc.mirror.sdk.DataObject;
+
+/**
+ * Bounded in-memory cache of data objects by their identifiers.
+ * Entries expire after a time to live and the least recently used entries are evicted if the capacity is exceeded.
+ * Invalidated identifiers are marked for the time to live, so that they are not resolved from a local store in the meantime.
+ *
+ * {@link DataHandler}
+ */
+public class DataObjectCache {
+
+	public static final int DEFAULT_CAPACITY = 1000;
+	public static final long DEFAULT_TIME_TO_LIVE = 60000;
+
+	/**
+	 * Cached data object or invalidation marker.
+	 */
+	private static class Entry {
+		private final DataObject dataObject;
+		private final long expirationTime;
+
+		public Entry(DataObject dataObject, long expirationTime) {
+			this.dataObject = dataObject;
+			this.expirationTime = expirationTime;
+		}
+	}
+
+	private final long timeToLive;
+	private final Map<String, Entry> entries; // <data object id, entry>
+
+	/**
+	 * Creates a cache with default capacity and time to live.
+	 */
+	public DataObjectCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * Creates a cache.
+	 * @param capacity Maximum number of entries, including invalidation markers.
+	 * @param timeToLive Time in milliseconds after which an entry expires.
+	 */
+	public DataObjectCache(final int capacity, long timeToLive) {
+		if (capacity < 1 || timeToLive < 1) {
+			throw new IllegalArgumentException("The capacity and the time to live have to be positive.");
+		}
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns a cached data object.
+	 * @param id Identifier of the data object.
+	 * @return Data object or <code>null</code> if it is not cached, expired or invalidated.
+	 */
+	public synchronized DataObject get(String id) {
+		Entry entry = getEntry(id);
+		return entry != null ? entry.dataObject : null;
+	}
+
+	/**
+	 * Checks if the identifier was invalidated within the time to live.
+	 * @param id Identifier of the data object.
+	 * @return <code>true</code> if the data object has to be retrieved from the persistence service, otherwise <code>false</code>.
+	 */
+	public synchronized boolean isInvalidated(String id) {
+		Entry entry = getEntry(id);
+		return entry != null && entry.dataObject == null;
+	}
+
+	private Entry getEntry(String id) {
+		Entry entry = entries.get(id);
+		if (entry != null && entry.expirationTime <= System.currentTimeMillis()) {
+			entries.remove(id);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Adds a data object to the cache. An invalidation marker of the data object is replaced.
+	 * Data objects without identifier are ignored.
+	 * @param dataObject Data object to cache.
+	 */
+	public synchronized void put(DataObject dataObject) {
+		String id = dataObject.getId();
+		if (id != null) {
+			entries.put(id, new Entry(dataObject, System.currentTimeMillis() + timeToLive));
+		}
+	}
+
+	/**
+	 * Removes a data object from the cache and marks it as invalidated.
+	 * @param id Identifier of the data object.
+	 */
+	public synchronized void invalidate(String id) {
+		entries.put(id, new Entry(null, System.currentTimeMillis() + timeToLive));
+	}
+
+	/**
+	 * Removes all entries, including invalidation markers.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of entries, including invalidation markers and expired entries which were not accessed yet.
+	 * @return Number of entries.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+}
@@ -0,0 +1,361 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatch stage for data object notifications.
+ * Tasks are queued per space and executed in FIFO order for each space, while different spaces are processed
+ * in parallel by the configured executor. This way, listeners are not called on the packet reader thread of
+ * the XMPP connection.
+ *
+ * {@link DataHandler}
+ */
+public class DataObjectDispatcher {
+
+	/**
+	 * Behavior when the queue of a space is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The new task is discarded.
+		 */
+		DROP,
+		/**
+		 * The calling thread is blocked until the queue has capacity again.
+		 * Should only be used if tasks are not dispatched by the packet reader thread, as it stalls the connection otherwise.
+		 */
+		BLOCK,
+		/**
+		 * The new task is moved to an unbounded overflow list of the space, which is processed after the queue in FIFO order.
+		 * No task is lost and the calling thread is never blocked, but the memory used by a slow space is not bounded.
+		 */
+		SPILL
+	}
+
+	private static final Logger logger = Logger.getLogger(DataObjectDispatcher.class.getName());
+
+	/**
+	 * Default capacity of the queue of a single space.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	/**
+	 * Maximum number of tasks executed for one space before the space yields the executor thread.
+	 */
+	private static final int BATCH_SIZE = 64;
+
+	private final Executor executor;
+	private final ExecutorService ownedExecutor;
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final ConcurrentMap<String, SpaceQueue> queues;
+	private volatile boolean isShutdown;
+
+	private final AtomicLong dispatchedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong spilledCount = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	/**
+	 * Creates a dispatcher with an own pool of daemon threads, the default queue capacity
+	 * and the {@link OverflowPolicy#DROP} policy.
+	 */
+	public DataObjectDispatcher() {
+		this(null, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP);
+	}
+
+	/**
+	 * Creates a dispatcher.
+	 * @param executor Executor to run the listener calls. If <code>null</code>, an own pool of daemon threads is created.
+	 * @param queueCapacity Maximum number of pending tasks per space.
+	 * @param overflowPolicy Behavior if the queue of a space is full.
+	 */
+	public DataObjectDispatcher(Executor executor, int queueCapacity, OverflowPolicy overflowPolicy) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("The queue capacity has to be positive.");
+		}
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("The overflow policy must not be null.");
+		}
+		if (executor == null) {
+			ownedExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger threadCount = new AtomicInteger();
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "DataObjectDispatcher-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.executor = ownedExecutor;
+		} else {
+			ownedExecutor = null;
+			this.executor = executor;
+		}
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		this.queues = new ConcurrentHashMap<String, SpaceQueue>();
+		this.isShutdown = false;
+	}
+
+	/**
+	 * Queues a task for the given space.
+	 * @param spaceId Identifier of the space the task belongs to.
+	 * @param task Task to execute.
+	 * @return <code>true</code> if the task was queued, <code>false</code> if it was dropped because the queue was full
+	 * or the dispatcher is shut down.
+	 */
+	public boolean dispatch(String spaceId, Runnable task) {
+		SpaceQueue queue = queues.get(spaceId);
+		if (queue == null) {
+			SpaceQueue newQueue = new SpaceQueue();
+			queue = queues.putIfAbsent(spaceId, newQueue);
+			if (queue == null) {
+				queue = newQueue;
+			}
+		}
+		return queue.enqueue(task);
+	}
+
+	/**
+	 * Returns the number of tasks pending for the given space, including spilled tasks.
+	 * @param spaceId Space identifier.
+	 * @return Number of queued tasks.
+	 */
+	public int getQueueDepth(String spaceId) {
+		SpaceQueue queue = queues.get(spaceId);
+		return queue != null ? queue.size() : 0;
+	}
+
+	/**
+	 * Returns the number of tasks pending for all spaces, including spilled tasks.
+	 * @return Number of queued tasks.
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (SpaceQueue queue : queues.values()) {
+			depth += queue.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Returns the number of tasks executed so far.
+	 * @return Number of executed tasks.
+	 */
+	public long getDispatchedCount() {
+		return dispatchedCount.get();
+	}
+
+	/**
+	 * Returns the number of tasks discarded because a queue was full or the dispatcher was shut down.
+	 * @return Number of dropped tasks.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of tasks moved to an overflow list because a queue was full.
+	 * Only applies to the {@link OverflowPolicy#SPILL} policy.
+	 * @return Number of spilled tasks.
+	 */
+	public long getSpilledCount() {
+		return spilledCount.get();
+	}
+
+	/**
+	 * Returns the average time between queuing a task and the completion of its execution.
+	 * @return Average dispatch latency in nanoseconds, <code>0</code> if no task was executed yet.
+	 */
+	public long getAverageDispatchLatency() {
+		long count = dispatchedCount.get();
+		return count > 0 ? totalLatency.get() / count : 0;
+	}
+
+	/**
+	 * Returns the maximum time between queuing a task and the completion of its execution.
+	 * @return Maximum dispatch latency in nanoseconds.
+	 */
+	public long getMaxDispatchLatency() {
+		return maxLatency.get();
+	}
+
+	/**
+	 * Returns the capacity of the queue of a single space.
+	 * @return Maximum number of pending tasks per space.
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Returns the policy applied when a queue is full.
+	 * @return Overflow policy.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Removes the queue of a space. Pending tasks are still executed.
+	 * @param spaceId Space identifier.
+	 */
+	public void removeSpace(String spaceId) {
+		SpaceQueue queue = queues.get(spaceId);
+		if (queue != null && queue.size() == 0) {
+			queues.remove(spaceId, queue);
+		}
+	}
+
+	/**
+	 * Shuts down the thread pool if it was created by this dispatcher.
+	 * Tasks already queued are still executed, tasks dispatched afterwards are dropped.
+	 * Executors passed to the constructor are not shut down.
+	 */
+	public void shutdown() {
+		isShutdown = true;
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+
+	private void recordLatency(long latency) {
+		dispatchedCount.incrementAndGet();
+		totalLatency.addAndGet(latency);
+		long max = maxLatency.get();
+		while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+			max = maxLatency.get();
+		}
+	}
+
+	/**
+	 * Task queue of a single space.
+	 * At most one drain task per space is submitted to the executor at a time, which preserves the order.
+	 * If the executor rejects a drain task, the queue is drained by the thread which tried to submit it,
+	 * so that queued tasks are never stranded.
+	 */
+	private class SpaceQueue implements Runnable {
+		private final LinkedList<QueuedTask> tasks = new LinkedList<QueuedTask>();
+		private final LinkedList<QueuedTask> overflow = new LinkedList<QueuedTask>();
+		private boolean scheduled = false;
+		private boolean overflowing = false;
+
+		public boolean enqueue(Runnable task) {
+			synchronized (this) {
+				if (isShutdown) {
+					droppedCount.incrementAndGet();
+					return false;
+				}
+				if (overflowPolicy == OverflowPolicy.SPILL && (tasks.size() >= queueCapacity || !overflow.isEmpty())) {
+					spilledCount.incrementAndGet();
+					if (!overflowing) {
+						overflowing = true;
+						logger.log(Level.WARNING, "A dispatcher queue is full. Data object notifications are spilled to an overflow list.");
+					}
+					overflow.add(new QueuedTask(task));
+				} else {
+					while (tasks.size() >= queueCapacity) {
+						if (overflowPolicy == OverflowPolicy.DROP) {
+							droppedCount.incrementAndGet();
+							if (!overflowing) {
+								overflowing = true;
+								logger.log(Level.WARNING, "A dispatcher queue is full. Data object notifications are dropped until it has capacity again.");
+							}
+							return false;
+						}
+						try {
+							this.wait();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							droppedCount.incrementAndGet();
+							return false;
+						}
+					}
+					overflowing = false;
+					tasks.add(new QueuedTask(task));
+				}
+				if (scheduled) {
+					return true;
+				}
+				scheduled = true;
+			}
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				// Other threads may have queued tasks in the meantime, which rely on this drain task.
+				logger.log(Level.WARNING, "The dispatcher executor rejected a drain task. The queue is drained by the current thread.", e);
+				run();
+			}
+			return true;
+		}
+
+		public synchronized int size() {
+			return tasks.size() + overflow.size();
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				// After a shutdown, the queue is drained without yielding, as the executor does not accept new drain tasks.
+				for (int i = 0; i < BATCH_SIZE || isShutdown; i++) {
+					QueuedTask task;
+					synchronized (this) {
+						task = tasks.poll();
+						if (task == null) {
+							scheduled = false;
+							return;
+						}
+						if (!overflow.isEmpty()) {
+							tasks.add(overflow.poll());
+						}
+						this.notifyAll();
+					}
+					try {
+						task.task.run();
+					} catch (RuntimeException e) {
+						logger.log(Level.WARNING, "A data object listener caused an exception.", e);
+					}
+					recordLatency(System.nanoTime() - task.queuedAt);
+				}
+				synchronized (this) {
+					if (tasks.isEmpty()) {
+						scheduled = false;
+						return;
+					}
+				}
+				try {
+					executor.execute(this);
+					return;
+				} catch (RejectedExecutionException e) {
+					logger.log(Level.FINE, "The dispatcher executor rejected a drain task. The queue is drained by the current thread.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queued task with the time it was queued.
+	 */
+	private static class QueuedTask {
+		private final Runnable task;
+		private final long queuedAt;
+
+		public QueuedTask(Runnable task) {
+			this.task = task;
+			this.queuedAt = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+
+/**
+ * Envelope information of a data object, i.e., the name and namespace of the root element and its attributes.
+ * The header is available without building the XML element of the data object.
+ */
+public class DataObjectHeader {
+	/**
+	 * Namespace of the XML schema instance attributes.
+	 */
+	public static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+
+	private final String elementName;
+	private final String namespaceURI;
+	private final Map<String, String> attributes;
+	private final String schemaLocation;
+
+	/**
+	 * Creates a header.
+	 * @param elementName Name of the root element.
+	 * @param namespaceURI Namespace URI of the root element.
+	 * @param attributes Map of attributes of the root element without namespace.
+	 * @param schemaLocation Value of the <code>xsi:schemaLocation</code> attribute. May be <code>null</code>.
+	 */
+	public DataObjectHeader(String elementName, String namespaceURI, Map<String, String> attributes, String schemaLocation) {
+		this.elementName = elementName;
+		this.namespaceURI = namespaceURI;
+		this.attributes = attributes != null ? attributes : Collections.<String, String>emptyMap();
+		this.schemaLocation = schemaLocation;
+	}
+
+	/**
+	 * Creates a header for the given element.
+	 * @param element Root element of a data object.
+	 * @return Header containing the information of the element.
+	 */
+	public static DataObjectHeader fromElement(Element element) {
+		Map<String, String> attributes = new HashMap<String, String>();
+		for (Attribute attribute : element.getAttributes()) {
+			if (attribute.getNamespace() == Namespace.NO_NAMESPACE) {
+				attributes.put(attribute.getName(), attribute.getValue());
+			}
+		}
+		String schemaLocation = element.getAttributeValue("schemaLocation", Namespace.getNamespace(XSI_NAMESPACE));
+		return new DataObjectHeader(element.getName(), element.getNamespaceURI(), attributes, schemaLocation);
+	}
+
+	/**
+	 * Returns the name of the root element.
+	 * @return Element name.
+	 */
+	public String getElementName() {
+		return elementName;
+	}
+
+	/**
+	 * Returns the namespace URI of the root element.
+	 * @return Namespace URI string.
+	 */
+	public String getNamespaceURI() {
+		return namespaceURI;
+	}
+
+	/**
+	 * Returns the value of an attribute of the root element.
+	 * @param name Name of the attribute. Only attributes without namespace are available.
+	 * @return Attribute value or <code>null</code> if the attribute is not set.
+	 */
+	public String getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * @return The data object identifier or <code>null</code> if not set.
+	 */
+	public String getId() {
+		return attributes.get("id");
+	}
+
+	/**
+	 * @return The timestamp string or <code>null</code> if not set.
+	 */
+	public String getTimestamp() {
+		return attributes.get("timestamp");
+	}
+
+	/**
+	 * @return The publisher or <code>null</code> if not set.
+	 */
+	public String getPublisher() {
+		return attributes.get("publisher");
+	}
+
+	/**
+	 * @return The referenced object identifier or <code>null</code> if not set.
+	 */
+	public String getRef() {
+		return attributes.get("ref");
+	}
+
+	/**
+	 * @return The custom identifier or <code>null</code> if not set.
+	 */
+	public String getCustomId() {
+		return attributes.get("customId");
+	}
+
+	/**
+	 * @return The identifier of the object updated by this object or <code>null</code> if not set.
+	 */
+	public String getUpdates() {
+		return attributes.get("updates");
+	}
+
+	/**
+	 * @return The CDM version or <code>null</code> if not set.
+	 */
+	public String getCDMVersion() {
+		return attributes.get("cdmVersion");
+	}
+
+	/**
+	 * @return The model version or <code>null</code> if not set.
+	 */
+	public String getModelVersion() {
+		return attributes.get("modelVersion");
+	}
+
+	/**
+	 * @return The value of the <code>xsi:schemaLocation</code> attribute or <code>null</code> if not set.
+	 */
+	public String getSchemaLocation() {
+		return schemaLocation;
+	}
+
+	/**
+	 * Returns the data model declared by the schema location.
+	 * @return Data model or <code>null</code> if no schema location is set.
+	 */
+	public DataModel getDataModel() {
+		if (schemaLocation == null) {
+			return null;
+		}
+		String[] string = schemaLocation.split(" ");
+		return new DataModel(string[0], string[1]);
+	}
+}
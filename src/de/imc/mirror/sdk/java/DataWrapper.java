@@ -1,8 +1,14 @@
 package de.imc.mirror.sdk.java;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.jivesoftware.smackx.pubsub.SimplePayload;
 
@@ -21,7 +27,15 @@ import de.imc.mirror.sdk.java.data.DatabaseConfig;
  */
 public abstract class DataWrapper {
 	
+	/**
+	 * Number of payloads read at once when the sendcache is iterated.
+	 */
+	protected static final int SEND_CACHE_CHUNK_SIZE = 256;
+	
+	private static final Logger logger = Logger.getLogger(DataWrapper.class.getName());
 	private static DataWrapper instance;	
+	private static final Map<String, OutboxLog> outboxLogs = new HashMap<String, OutboxLog>(); // <canonical directory path, outbox log>
+	private OutboxLog outboxLog;
 
 	/**
 	 * Returns a previously created datawrapper instance.
@@ -41,8 +55,66 @@ public abstract class DataWrapper {
 			instance = new DataWrapperIntern();
 		}
 		else instance = new DataWrapperExtern(dbConfig);
+		String outboxLocation = dbConfig.getOutboxLocation();
+		if (outboxLocation != null){
+			try {
+				instance.setOutboxLog(openOutboxLog(outboxLocation));
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Failed to open the outbox log at " + outboxLocation + ". Payloads to send are cached without it.", e);
+			}
+		}
 		return instance;
 	}
+	
+	/**
+	 * Returns the outbox log stored in the given directory.
+	 * A log is opened only once per directory, so that handlers created with the same configuration share it.
+	 * @param location Path of the directory.
+	 * @return The open outbox log.
+	 * @throws IOException Failed to open or recover the log.
+	 */
+	private static synchronized OutboxLog openOutboxLog(String location) throws IOException {
+		String path = new File(location).getCanonicalPath();
+		OutboxLog outboxLog = outboxLogs.get(path);
+		if (outboxLog == null || outboxLog.isClosed()) {
+			outboxLog = new OutboxLog(new File(path));
+			outboxLogs.put(path, outboxLog);
+			Runtime.getRuntime().removeShutdownHook(ShutdownInterceptor.getInstance());
+			Runtime.getRuntime().addShutdownHook(ShutdownInterceptor.getInstance());
+		}
+		return outboxLog;
+	}
+	
+	/**
+	 * Closes all outbox logs opened by datawrapper instances.
+	 * Handlers using a closed log have to be created again to cache payloads to send.
+	 */
+	protected static synchronized void closeOutboxLogs(){
+		for (Map.Entry<String, OutboxLog> entry : outboxLogs.entrySet()){
+			try {
+				entry.getValue().close();
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Failed to close the outbox log at " + entry.getKey() + ".", e);
+			}
+		}
+		outboxLogs.clear();
+	}
+	
+	/**
+	 * Returns the outbox log used to cache payloads to send.
+	 * @return The outbox log or <code>null</code> if the payloads are cached by the wrapper itself.
+	 */
+	protected OutboxLog getOutboxLog(){
+		return outboxLog;
+	}
+	
+	/**
+	 * Sets the outbox log used to cache payloads to send instead of the storage of the wrapper.
+	 * @param outboxLog The outbox log to use.
+	 */
+	protected void setOutboxLog(OutboxLog outboxLog){
+		this.outboxLog = outboxLog;
+	}
 
 	/**
 	 * Deletes all cached spaces for the user.
@@ -88,6 +160,13 @@ public abstract class DataWrapper {
 	protected abstract void savePayloadToSend(String user, String payloadId,
 			String spaceId, SimplePayload payload);
 
+	/**
+	 * Removes a payload from the sendcache, e.g., because it was superseded by a newer payload.
+	 * @param user The user to send the payload.
+	 * @param payloadId The id of the payload to remove.
+	 */
+	protected abstract void removePayloadToSend(String user, String payloadId);
+
 	/**
 	 * Gets all payloads to send for the given user.
 	 * @param user The user to get the payloads for.
@@ -95,6 +174,14 @@ public abstract class DataWrapper {
 	 */
 	protected abstract Map<String, SimplePayload> getPayloadsToSend(String user);
 
+	/**
+	 * Returns an iterator over the payloads to send for the given user, in the order they were saved.
+	 * The payloads are read in chunks of {@link #SEND_CACHE_CHUNK_SIZE}, so that the sendcache does not have to fit in memory.
+	 * @param user The user to get the payloads for.
+	 * @return Iterator over the payloads together with the spaces to send them to.
+	 */
+	protected abstract Iterator<SavedPayload> iteratePayloadsToSend(String user);
+
 	/**
 	 * Gets the space to send a payload to.
 	 * @param id The id of the payload to get the node for.
@@ -102,6 +189,20 @@ public abstract class DataWrapper {
 	 */
 	protected abstract String getSpaceForPayload(String id);
 
+	/**
+	 * Makes the removal of payloads from the sendcache durable, so that removed payloads are not sent again after a restart.
+	 * The sendcache of the database is updated immediately, the outbox log is forced to the storage device.
+	 */
+	protected void checkpointSendCache(){
+		if (outboxLog != null){
+			try {
+				outboxLog.checkpoint();
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while forcing the outbox log", e);
+			}
+		}
+	}
+
 	/**
 	 * Deletes all entries of the sendcache for an user.
 	 * @param user The user to delete entries for.
@@ -130,6 +231,20 @@ public abstract class DataWrapper {
 	protected abstract List<DataObject> getCachedDataObjects(
 			String nodeId);
 
+	/**
+	 * Gets a cached item.
+	 * @param id The id of the item to get.
+	 * @return The cached data object or <code>null</code> if the item is not cached.
+	 */
+	protected abstract DataObject getCachedDataObject(String id);
+
+	/**
+	 * Deletes a cached item.
+	 * If the item is not cached, nothing happens.
+	 * @param id The id of the item to delete.
+	 */
+	protected abstract void deleteCachedDataObject(String id);
+
 	/**
 	 * Saves all given spaces in the local cache for the given user.
 	 * @param spaces The spaces to save.
@@ -3,9 +3,11 @@ package de.imc.mirror.sdk.java;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,19 +25,16 @@ import de.imc.mirror.sdk.java.data.MembersTable;
 import de.imc.mirror.sdk.java.data.SendTable;
 import de.imc.mirror.sdk.java.data.SpacesTable;
 import de.imc.mirror.sdk.java.data.DatabaseConfig.Type;
+import de.imc.mirror.sdk.java.xml.DataObjectReader;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.sql.*;
 
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.Duration;
 
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
 import org.jivesoftware.smackx.pubsub.SimplePayload;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  * Wrapper to access an external database database.
@@ -51,12 +50,17 @@ public class DataWrapperExtern extends DataWrapper {
 	private static Connection db;
 	private static Type type;
 	private static Logger logger;
+	private final SeenItemIndex seenItems;
+	private final Object seenItemsLock = new Object(); // Guards changes of the data table together with the seen item index.
+	private final AtomicLong sendSequence;
 	
 	/**
 	 * Create a new DataWrapper.
 	 */
 	protected DataWrapperExtern(DatabaseConfig config) {
 		logger = Logger.getAnonymousLogger();
+		seenItems = new SeenItemIndex();
+		sendSequence = new AtomicLong();
 		try {
 			Runtime.getRuntime().removeShutdownHook(ShutdownInterceptor.getInstance());
 			Runtime.getRuntime().addShutdownHook(ShutdownInterceptor.getInstance());
@@ -70,6 +74,8 @@ public class DataWrapperExtern extends DataWrapper {
 			db.createStatement().execute(MembersTable.SQL_CREATE);
 			db.createStatement().execute(SendTable.SQL_CREATE);
 			db.createStatement().execute(DataTable.SQL_CREATE);
+			initializeSendSequence();
+			rebuildSeenItemIndex();
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "An Exception occured while establishing a connection to the database", e);
 		} catch (ClassNotFoundException e) {
@@ -284,16 +290,55 @@ public class DataWrapperExtern extends DataWrapper {
 		return spaces;
 	}
 
+	/**
+	 * Sets the outbox log used to cache payloads to send.
+	 * Payloads still stored in the send table are moved to the outbox log.
+	 * @param outboxLog The outbox log to use.
+	 */
+	@Override
+	protected void setOutboxLog(OutboxLog outboxLog){
+		super.setOutboxLog(outboxLog);
+		try{
+			Statement payloadStatement = db.createStatement();
+			ResultSet rs = payloadStatement.executeQuery("Select * FROM " + SendTable.TABLE_NAME + " ORDER BY " 
+					+ SendTable.SEND_SEQUENCE + ", " + SendTable.SEND_ID + ";");
+			while (rs.next()){
+				SimplePayload payload = new SimplePayload(rs.getString(SendTable.SEND_NAME), 
+						rs.getString(SendTable.SEND_NAMESPACE), rs.getString(SendTable.SEND_PAYLOAD));
+				outboxLog.append(rs.getString(SendTable.USER), rs.getString(SendTable.SEND_ID), rs.getString(SendTable.SEND_SPACE), payload);
+			}
+			rs.close();
+			payloadStatement.executeUpdate("DELETE FROM " + SendTable.TABLE_NAME);
+			payloadStatement.close();
+		} catch (SQLException e){
+			logger.log(Level.SEVERE, "An Exception occured while moving the send table to the outbox log", e);
+		} catch (IOException e){
+			logger.log(Level.SEVERE, "An Exception occured while moving the send table to the outbox log", e);
+		}
+	}
+
 	@Override
 	protected void savePayloadToSend(String user, String payloadId, String spaceId, SimplePayload payload){
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.append(user, payloadId, spaceId, payload);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while saving information in the outbox log", e);
+			}
+			return;
+		}
 		try{
-			PreparedStatement sendStatement = db.prepareStatement("insert into " + SendTable.TABLE_NAME + " values (?,?,?,?,?,?)");
+			PreparedStatement sendStatement = db.prepareStatement("insert into " + SendTable.TABLE_NAME + " (" 
+					+ SendTable.SEND_ID + ", " + SendTable.SEND_SPACE + ", " + SendTable.SEND_NAME + ", " + SendTable.SEND_NAMESPACE + ", " 
+					+ SendTable.SEND_PAYLOAD + ", " + SendTable.USER + ", " + SendTable.SEND_SEQUENCE + ") values (?,?,?,?,?,?,?)");
 			sendStatement.setString(1, payloadId);
 			sendStatement.setString(2, spaceId);
 			sendStatement.setString(3, payload.getElementName());
 			sendStatement.setString(4, payload.getNamespace());
 			sendStatement.setString(5, payload.toXML());
 			sendStatement.setString(6, user);
+			sendStatement.setLong(7, sendSequence.incrementAndGet());
 			sendStatement.executeUpdate();
 			sendStatement.close();
 		}catch(SQLException e){
@@ -303,6 +348,10 @@ public class DataWrapperExtern extends DataWrapper {
 	
 	@Override
 	protected Map<String, SimplePayload> getPayloadsToSend(String user){
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			return outboxLog.getPayloads(user);
+		}
 		String query = "Select * FROM " + SendTable.TABLE_NAME + " WHERE " 
 						+ SendTable.TABLE_NAME +  "." +	SendTable.USER + "='" + user + "';";
 		Map<String, SimplePayload> payloads = new HashMap<String, SimplePayload>();
@@ -324,8 +373,54 @@ public class DataWrapperExtern extends DataWrapper {
 		return payloads;
 	}
 
+	@Override
+	protected Iterator<SavedPayload> iteratePayloadsToSend(final String user){
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			return outboxLog.iterator(user, SEND_CACHE_CHUNK_SIZE);
+		}
+		return new ChunkedIterator<SavedPayload>(SEND_CACHE_CHUNK_SIZE) {
+			@Override
+			protected List<SavedPayload> readChunk(SavedPayload last, int chunkSize) {
+				List<SavedPayload> chunk = new ArrayList<SavedPayload>(chunkSize);
+				String query = "Select * FROM " + SendTable.TABLE_NAME + " WHERE " + SendTable.TABLE_NAME + "." + SendTable.USER + "=?";
+				if (last != null){
+					// Keyset pagination: continue after the last payload of the previous chunk.
+					query += " AND (" + SendTable.SEND_SEQUENCE + ">? OR (" + SendTable.SEND_SEQUENCE + "=? AND " + SendTable.SEND_ID + ">?))";
+				}
+				query += " ORDER BY " + SendTable.SEND_SEQUENCE + ", " + SendTable.SEND_ID + ";";
+				try{
+					PreparedStatement payloadStatement = db.prepareStatement(query);
+					payloadStatement.setString(1, user);
+					if (last != null){
+						payloadStatement.setLong(2, last.getSequence());
+						payloadStatement.setLong(3, last.getSequence());
+						payloadStatement.setString(4, last.getPayloadId());
+					}
+					payloadStatement.setMaxRows(chunkSize);
+					ResultSet rs = payloadStatement.executeQuery();
+					while (rs.next()){
+						SimplePayload payload = new SimplePayload(rs.getString(SendTable.SEND_NAME), 
+								rs.getString(SendTable.SEND_NAMESPACE), rs.getString(SendTable.SEND_PAYLOAD));
+						chunk.add(new SavedPayload(rs.getString(SendTable.SEND_ID), rs.getString(SendTable.SEND_SPACE), 
+								payload, rs.getLong(SendTable.SEND_SEQUENCE)));
+					}
+					rs.close();
+					payloadStatement.close();
+				} catch (SQLException e){
+					logger.log(Level.SEVERE, "An Exception occured while retrieving information from the database", e);
+				}
+				return chunk;
+			}
+		};
+	}
+
 	@Override
 	protected String getSpaceForPayload(String id){
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			return outboxLog.getSpaceId(id);
+		}
 		String result = null;
 		String query = "Select " + SendTable.TABLE_NAME + "." + SendTable.SEND_SPACE + " FROM " + 
 								SendTable.TABLE_NAME + " WHERE " + SendTable.TABLE_NAME + "." +
@@ -344,8 +439,40 @@ public class DataWrapperExtern extends DataWrapper {
 		return result;
 	}
 	
+	@Override
+	protected void removePayloadToSend(String user, String payloadId){
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.remove(user, payloadId);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the outbox log", e);
+			}
+			return;
+		}
+		try{
+			PreparedStatement deleteStatement = db.prepareStatement("DELETE FROM " + SendTable.TABLE_NAME + " WHERE "
+					+ SendTable.TABLE_NAME + "." + SendTable.SEND_ID + "=? AND " + SendTable.TABLE_NAME + "." + SendTable.USER + "=?;");
+			deleteStatement.setString(1, payloadId);
+			deleteStatement.setString(2, user);
+			deleteStatement.executeUpdate();
+			deleteStatement.close();
+		} catch (SQLException e){
+			logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
+		}
+	}
+	
 	@Override
 	protected void clearSendCache(String user){
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.clear(user);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the outbox log", e);
+			}
+			return;
+		}
 		try{
 			Statement deleteStatement = db.createStatement();
 			deleteStatement.execute("DELETE FROM " + SendTable.TABLE_NAME + " WHERE " + SendTable.TABLE_NAME + "." +SendTable.USER + " ='" + user +"';");
@@ -355,16 +482,75 @@ public class DataWrapperExtern extends DataWrapper {
 		}
 	}
 
+	/**
+	 * Adds the sequence column to a send table created by a previous version
+	 * and continues the sequence of the payloads to send after the highest stored value.
+	 */
+	private void initializeSendSequence() {
+		try {
+			Statement alterStatement = db.createStatement();
+			alterStatement.execute(SendTable.SQL_ADD_SEQUENCE);
+			alterStatement.close();
+		} catch (SQLException e) {
+			// The column already exists.
+		}
+		try {
+			Statement sequenceStatement = db.createStatement();
+			ResultSet rs = sequenceStatement.executeQuery("Select MAX(" + SendTable.SEND_SEQUENCE + ") FROM " + SendTable.TABLE_NAME + ";");
+			if (rs.next()) {
+				sendSequence.set(rs.getLong(1));
+			}
+			rs.close();
+			sequenceStatement.close();
+		} catch (SQLException e) {
+			logger.log(Level.SEVERE, "An Exception occured while retrieving information from the database", e);
+		}
+	}
+
+	/**
+	 * Fills the index of cached item ids with the ids stored in the data table.
+	 * Items cannot be saved or deleted while the ids are read, as the index would lose them when it is replaced.
+	 */
+	private void rebuildSeenItemIndex() {
+		String query = "SELECT " + DataTable.DATA_ID + " FROM " + DataTable.TABLE_NAME + ";";
+		synchronized (seenItemsLock){
+			try {
+				Statement s = db.createStatement();
+				ResultSet rs = s.executeQuery(query);
+				List<String> ids = new ArrayList<String>();
+				while (rs.next()) {
+					ids.add(rs.getString(1));
+				}
+				rs.close();
+				s.close();
+				seenItems.rebuild(ids);
+			} catch (SQLException e) {
+				logger.log(Level.SEVERE, "An Exception occured while retrieving information from the database", e);
+				seenItems.clear();
+			}
+		}
+	}
+
 	@Override
 	protected boolean isDataObjectAlreadyCached(String id){
-		String query = "Select * FROM " + DataTable.TABLE_NAME + " WHERE " +
+		switch (seenItems.lookup(id)) {
+		case ABSENT:
+			return false;
+		case PRESENT:
+			return true;
+		default:
+			break;
+		}
+		String query = "SELECT " + DataTable.DATA_ID + " FROM " + DataTable.TABLE_NAME + " WHERE " +
 						DataTable.TABLE_NAME + "." + DataTable.DATA_ID + "='" + id + "';";
 		try{
 			Statement itemStatement = db.createStatement();
+			itemStatement.setMaxRows(1);
 			ResultSet rs = itemStatement.executeQuery(query);
 			if (rs.next()){
 				rs.close();
 				itemStatement.close();
+				seenItems.confirm(id);
 				return true;
 			}
 			rs.close();
@@ -377,18 +563,31 @@ public class DataWrapperExtern extends DataWrapper {
 
 	@Override
 	protected void saveDataObject(String nodeId, DataObject obj, String id){
-		try{
-			PreparedStatement itemStatement = db.prepareStatement("INSERT INTO " + DataTable.TABLE_NAME + 
-														" VALUES(?, ?, ?, ?, ?);");
-			itemStatement.setString(1, id);
-			itemStatement.setString(2, nodeId);
-			itemStatement.setString(3, obj.getElement().getName());
-			itemStatement.setString(4, obj.getNamespaceURI());
-			itemStatement.setString(5, obj.toString());
-			itemStatement.executeUpdate();
-			itemStatement.close();
-		} catch (SQLException e){
-			logger.log(Level.SEVERE, "An Exception occured while saving information in the database", e);
+		String elementName;
+		if (obj instanceof de.imc.mirror.sdk.java.DataObject) {
+			elementName = ((de.imc.mirror.sdk.java.DataObject) obj).getElementName();
+		} else {
+			elementName = obj.getElement().getName();
+		}
+		String payload = obj.toString();
+		synchronized (seenItemsLock){
+			try{
+				PreparedStatement itemStatement = db.prepareStatement("INSERT INTO " + DataTable.TABLE_NAME + 
+															" VALUES(?, ?, ?, ?, ?);");
+				itemStatement.setString(1, id);
+				itemStatement.setString(2, nodeId);
+				itemStatement.setString(3, elementName);
+				itemStatement.setString(4, obj.getNamespaceURI());
+				itemStatement.setString(5, payload);
+				itemStatement.executeUpdate();
+				itemStatement.close();
+				seenItems.add(id);
+				if (seenItems.isSaturated()) {
+					rebuildSeenItemIndex();
+				}
+			} catch (SQLException e){
+				logger.log(Level.SEVERE, "An Exception occured while saving information in the database", e);
+			}
 		}
 	}
 	
@@ -401,23 +600,20 @@ public class DataWrapperExtern extends DataWrapper {
 			Statement objsStatement = db.createStatement();
 			ResultSet rs = objsStatement.executeQuery(query);
 			while (rs.next()){
-				String namespace = rs.getString(DataTable.DATA_NAMESPACE);
 				String payload = rs.getString(DataTable.DATA_PAYLOAD);
 				
-				SAXBuilder reader = new SAXBuilder();
-				StringReader in = new StringReader(payload);
-				Document document = null;
+				DataObjectHeader header = null;
 				try {
-				document = reader.build(in);
-				} catch (JDOMException e) {
-					logger.log(Level.SEVERE, "An JDOMException was thrown while parsing a newly gotten item.", e);
+					header = DataObjectReader.readHeader(payload);
+				} catch (XmlPullParserException e) {
+					logger.log(Level.SEVERE, "An XmlPullParserException was thrown while parsing a cached item.", e);
 				} catch (IOException e) {
-					logger.log(Level.SEVERE, "An IOException was thrown while parsing a newly gotten item.", e);
+					logger.log(Level.SEVERE, "An IOException was thrown while parsing a cached item.", e);
 				}
-				if (document == null){
+				if (header == null){
+					continue;
 				}
-				Element elem = document.getRootElement();
-				DataObject obj = new DataObjectBuilder(elem, namespace).build();
+				DataObject obj = new de.imc.mirror.sdk.java.DataObject(header, payload);
 		
 				objs.add(obj);
 			}
@@ -429,6 +625,49 @@ public class DataWrapperExtern extends DataWrapper {
 		return objs;
 	}
 
+	@Override
+	protected DataObject getCachedDataObject(String id){
+		if (seenItems.lookup(id) == SeenItemIndex.Membership.ABSENT){
+			return null;
+		}
+		try{
+			PreparedStatement objStatement = db.prepareStatement("SELECT " + DataTable.DATA_PAYLOAD + " FROM " + DataTable.TABLE_NAME +
+													" WHERE " + DataTable.DATA_ID + "=?;");
+			objStatement.setString(1, id);
+			objStatement.setMaxRows(1);
+			ResultSet rs = objStatement.executeQuery();
+			String payload = rs.next() ? rs.getString(DataTable.DATA_PAYLOAD) : null;
+			rs.close();
+			objStatement.close();
+			if (payload == null){
+				return null;
+			}
+			return new de.imc.mirror.sdk.java.DataObject(DataObjectReader.readHeader(payload), payload);
+		} catch (SQLException e){
+			logger.log(Level.SEVERE, "An Exception occured while retrieving information from the database", e);
+		} catch (XmlPullParserException e) {
+			logger.log(Level.SEVERE, "An XmlPullParserException was thrown while parsing a cached item.", e);
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "An IOException was thrown while parsing a cached item.", e);
+		}
+		return null;
+	}
+
+	@Override
+	protected void deleteCachedDataObject(String id){
+		synchronized (seenItemsLock){
+			try{
+				PreparedStatement deleteStatement = db.prepareStatement("DELETE FROM " + DataTable.TABLE_NAME + " WHERE " + DataTable.DATA_ID + "=?;");
+				deleteStatement.setString(1, id);
+				deleteStatement.executeUpdate();
+				deleteStatement.close();
+				seenItems.remove(id);
+			} catch (SQLException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
+			}
+		}
+	}
+
 	@Override
 	protected void saveSpaces(List<Space> spaces, String user){
 		try{
@@ -547,13 +786,24 @@ public class DataWrapperExtern extends DataWrapper {
 
 	@Override
 	protected void clearDataCache(){
-		try {
-			Statement s = db.createStatement();
-			s.executeUpdate("DELETE FROM " + SendTable.TABLE_NAME);
-			s.executeUpdate("DELETE FROM " + DataTable.TABLE_NAME);
-			s.close();
-		} catch (SQLException e) {
-			logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
+		synchronized (seenItemsLock){
+			try {
+				Statement s = db.createStatement();
+				s.executeUpdate("DELETE FROM " + SendTable.TABLE_NAME);
+				s.executeUpdate("DELETE FROM " + DataTable.TABLE_NAME);
+				s.close();
+				seenItems.clear();
+			} catch (SQLException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
+			}
+		}
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.clear();
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the outbox log", e);
+			}
 		}
 	}
 
@@ -572,11 +822,14 @@ public class DataWrapperExtern extends DataWrapper {
 
 	@Override
 	protected void clearSavedDataObjects(){
-		try{
-			Statement s = db.createStatement();
-			s.executeUpdate("DELETE FROM " + DataTable.TABLE_NAME);
-		} catch (SQLException e) {
-			logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
+		synchronized (seenItemsLock){
+			try{
+				Statement s = db.createStatement();
+				s.executeUpdate("DELETE FROM " + DataTable.TABLE_NAME);
+				seenItems.clear();
+			} catch (SQLException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
+			}
 		}
 	}
 	
@@ -588,24 +841,20 @@ public class DataWrapperExtern extends DataWrapper {
 			ResultSet rs = s.executeQuery(query);
 			List<DataObject> objs = new ArrayList<DataObject>();
 			while(rs.next()){
-				String namespace = rs.getString(DataTable.DATA_NAMESPACE);
 				String payload = rs.getString(DataTable.DATA_PAYLOAD);
 				
-				SAXBuilder reader = new SAXBuilder();
-				StringReader in = new StringReader(payload);
-				Document document = null;
+				DataObjectHeader header = null;
 				try{
-					document = reader.build(in);
-				} catch (JDOMException e) {
-					logger.log(Level.WARNING, "An JDOMException was thrown while parsing a newly gotten item.", e);
+					header = DataObjectReader.readHeader(payload);
+				} catch (XmlPullParserException e) {
+					logger.log(Level.WARNING, "An XmlPullParserException was thrown while parsing a cached item.", e);
 				} catch (IOException e) {
-					logger.log(Level.WARNING, "An IOException was thrown while parsing a newly gotten item.", e);
+					logger.log(Level.WARNING, "An IOException was thrown while parsing a cached item.", e);
 				}
-				if (document == null){
+				if (header == null){
 					continue;
 				}
-				Element elem = document.getRootElement();
-				DataObject obj = new DataObjectBuilder(elem, namespace).build();
+				DataObject obj = new de.imc.mirror.sdk.java.DataObject(header, payload);
 				if (!dataModels.contains(obj.getDataModel())){
 					objs.add(obj);
 				}
@@ -623,6 +872,7 @@ public class DataWrapperExtern extends DataWrapper {
 			}
 			s.close();
 			rs.close();
+			rebuildSeenItemIndex();
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
 		}
@@ -633,6 +883,7 @@ public class DataWrapperExtern extends DataWrapper {
 		try{
 			Statement s = db.createStatement();
 			s.executeUpdate("DELETE FROM " + DataTable.TABLE_NAME + " WHERE " + DataTable.DATA_NODE + "='" + nodeId+ "'");
+			rebuildSeenItemIndex();
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "An Exception occured while deleting information from the database", e);
 		}
@@ -1,12 +1,16 @@
 package de.imc.mirror.sdk.java;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.jivesoftware.smackx.pubsub.SimplePayload;
 
@@ -25,12 +29,18 @@ import de.imc.mirror.sdk.Space;
  */
 public class DataWrapperIntern extends DataWrapper {
 	
+	private static final Logger logger = Logger.getLogger(DataWrapperIntern.class.getName());
+	
 	private Map<String, Space> spacesCache;
 	private Map<String, List<String>> userToSpaceIds;
 	private Map<String, SimplePayload> sendCache;
 	private Map<String, List<String>> userToPayloadId;
 	private Map<String, String> payloadIdToSpaceId;
 	private Map<String, List<DataObject>> dataCache;
+	private Map<String, List<String>> dataItemIds; // <node id, item ids in the order of the data cache>
+	private Set<String> cachedItemIds;
+	private final Object sendCacheLock = new Object(); // Guards the send cache, which is accessed by user, replay and packet threads.
+	private final Object dataCacheLock = new Object(); // Guards the data cache, which is accessed by user and packet threads.
 	
 	protected DataWrapperIntern(){
 		spacesCache = new HashMap<String, Space>();
@@ -39,6 +49,8 @@ public class DataWrapperIntern extends DataWrapper {
 		userToPayloadId = new HashMap<String, List<String>>();
 		payloadIdToSpaceId = new HashMap<String, String>();
 		dataCache = new HashMap<String, List<DataObject>>();
+		dataItemIds = new HashMap<String, List<String>>();
+		cachedItemIds = new HashSet<String>();
 	}
 
 	@Override
@@ -89,74 +101,192 @@ public class DataWrapperIntern extends DataWrapper {
 	@Override
 	protected void savePayloadToSend(String user, String payloadId,
 			String spaceId, SimplePayload payload) {
-		List<String> ids = userToPayloadId.get(user);
-		if (ids == null){
-			ids = new ArrayList<String>();
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.append(user, payloadId, spaceId, payload);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while saving information in the outbox log", e);
+			}
+			return;
+		}
+		synchronized (sendCacheLock){
+			List<String> ids = userToPayloadId.get(user);
+			if (ids == null){
+				ids = new ArrayList<String>();
+			}
+			ids.add(payloadId);
+			userToPayloadId.put(user, ids);
+			sendCache.put(payloadId, payload);
+			payloadIdToSpaceId.put(payloadId, spaceId);
+		}
+	}
+
+	@Override
+	protected void removePayloadToSend(String user, String payloadId) {
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.remove(user, payloadId);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the outbox log", e);
+			}
+			return;
+		}
+		synchronized (sendCacheLock){
+			List<String> ids = userToPayloadId.get(user);
+			if (ids != null) {
+				ids.remove(payloadId);
+			}
+			sendCache.remove(payloadId);
+			payloadIdToSpaceId.remove(payloadId);
 		}
-		ids.add(payloadId);
-		userToPayloadId.put(user, ids);
-		sendCache.put(payloadId, payload);
-		payloadIdToSpaceId.put(payloadId, spaceId);
 	}
 
 	@Override
 	protected Map<String, SimplePayload> getPayloadsToSend(String user) {
-		List<String> payloadIds = userToPayloadId.get(user);
-		Map<String, SimplePayload> payloads = new HashMap<String, SimplePayload>();
-		if (payloadIds == null){
-			return payloads;
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			return outboxLog.getPayloads(user);
 		}
-		for (String id:payloadIds){
-			payloads.put(id, sendCache.get(id));
+		Map<String, SimplePayload> payloads = new HashMap<String, SimplePayload>();
+		synchronized (sendCacheLock){
+			List<String> payloadIds = userToPayloadId.get(user);
+			if (payloadIds == null){
+				return payloads;
+			}
+			for (String id:payloadIds){
+				payloads.put(id, sendCache.get(id));
+			}
 		}
 		return Collections.unmodifiableMap(payloads);
 	}
 
+	@Override
+	protected Iterator<SavedPayload> iteratePayloadsToSend(String user) {
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			return outboxLog.iterator(user, SEND_CACHE_CHUNK_SIZE);
+		}
+		final List<String> payloadIds;
+		synchronized (sendCacheLock){
+			List<String> ids = userToPayloadId.get(user);
+			payloadIds = ids != null ? new ArrayList<String>(ids) : Collections.<String>emptyList();
+		}
+		return new ChunkedIterator<SavedPayload>(SEND_CACHE_CHUNK_SIZE) {
+			@Override
+			protected List<SavedPayload> readChunk(SavedPayload last, int chunkSize) {
+				List<SavedPayload> chunk = new ArrayList<SavedPayload>(chunkSize);
+				// The sequence of a payload is its position in the snapshot of the payload ids.
+				synchronized (sendCacheLock){
+					for (int i = last != null ? (int) last.getSequence() + 1 : 0; i < payloadIds.size() && chunk.size() < chunkSize; i++) {
+						String payloadId = payloadIds.get(i);
+						SimplePayload payload = sendCache.get(payloadId);
+						if (payload != null) {
+							chunk.add(new SavedPayload(payloadId, payloadIdToSpaceId.get(payloadId), payload, i));
+						}
+					}
+				}
+				return chunk;
+			}
+		};
+	}
+
 	@Override
 	protected String getSpaceForPayload(String id) {
-		return payloadIdToSpaceId.get(id);
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			return outboxLog.getSpaceId(id);
+		}
+		synchronized (sendCacheLock){
+			return payloadIdToSpaceId.get(id);
+		}
 	}
 
 	@Override
 	protected void clearSendCache(String user) {
-		List<String> ids = userToPayloadId.get(user);
-		if (ids == null) return;
-		for (String id:ids){
-			payloadIdToSpaceId.remove(id);
-			sendCache.remove(id);
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.clear(user);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the outbox log", e);
+			}
+			return;
+		}
+		synchronized (sendCacheLock){
+			List<String> ids = userToPayloadId.get(user);
+			if (ids == null) return;
+			for (String id:ids){
+				payloadIdToSpaceId.remove(id);
+				sendCache.remove(id);
+			}
+			userToPayloadId.remove(user);
 		}
-		userToPayloadId.remove(user);
 	}
 
 	@Override
 	protected boolean isDataObjectAlreadyCached(String id) {
-		Collection<List<DataObject>> objLists = dataCache.values();
-		if (objLists == null) return false;
-		for (List<DataObject> objs:objLists){
-			for (DataObject obj:objs){
-				if (obj.getId().equals(id)){
-					return true;
-				}
-			}
+		synchronized (dataCacheLock){
+			return cachedItemIds.contains(id);
 		}
-		return false;
 	}
 
 	@Override
 	protected void saveDataObject(String nodeId, DataObject obj, String id) {
-		List<DataObject> items = dataCache.get(nodeId);
-		if (items == null){
-			items = new ArrayList<DataObject>();
+		synchronized (dataCacheLock){
+			List<DataObject> items = dataCache.get(nodeId);
+			if (items == null){
+				items = new ArrayList<DataObject>();
+			}
+			items.add(obj);
+			dataCache.put(nodeId, items);
+			List<String> ids = dataItemIds.get(nodeId);
+			if (ids == null){
+				ids = new ArrayList<String>();
+				dataItemIds.put(nodeId, ids);
+			}
+			ids.add(id);
+			cachedItemIds.add(id);
 		}
-		items.add(obj);
-		dataCache.put(nodeId, items);
 	}
 
 	@Override
 	protected List<DataObject> getCachedDataObjects(String nodeId) {
-		List<DataObject> items = dataCache.get(nodeId);
-		if (items == null) return new ArrayList<DataObject>();
-		return Collections.unmodifiableList(items);
+		synchronized (dataCacheLock){
+			List<DataObject> items = dataCache.get(nodeId);
+			if (items == null) return new ArrayList<DataObject>();
+			return Collections.unmodifiableList(new ArrayList<DataObject>(items));
+		}
+	}
+
+	@Override
+	protected DataObject getCachedDataObject(String id) {
+		synchronized (dataCacheLock){
+			if (!cachedItemIds.contains(id)) return null;
+			for (Map.Entry<String, List<String>> entry : dataItemIds.entrySet()){
+				int index = entry.getValue().indexOf(id);
+				if (index >= 0){
+					return dataCache.get(entry.getKey()).get(index);
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	protected void deleteCachedDataObject(String id) {
+		synchronized (dataCacheLock){
+			if (!cachedItemIds.remove(id)) return;
+			for (Map.Entry<String, List<String>> entry : dataItemIds.entrySet()){
+				int index = entry.getValue().indexOf(id);
+				if (index >= 0){
+					entry.getValue().remove(index);
+					dataCache.get(entry.getKey()).remove(index);
+					return;
+				}
+			}
+		}
 	}
 
 	@Override
@@ -181,10 +311,24 @@ public class DataWrapperIntern extends DataWrapper {
 
 	@Override
 	protected void clearDataCache() {
-		sendCache = new HashMap<String, SimplePayload>();
-		userToPayloadId = new HashMap<String, List<String>>();
-		payloadIdToSpaceId = new HashMap<String, String>();
-		dataCache = new HashMap<String, List<DataObject>>();
+		OutboxLog outboxLog = getOutboxLog();
+		if (outboxLog != null){
+			try {
+				outboxLog.clear();
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "An Exception occured while deleting information from the outbox log", e);
+			}
+		}
+		synchronized (sendCacheLock){
+			sendCache = new HashMap<String, SimplePayload>();
+			userToPayloadId = new HashMap<String, List<String>>();
+			payloadIdToSpaceId = new HashMap<String, String>();
+		}
+		synchronized (dataCacheLock){
+			dataCache = new HashMap<String, List<DataObject>>();
+			dataItemIds = new HashMap<String, List<String>>();
+			cachedItemIds = new HashSet<String>();
+		}
 	}
 
 	@Override
@@ -195,27 +339,45 @@ public class DataWrapperIntern extends DataWrapper {
 
 	@Override
 	protected void clearSavedDataObjects(){
-		dataCache = new HashMap<String, List<DataObject>>();
+		synchronized (dataCacheLock){
+			dataCache = new HashMap<String, List<DataObject>>();
+			dataItemIds = new HashMap<String, List<String>>();
+			cachedItemIds = new HashSet<String>();
+		}
 	}
 	
 	@Override
 	protected void updateCachedDataObjects(Set<DataModel> dataModels){
-		Set<String> keys = dataCache.keySet();
-		for (String key:keys){
-			List<DataObject> objs = dataCache.get(key);
-			List<DataObject> newObjs = new ArrayList<DataObject>();
-			for (DataObject obj:objs){
-				if (dataModels.contains(obj.getDataModel())){
-					newObjs.add(obj);
+		synchronized (dataCacheLock){
+			Set<String> keys = dataCache.keySet();
+			for (String key:keys){
+				List<DataObject> objs = dataCache.get(key);
+				List<String> ids = dataItemIds.get(key);
+				List<DataObject> newObjs = new ArrayList<DataObject>();
+				List<String> newIds = new ArrayList<String>();
+				for (int i = 0; i < objs.size(); i++){
+					if (dataModels.contains(objs.get(i).getDataModel())){
+						newObjs.add(objs.get(i));
+						newIds.add(ids.get(i));
+					} else {
+						cachedItemIds.remove(ids.get(i));
+					}
 				}
+				dataCache.put(key, newObjs);
+				dataItemIds.put(key, newIds);
 			}
-			dataCache.put(key, newObjs);
 		}
 	}
 	
 	@Override
 	protected void deleteCachedDataObjectsForSpace(String nodeId){
-		dataCache.remove(nodeId);
+		synchronized (dataCacheLock){
+			dataCache.remove(nodeId);
+			List<String> ids = dataItemIds.remove(nodeId);
+			if (ids != null){
+				cachedItemIds.removeAll(ids);
+			}
+		}
 	}
 
 }
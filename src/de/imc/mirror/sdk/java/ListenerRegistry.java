@@ -0,0 +1,200 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.DataObjectFilter;
+import de.imc.mirror.sdk.DataObjectListener;
+import de.imc.mirror.sdk.java.filter.EnvelopeFilter;
+
+/**
+ * Registry of data object listeners.
+ * Listeners can be registered for a specific space, a specific namespace and/or a data object filter.
+ * Registrations are indexed by space and namespace, so that only registrations which may match are checked for a data object.
+ * The registry may be modified while listeners are notified.
+ *
+ * {@link DataHandler}
+ */
+public class ListenerRegistry {
+	private static final Logger logger = Logger.getLogger(ListenerRegistry.class.getName());
+
+	/**
+	 * Registration of a listener.
+	 */
+	private static class Registration {
+		private final DataObjectListener listener;
+		private final String spaceId;
+		private final String namespace;
+		private final DataObjectFilter filter;
+
+		public Registration(DataObjectListener listener, String spaceId, String namespace, DataObjectFilter filter) {
+			this.listener = listener;
+			this.spaceId = spaceId;
+			this.namespace = namespace;
+			this.filter = filter;
+		}
+
+		public boolean matches(String spaceId, DataObject dataObject) {
+			if (this.spaceId != null && !this.spaceId.equals(spaceId)) {
+				return false;
+			}
+			if (namespace != null && !namespace.equals(dataObject.getNamespaceURI())) {
+				return false;
+			}
+			if (filter == null) {
+				return true;
+			}
+			if (filter instanceof EnvelopeFilter && dataObject instanceof de.imc.mirror.sdk.java.DataObject
+					&& !((EnvelopeFilter) filter).isEnvelopeValid(((de.imc.mirror.sdk.java.DataObject) dataObject).getHeader())) {
+				return false;
+			}
+			return filter.isDataObjectValid(dataObject);
+		}
+
+		public boolean isGlobal() {
+			return spaceId == null && namespace == null && filter == null;
+		}
+	}
+
+	private final List<Registration> unindexedRegistrations;
+	private final ConcurrentMap<String, List<Registration>> spaceRegistrations; // <space id, registrations>
+	private final ConcurrentMap<String, List<Registration>> namespaceRegistrations; // <namespace, registrations without space id>
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public ListenerRegistry() {
+		unindexedRegistrations = new CopyOnWriteArrayList<Registration>();
+		spaceRegistrations = new ConcurrentHashMap<String, List<Registration>>();
+		namespaceRegistrations = new ConcurrentHashMap<String, List<Registration>>();
+	}
+
+	/**
+	 * Registers a listener for all data objects.
+	 * If the listener is already registered for all data objects, nothing happens.
+	 * @param listener Listener to register.
+	 */
+	public void addListener(DataObjectListener listener) {
+		synchronized (unindexedRegistrations) {
+			for (Registration registration : unindexedRegistrations) {
+				if (registration.listener == listener && registration.isGlobal()) {
+					return;
+				}
+			}
+			unindexedRegistrations.add(new Registration(listener, null, null, null));
+		}
+	}
+
+	/**
+	 * Registers a listener for a subset of data objects.
+	 * A listener may be registered multiple times, it is notified once per data object if any of its registrations matches.
+	 * @param listener Listener to register.
+	 * @param spaceId Identifier of the space the data objects have to be published on. If <code>null</code>, data objects of all spaces match.
+	 * @param namespace Namespace the data objects have to belong to. If <code>null</code>, data objects of all namespaces match.
+	 * @param filter Filter the data objects have to pass. May be <code>null</code>.
+	 */
+	public void addListener(DataObjectListener listener, String spaceId, String namespace, DataObjectFilter filter) {
+		if (listener == null) {
+			throw new IllegalArgumentException("The listener must not be null.");
+		}
+		Registration registration = new Registration(listener, spaceId, namespace, filter);
+		if (spaceId != null) {
+			getRegistrations(spaceRegistrations, spaceId).add(registration);
+		} else if (namespace != null) {
+			getRegistrations(namespaceRegistrations, namespace).add(registration);
+		} else if (filter != null) {
+			unindexedRegistrations.add(registration);
+		} else {
+			addListener(listener);
+		}
+	}
+
+	private static List<Registration> getRegistrations(ConcurrentMap<String, List<Registration>> index, String key) {
+		List<Registration> registrations = index.get(key);
+		if (registrations == null) {
+			List<Registration> newRegistrations = new CopyOnWriteArrayList<Registration>();
+			registrations = index.putIfAbsent(key, newRegistrations);
+			if (registrations == null) {
+				registrations = newRegistrations;
+			}
+		}
+		return registrations;
+	}
+
+	/**
+	 * Removes all registrations of the given listener.
+	 * @param listener Listener to remove.
+	 */
+	public void removeListener(DataObjectListener listener) {
+		removeRegistrations(unindexedRegistrations, listener);
+		for (List<Registration> registrations : spaceRegistrations.values()) {
+			removeRegistrations(registrations, listener);
+		}
+		for (List<Registration> registrations : namespaceRegistrations.values()) {
+			removeRegistrations(registrations, listener);
+		}
+	}
+
+	private static void removeRegistrations(List<Registration> registrations, DataObjectListener listener) {
+		for (Registration registration : registrations) {
+			if (registration.listener == listener) {
+				registrations.remove(registration);
+			}
+		}
+	}
+
+	/**
+	 * Returns the listeners with at least one registration matching the given data object.
+	 * @param spaceId Identifier of the space the data object was published on.
+	 * @param dataObject Data object.
+	 * @return List of listeners in the order of registration per index. Each listener is contained at most once.
+	 */
+	public List<DataObjectListener> getListeners(String spaceId, DataObject dataObject) {
+		List<Registration> bySpace = spaceId != null ? spaceRegistrations.get(spaceId) : null;
+		String namespace = dataObject.getNamespaceURI();
+		List<Registration> byNamespace = namespace != null ? namespaceRegistrations.get(namespace) : null;
+		if (unindexedRegistrations.isEmpty() && (bySpace == null || bySpace.isEmpty()) && (byNamespace == null || byNamespace.isEmpty())) {
+			return Collections.emptyList();
+		}
+		List<DataObjectListener> listeners = new ArrayList<DataObjectListener>();
+		collectListeners(unindexedRegistrations, spaceId, dataObject, listeners);
+		if (bySpace != null) {
+			collectListeners(bySpace, spaceId, dataObject, listeners);
+		}
+		if (byNamespace != null) {
+			collectListeners(byNamespace, spaceId, dataObject, listeners);
+		}
+		return listeners;
+	}
+
+	private static void collectListeners(List<Registration> registrations, String spaceId, DataObject dataObject, List<DataObjectListener> listeners) {
+		for (Registration registration : registrations) {
+			if (!listeners.contains(registration.listener) && registration.matches(spaceId, dataObject)) {
+				listeners.add(registration.listener);
+			}
+		}
+	}
+
+	/**
+	 * Notifies all listeners with a registration matching the given data object.
+	 * An exception thrown by a listener does not prevent the notification of the other listeners.
+	 * @param dataObject Data object to pass to the listeners.
+	 * @param spaceId Identifier of the space the data object was published on.
+	 */
+	public void notifyListeners(DataObject dataObject, String spaceId) {
+		for (DataObjectListener listener : getListeners(spaceId, dataObject)) {
+			try {
+				listener.handleDataObject(dataObject, spaceId);
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "A data object listener caused an exception.", e);
+			}
+		}
+	}
+}
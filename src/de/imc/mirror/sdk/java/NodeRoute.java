@@ -0,0 +1,87 @@
+package de.imc.mirror.sdk.java;
+
+import org.jivesoftware.smackx.pubsub.LeafNode;
+
+/**
+ * Routing information for the pubsub node of a space.
+ * Used internally by the data handler to map notifications to spaces without scanning the handled spaces.
+ *
+ * {@link DataHandler}
+ */
+public class NodeRoute {
+	private final String spaceId;
+	private final String nodeId;
+	private final String pubsubService;
+	private volatile LeafNode node;
+	private volatile String subscriptionId;
+
+	/**
+	 * Creates a new route.
+	 * @param spaceId Identifier of the space.
+	 * @param nodeId Identifier of the pubsub node of the space.
+	 * @param pubsubService JID of the pubsub service component handling the node.
+	 */
+	protected NodeRoute(String spaceId, String nodeId, String pubsubService) {
+		this.spaceId = spaceId;
+		this.nodeId = nodeId;
+		this.pubsubService = pubsubService;
+		this.node = null;
+		this.subscriptionId = null;
+	}
+
+	/**
+	 * Returns the identifier of the space.
+	 * @return Space identifier.
+	 */
+	public String getSpaceId() {
+		return spaceId;
+	}
+
+	/**
+	 * Returns the identifier of the pubsub node.
+	 * @return Node identifier.
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Returns the JID of the pubsub service component handling the node.
+	 * @return Pubsub service JID, e.g. pubsub.mydomain.com.
+	 */
+	public String getPubsubService() {
+		return pubsubService;
+	}
+
+	/**
+	 * Returns the pubsub node if it has already been retrieved for the current connection.
+	 * @return Pubsub node or <code>null</code> if the node is not resolved yet.
+	 */
+	public LeafNode getNode() {
+		return node;
+	}
+
+	/**
+	 * Sets the pubsub node retrieved for the current connection.
+	 * @param node Pubsub node or <code>null</code> to reset the node.
+	 */
+	protected void setNode(LeafNode node) {
+		this.node = node;
+	}
+
+	/**
+	 * Returns the identifier of the subscription of the current user to the node, if already retrieved.
+	 * @return Subscription identifier or <code>null</code> if the subscription is not resolved yet.
+	 */
+	public String getSubscriptionId() {
+		return subscriptionId;
+	}
+
+	/**
+	 * Sets the identifier of the subscription of the current user to the node.
+	 * @param subscriptionId Subscription identifier or <code>null</code> to reset it.
+	 */
+	protected void setSubscriptionId(String subscriptionId) {
+		this.subscriptionId = subscriptionId;
+	}
+}
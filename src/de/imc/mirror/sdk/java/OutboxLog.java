@@ -0,0 +1,739 @@
+package de.imc.mirror.sdk.java;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.jivesoftware.smackx.pubsub.SimplePayload;
+
+/**
+ * Durable outbox for payloads which are published when the connection is established again.
+ * The outbox is an append-only log stored in memory-mapped segment files of a directory.
+ * Each record consists of its length, a CRC32 checksum, a sequence number, its type and its content.
+ * A record is only valid if its checksum matches, so that a record torn by a crash is discarded when the log is opened.
+ * <p>
+ * Payloads are appended in the order of their sequence numbers. Removing a payload appends a removal record.
+ * An append returns after the record was forced to the storage device. Appends of concurrent threads are forced together.
+ * Removals are forced with the next append or when the log is closed, i.e., a removed payload may be returned again after a crash.
+ * <p>
+ * Segments are compacted from the oldest one: If the share of payloads still queued in the oldest segment falls below a threshold,
+ * these payloads are copied to the newest segment and the oldest segment is deleted.
+ * The header of a deleted segment is cleared first, so that a file which cannot be deleted yet, e.g., because it is still mapped,
+ * is read as an empty segment. Its deletion is retried with the next compaction.
+ * Only the metadata of queued payloads is kept in memory, their content is read from the mapped segments.
+ *
+ * {@link DataWrapper}
+ */
+public class OutboxLog {
+	public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+	public static final double DEFAULT_COMPACTION_THRESHOLD = 0.25;
+
+	private static final int SEGMENT_MAGIC = 0x4F42584C;
+	private static final int SEGMENT_VERSION = 1;
+	private static final int SEGMENT_HEADER_SIZE = 8;
+	private static final int RECORD_HEADER_SIZE = 8; // length, checksum
+	private static final byte TYPE_APPEND = 1;
+	private static final byte TYPE_REMOVE = 2;
+	private static final byte TYPE_CLEAR = 3;
+	private static final String SEGMENT_PREFIX = "outbox-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Segment file of the log.
+	 */
+	private static class Segment {
+		private final long number;
+		private final File file;
+		private final RandomAccessFile randomAccessFile;
+		private final MappedByteBuffer buffer;
+		private int appendCount;
+		private int liveCount;
+
+		public Segment(long number, File file, RandomAccessFile randomAccessFile, MappedByteBuffer buffer) {
+			this.number = number;
+			this.file = file;
+			this.randomAccessFile = randomAccessFile;
+			this.buffer = buffer;
+			this.appendCount = 0;
+			this.liveCount = 0;
+		}
+	}
+
+	/**
+	 * Queued payload.
+	 */
+	private static class Entry {
+		private final String user;
+		private final String payloadId;
+		private final String spaceId;
+		private final long sequence;
+		private Segment segment;
+		private int offset;
+
+		public Entry(String user, String payloadId, String spaceId, long sequence, Segment segment, int offset) {
+			this.user = user;
+			this.payloadId = payloadId;
+			this.spaceId = spaceId;
+			this.sequence = sequence;
+			this.segment = segment;
+			this.offset = offset;
+		}
+	}
+
+	private final File directory;
+	private final int segmentSize;
+	private final double compactionThreshold;
+	private final List<Segment> segments; // ordered by segment number
+	private final Map<String, Entry> entries; // <payload id, entry>
+	private final TreeMap<Long, Entry> entriesBySequence; // <sequence, entry>
+	private final Set<Segment> dirtySegments;
+	private final List<File> undeletedFiles;
+	private final Object syncLock;
+	private Segment activeSegment;
+	private long nextSequence;
+	private long writeCount;
+	private long syncedCount; // guarded by syncLock
+	private boolean isSyncing; // guarded by syncLock
+	private boolean isClosed;
+
+	/**
+	 * Opens the log stored in the given directory with the default segment size and compaction threshold.
+	 * @param directory Directory to store the segment files in. Is created if it does not exist.
+	 * @throws IOException Failed to open or recover the log.
+	 */
+	public OutboxLog(File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	/**
+	 * Opens the log stored in the given directory.
+	 * Valid records of existing segments are recovered, a torn record at the end of the log is discarded.
+	 * @param directory Directory to store the segment files in. Is created if it does not exist.
+	 * @param segmentSize Size of a segment file in bytes. A larger segment is created for a record exceeding the size.
+	 * @param compactionThreshold Share of queued payloads in the oldest segment below which the segment is compacted, e.g., <code>0.25</code>.
+	 * @throws IOException Failed to open or recover the log.
+	 */
+	public OutboxLog(File directory, int segmentSize, double compactionThreshold) throws IOException {
+		if (segmentSize < SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException("The segment size is too small.");
+		}
+		if (compactionThreshold < 0 || compactionThreshold >= 1) {
+			throw new IllegalArgumentException("The compaction threshold has to be at least 0 and less than 1.");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Failed to create the outbox directory " + directory + ".");
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.compactionThreshold = compactionThreshold;
+		this.segments = new ArrayList<Segment>();
+		this.entries = new HashMap<String, Entry>();
+		this.entriesBySequence = new TreeMap<Long, Entry>();
+		this.dirtySegments = new LinkedHashSet<Segment>();
+		this.undeletedFiles = new ArrayList<File>();
+		this.syncLock = new Object();
+		this.nextSequence = 1;
+		this.writeCount = 0;
+		this.syncedCount = 0;
+		this.isSyncing = false;
+		this.isClosed = false;
+		recover();
+	}
+
+	/**
+	 * Reads all segment files of the directory and rebuilds the index of queued payloads.
+	 */
+	private void recover() throws IOException {
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		long[] numbers = new long[files != null ? files.length : 0];
+		for (int i = 0; i < numbers.length; i++) {
+			String name = files[i].getName();
+			try {
+				numbers[i] = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid segment file name " + name + ".");
+			}
+		}
+		Arrays.sort(numbers);
+		int position = SEGMENT_HEADER_SIZE;
+		for (long number : numbers) {
+			Segment segment = openSegment(number, 0);
+			segments.add(segment);
+			position = recoverSegment(segment);
+		}
+		if (segments.isEmpty()) {
+			activeSegment = createSegment(1, segmentSize);
+		} else {
+			activeSegment = segments.get(segments.size() - 1);
+			ByteBuffer buffer = activeSegment.buffer;
+			for (int i = position; i < buffer.capacity(); i++) {
+				if (buffer.get(i) != 0) {
+					// Discard the torn record, so that it is not mistaken for the end of a later record.
+					for (int j = position; j < buffer.capacity(); j++) {
+						buffer.put(j, (byte) 0);
+					}
+					dirtySegments.add(activeSegment);
+					break;
+				}
+			}
+			activeSegment.buffer.position(position);
+		}
+		compact();
+	}
+
+	/**
+	 * Applies the valid records of a segment.
+	 * @return Position after the last valid record.
+	 */
+	private int recoverSegment(Segment segment) throws IOException {
+		ByteBuffer buffer = segment.buffer;
+		if (buffer.capacity() >= SEGMENT_HEADER_SIZE && buffer.getInt(0) == 0 && buffer.getInt(4) == 0) {
+			// The log was interrupted while the segment was created.
+			buffer.putInt(0, SEGMENT_MAGIC);
+			buffer.putInt(4, SEGMENT_VERSION);
+			dirtySegments.add(segment);
+			return SEGMENT_HEADER_SIZE;
+		}
+		if (buffer.capacity() < SEGMENT_HEADER_SIZE || buffer.getInt(0) != SEGMENT_MAGIC) {
+			throw new IOException("The file " + segment.file + " is not an outbox segment.");
+		}
+		if (buffer.getInt(4) != SEGMENT_VERSION) {
+			throw new IOException("The outbox segment " + segment.file + " has an unsupported version.");
+		}
+		int position = SEGMENT_HEADER_SIZE;
+		while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+			int length = buffer.getInt(position);
+			if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+				break;
+			}
+			if (buffer.getInt(position + 4) != checksum(buffer, position + RECORD_HEADER_SIZE, length)) {
+				break;
+			}
+			applyRecord(segment, position);
+			position += RECORD_HEADER_SIZE + length;
+		}
+		return position;
+	}
+
+	private void applyRecord(Segment segment, int offset) {
+		ByteBuffer record = readRecord(segment, offset);
+		byte type = record.get();
+		long sequence = record.getLong();
+		nextSequence = Math.max(nextSequence, sequence + 1);
+		String user = readString(record);
+		switch (type) {
+		case TYPE_APPEND:
+			String payloadId = readString(record);
+			String spaceId = readString(record);
+			// A payload copied by an interrupted compaction replaces the original record.
+			removeEntry(payloadId);
+			addEntry(new Entry(user, payloadId, spaceId, sequence, segment, offset));
+			segment.appendCount++;
+			break;
+		case TYPE_REMOVE:
+			Entry entry = entries.get(readString(record));
+			if (entry != null && entry.user.equals(user)) {
+				removeEntry(entry.payloadId);
+			}
+			break;
+		case TYPE_CLEAR:
+			removeEntries(user);
+			break;
+		}
+	}
+
+	/**
+	 * Appends a payload to the log.
+	 * The method returns after the payload was forced to the storage device.
+	 * @param user The user to send the payload.
+	 * @param payloadId The id of the payload. An already queued payload with the same id is replaced.
+	 * @param spaceId The id of the space to send the payload to.
+	 * @param payload The payload to send.
+	 * @return Sequence number of the payload.
+	 * @throws IOException Failed to write the payload.
+	 */
+	public long append(String user, String payloadId, String spaceId, SimplePayload payload) throws IOException {
+		long sequence;
+		long recordCount;
+		synchronized (this) {
+			ensureOpen();
+			sequence = nextSequence++;
+			removeEntry(payloadId);
+			writeAppendRecord(user, payloadId, spaceId, payload.getElementName(), payload.getNamespace(), payload.toXML(), sequence);
+			recordCount = writeCount;
+		}
+		sync(recordCount);
+		return sequence;
+	}
+
+	/**
+	 * Removes a payload from the log.
+	 * @param user The user to send the payload.
+	 * @param payloadId The id of the payload.
+	 * @return <code>true</code> if the payload was queued for the user, otherwise <code>false</code>.
+	 * @throws IOException Failed to write the removal record.
+	 */
+	public synchronized boolean remove(String user, String payloadId) throws IOException {
+		ensureOpen();
+		Entry entry = entries.get(payloadId);
+		if (entry == null || !entry.user.equals(user)) {
+			return false;
+		}
+		byte[] userBytes = user.getBytes(UTF8);
+		byte[] idBytes = payloadId.getBytes(UTF8);
+		ByteBuffer record = allocateRecord(TYPE_REMOVE, nextSequence++, 8 + userBytes.length + idBytes.length);
+		writeBytes(record, userBytes);
+		writeBytes(record, idBytes);
+		writeRecord(record);
+		removeEntry(payloadId);
+		compact();
+		return true;
+	}
+
+	/**
+	 * Removes all payloads of a user from the log.
+	 * @param user The user to send the payloads.
+	 * @throws IOException Failed to write the removal record.
+	 */
+	public synchronized void clear(String user) throws IOException {
+		ensureOpen();
+		byte[] userBytes = user.getBytes(UTF8);
+		ByteBuffer record = allocateRecord(TYPE_CLEAR, nextSequence++, 4 + userBytes.length);
+		writeBytes(record, userBytes);
+		writeRecord(record);
+		removeEntries(user);
+		compact();
+	}
+
+	/**
+	 * Removes all payloads of all users from the log and deletes all segments except a new, empty one.
+	 * @throws IOException Failed to create the new segment.
+	 */
+	public synchronized void clear() throws IOException {
+		ensureOpen();
+		entries.clear();
+		entriesBySequence.clear();
+		Segment segment = createSegment(activeSegment.number + 1, segmentSize);
+		for (Segment oldSegment : new ArrayList<Segment>(segments)) {
+			if (oldSegment != segment) {
+				deleteSegment(oldSegment);
+			}
+		}
+		activeSegment = segment;
+	}
+
+	/**
+	 * Forces all records written so far to the storage device, including removal records.
+	 * Payloads removed before the call are not returned again after a crash.
+	 * @throws IOException Failed to force the records.
+	 */
+	public void checkpoint() throws IOException {
+		long recordCount;
+		synchronized (this) {
+			ensureOpen();
+			recordCount = writeCount;
+		}
+		sync(recordCount);
+	}
+
+	/**
+	 * Returns the queued payloads of a user.
+	 * @param user The user to send the payloads.
+	 * @return Map of payload ids and payloads in the order of their sequence numbers.
+	 */
+	public synchronized Map<String, SimplePayload> getPayloads(String user) {
+		Map<String, SimplePayload> payloads = new LinkedHashMap<String, SimplePayload>();
+		if (isClosed) {
+			return payloads;
+		}
+		for (Entry entry : entriesBySequence.values()) {
+			if (entry.user.equals(user)) {
+				payloads.put(entry.payloadId, readPayload(entry));
+			}
+		}
+		return payloads;
+	}
+
+	/**
+	 * Returns an iterator over the queued payloads of a user in the order of their sequence numbers.
+	 * The payloads are read in chunks, payloads removed during the iteration are skipped if their chunk was not yet read.
+	 * @param user The user to send the payloads.
+	 * @param chunkSize Maximum number of payloads read at once.
+	 * @return Iterator over the payloads.
+	 */
+	public Iterator<SavedPayload> iterator(final String user, int chunkSize) {
+		return new ChunkedIterator<SavedPayload>(chunkSize) {
+			@Override
+			protected List<SavedPayload> readChunk(SavedPayload last, int chunkSize) {
+				synchronized (OutboxLog.this) {
+					List<SavedPayload> chunk = new ArrayList<SavedPayload>(Math.min(chunkSize, entries.size()));
+					if (isClosed) {
+						return chunk;
+					}
+					Map<Long, Entry> following = last != null ? entriesBySequence.tailMap(last.getSequence(), false) : entriesBySequence;
+					for (Entry entry : following.values()) {
+						if (chunk.size() >= chunkSize) {
+							break;
+						}
+						if (entry.user.equals(user)) {
+							chunk.add(new SavedPayload(entry.payloadId, entry.spaceId, readPayload(entry), entry.sequence));
+						}
+					}
+					return chunk;
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the space a queued payload is sent to.
+	 * @param payloadId The id of the payload.
+	 * @return The id of the space or <code>null</code> if no payload with the given id is queued.
+	 */
+	public synchronized String getSpaceId(String payloadId) {
+		Entry entry = entries.get(payloadId);
+		return entry != null ? entry.spaceId : null;
+	}
+
+	/**
+	 * Returns the number of queued payloads of all users.
+	 * @return Number of payloads.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Checks if the log was closed.
+	 * @return <code>true</code> if the log is closed, otherwise <code>false</code>.
+	 */
+	public synchronized boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * Returns the number of segment files of the log.
+	 * @return Number of segments.
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Forces all written records to the storage device and closes the segment files.
+	 * @throws IOException Failed to force or close a segment file.
+	 */
+	public void close() throws IOException {
+		long recordCount;
+		synchronized (this) {
+			if (isClosed) {
+				return;
+			}
+			recordCount = writeCount;
+		}
+		sync(recordCount);
+		synchronized (this) {
+			isClosed = true;
+			for (Segment segment : segments) {
+				segment.randomAccessFile.close();
+			}
+			deleteUndeletedFiles();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (isClosed) {
+			throw new IOException("The outbox log is closed.");
+		}
+	}
+
+	/**
+	 * Waits until the given number of records is forced to the storage device.
+	 * The first waiting thread forces all segments written so far, all other threads wait for it.
+	 */
+	private void sync(long recordCount) throws IOException {
+		synchronized (syncLock) {
+			while (syncedCount < recordCount && isSyncing) {
+				try {
+					syncLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Waiting for the outbox log to be forced was interrupted.");
+				}
+			}
+			if (syncedCount >= recordCount) {
+				return;
+			}
+			isSyncing = true;
+		}
+		long targetCount;
+		List<Segment> segmentsToForce;
+		synchronized (this) {
+			targetCount = writeCount;
+			segmentsToForce = new ArrayList<Segment>(dirtySegments);
+			dirtySegments.clear();
+		}
+		boolean isForced = false;
+		try {
+			for (Segment segment : segmentsToForce) {
+				segment.buffer.force();
+			}
+			isForced = true;
+		} finally {
+			if (!isForced) {
+				synchronized (this) {
+					dirtySegments.addAll(segmentsToForce);
+				}
+			}
+			synchronized (syncLock) {
+				isSyncing = false;
+				if (isForced) {
+					syncedCount = Math.max(syncedCount, targetCount);
+				}
+				syncLock.notifyAll();
+			}
+		}
+	}
+
+	private void writeAppendRecord(String user, String payloadId, String spaceId, String elementName, String namespace, String xml, long sequence) throws IOException {
+		byte[][] fields = new byte[][] {user.getBytes(UTF8), payloadId.getBytes(UTF8), spaceId.getBytes(UTF8),
+				elementName.getBytes(UTF8), namespace.getBytes(UTF8), xml.getBytes(UTF8)};
+		int size = 0;
+		for (byte[] field : fields) {
+			size += 4 + field.length;
+		}
+		ByteBuffer record = allocateRecord(TYPE_APPEND, sequence, size);
+		for (byte[] field : fields) {
+			writeBytes(record, field);
+		}
+		int offset = writeRecord(record);
+		addEntry(new Entry(user, payloadId, spaceId, sequence, activeSegment, offset));
+		activeSegment.appendCount++;
+	}
+
+	private static ByteBuffer allocateRecord(byte type, long sequence, int contentSize) {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 9 + contentSize);
+		record.position(RECORD_HEADER_SIZE);
+		record.put(type);
+		record.putLong(sequence);
+		return record;
+	}
+
+	/**
+	 * Writes a record to the active segment. A new segment is created if the record does not fit.
+	 * @return Offset of the record in the active segment.
+	 */
+	private int writeRecord(ByteBuffer record) throws IOException {
+		int length = record.capacity() - RECORD_HEADER_SIZE;
+		record.putInt(0, length);
+		record.putInt(4, checksum(record, RECORD_HEADER_SIZE, length));
+		record.rewind();
+		if (activeSegment.buffer.remaining() < record.capacity()) {
+			activeSegment = createSegment(activeSegment.number + 1, Math.max(segmentSize, SEGMENT_HEADER_SIZE + record.capacity()));
+		}
+		int offset = activeSegment.buffer.position();
+		activeSegment.buffer.put(record);
+		dirtySegments.add(activeSegment);
+		writeCount++;
+		return offset;
+	}
+
+	private static void writeBytes(ByteBuffer record, byte[] bytes) {
+		record.putInt(bytes.length);
+		record.put(bytes);
+	}
+
+	private static String readString(ByteBuffer record) {
+		byte[] bytes = new byte[record.getInt()];
+		record.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Returns the content of a record, positioned on its type.
+	 */
+	private static ByteBuffer readRecord(Segment segment, int offset) {
+		ByteBuffer record = segment.buffer.duplicate();
+		int length = record.getInt(offset);
+		record.limit(offset + RECORD_HEADER_SIZE + length);
+		record.position(offset + RECORD_HEADER_SIZE);
+		return record.slice();
+	}
+
+	private static SimplePayload readPayload(Entry entry) {
+		ByteBuffer record = readRecord(entry.segment, entry.offset);
+		record.position(9);
+		readString(record); // user
+		readString(record); // payload id
+		readString(record); // space id
+		String elementName = readString(record);
+		String namespace = readString(record);
+		return new SimplePayload(elementName, namespace, readString(record));
+	}
+
+	private static int checksum(ByteBuffer buffer, int offset, int length) {
+		CRC32 crc = new CRC32();
+		ByteBuffer content = buffer.duplicate();
+		content.limit(offset + length);
+		content.position(offset);
+		byte[] chunk = new byte[Math.min(length, 8192)];
+		while (content.hasRemaining()) {
+			int chunkLength = Math.min(chunk.length, content.remaining());
+			content.get(chunk, 0, chunkLength);
+			crc.update(chunk, 0, chunkLength);
+		}
+		return (int) crc.getValue();
+	}
+
+	private void addEntry(Entry entry) {
+		entries.put(entry.payloadId, entry);
+		entriesBySequence.put(entry.sequence, entry);
+		entry.segment.liveCount++;
+	}
+
+	private void removeEntry(String payloadId) {
+		Entry entry = entries.remove(payloadId);
+		if (entry != null) {
+			entriesBySequence.remove(entry.sequence);
+			entry.segment.liveCount--;
+		}
+	}
+
+	private void removeEntries(String user) {
+		for (Entry entry : new ArrayList<Entry>(entries.values())) {
+			if (entry.user.equals(user)) {
+				removeEntry(entry.payloadId);
+			}
+		}
+	}
+
+	/**
+	 * Compacts the oldest segments while their share of queued payloads is below the compaction threshold.
+	 * The queued payloads of a segment are copied to the active segment and forced before the segment is deleted.
+	 */
+	private void compact() throws IOException {
+		deleteUndeletedFiles();
+		while (segments.size() > 1) {
+			Segment oldest = segments.get(0);
+			if (oldest.liveCount > compactionThreshold * oldest.appendCount) {
+				return;
+			}
+			if (oldest.liveCount > 0) {
+				List<Entry> copiedEntries = new ArrayList<Entry>();
+				for (Entry entry : entriesBySequence.values()) {
+					if (entry.segment == oldest) {
+						copiedEntries.add(entry);
+					}
+				}
+				// The copy may span several segments if the active segment is full.
+				Set<Segment> targetSegments = new LinkedHashSet<Segment>();
+				for (Entry entry : copiedEntries) {
+					ByteBuffer content = readRecord(entry.segment, entry.offset);
+					ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + content.remaining());
+					record.position(RECORD_HEADER_SIZE);
+					record.put(content);
+					int offset = writeRecord(record);
+					oldest.liveCount--;
+					entry.segment = activeSegment;
+					entry.offset = offset;
+					activeSegment.liveCount++;
+					activeSegment.appendCount++;
+					targetSegments.add(activeSegment);
+				}
+				for (Segment segment : targetSegments) {
+					segment.buffer.force();
+				}
+			}
+			deleteSegment(oldest);
+		}
+	}
+
+	/**
+	 * Deletes a segment. If its file cannot be deleted, the deletion is retried with the next compaction.
+	 */
+	private void deleteSegment(Segment segment) throws IOException {
+		segments.remove(segment);
+		dirtySegments.remove(segment);
+		// A segment with a cleared header is read as empty, so that its records are not applied again.
+		segment.buffer.putInt(0, 0);
+		segment.buffer.putInt(4, 0);
+		segment.buffer.force();
+		segment.randomAccessFile.close();
+		if (!deleteFile(segment.file)) {
+			undeletedFiles.add(segment.file);
+		}
+	}
+
+	/**
+	 * Retries the deletion of segment files which could not be deleted.
+	 */
+	private void deleteUndeletedFiles() {
+		for (Iterator<File> iterator = undeletedFiles.iterator(); iterator.hasNext();) {
+			File file = iterator.next();
+			if (deleteFile(file) || !file.exists()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Deletes a segment file. A file which is still mapped cannot be deleted on some platforms.
+	 * @param file File to delete.
+	 * @return <code>true</code> if the file was deleted, otherwise <code>false</code>.
+	 */
+	boolean deleteFile(File file) {
+		return file.delete();
+	}
+
+	private Segment createSegment(long number, int size) throws IOException {
+		Segment segment = openSegment(number, size);
+		segment.buffer.putInt(0, SEGMENT_MAGIC);
+		segment.buffer.putInt(4, SEGMENT_VERSION);
+		segment.buffer.position(SEGMENT_HEADER_SIZE);
+		segment.buffer.force();
+		segments.add(segment);
+		return segment;
+	}
+
+	/**
+	 * Maps a segment file.
+	 * @param size Size of a new segment file or <code>0</code> to map an existing file.
+	 */
+	private Segment openSegment(long number, int size) throws IOException {
+		File file = new File(directory, SEGMENT_PREFIX + String.format("%010d", number) + SEGMENT_SUFFIX);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			if (size > 0) {
+				randomAccessFile.setLength(size);
+			}
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+			return new Segment(number, file, randomAccessFile, buffer);
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+}
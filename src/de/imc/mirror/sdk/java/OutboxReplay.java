@@ -0,0 +1,215 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.XMPPError;
+
+import de.imc.mirror.sdk.exceptions.UnknownEntityException;
+
+/**
+ * Replay of the payloads of a user, which are in the sendcache.
+ * Consecutive payloads of a space are sent in as few requests as allowed, without waiting for the responses
+ * as long as the publisher permits further requests.
+ * A payload is removed from the sendcache when its request is acknowledged, or when it is rejected by the server if it was sent alone.
+ * The payloads of a rejected request with multiple items are sent again one by one, so that only the rejected payloads are discarded.
+ * Payloads which could not be sent remain in the sendcache and are sent again with the next replay.
+ * The sendcache is only modified by the replaying thread, and the removals are checkpointed regularly,
+ * so that an interrupted replay resumes with the first unacknowledged payload.
+ *
+ * {@link DataHandler}
+ */
+public class OutboxReplay {
+	private static final Logger logger = Logger.getLogger(OutboxReplay.class.getName());
+
+	/**
+	 * Publisher of saved payloads.
+	 */
+	public interface Publisher {
+		/**
+		 * Checks if payloads can be published.
+		 * @return <code>true</code> if the replay may continue, otherwise <code>false</code>.
+		 */
+		public boolean isOnline();
+
+		/**
+		 * Sends a publish request for the given payloads. May block until the request is permitted.
+		 * @param spaceId Identifier of the space to publish the payloads on.
+		 * @param payloads Payloads to publish, in the order they were saved.
+		 * @return Future completed with the response of the server.
+		 * @throws UnknownEntityException The space is not known.
+		 * @throws InterruptedException The thread was interrupted while waiting for the request to be permitted.
+		 */
+		public RequestFuture<IQ> publish(String spaceId, List<SavedPayload> payloads) throws UnknownEntityException, InterruptedException;
+
+		/**
+		 * Checks if an error response is temporary, i.e., if the payloads have to be kept in the sendcache.
+		 * @param error Error of the response.
+		 * @return <code>true</code> if the payloads are sent again with the next replay, <code>false</code> if they are rejected.
+		 */
+		public boolean isTemporaryError(XMPPError error);
+	}
+
+	/**
+	 * Sent publish request.
+	 */
+	private static class Request {
+		private final List<SavedPayload> payloads;
+		private final RequestFuture<IQ> future;
+
+		public Request(List<SavedPayload> payloads, RequestFuture<IQ> future) {
+			this.payloads = payloads;
+			this.future = future;
+		}
+	}
+
+	private final DataWrapper datawrapper;
+	private final String user;
+	private final int maxItemsPerPublish;
+	private final int checkpointInterval;
+	private final Publisher publisher;
+	private final LinkedList<Request> requests;
+	private final LinkedList<SavedPayload> retries;
+	private int removedCount;
+	private int checkpointedCount;
+
+	/**
+	 * Creates a replay.
+	 * @param datawrapper Data wrapper providing the sendcache.
+	 * @param user Bare JID of the user to send the payloads of.
+	 * @param maxItemsPerPublish Maximum number of payloads sent with a single request.
+	 * @param checkpointInterval Number of removals after which the sendcache is checkpointed.
+	 * @param publisher Publisher of the payloads.
+	 */
+	public OutboxReplay(DataWrapper datawrapper, String user, int maxItemsPerPublish, int checkpointInterval, Publisher publisher) {
+		if (maxItemsPerPublish < 1 || checkpointInterval < 1) {
+			throw new IllegalArgumentException("The number of items per publish and the checkpoint interval have to be positive.");
+		}
+		this.datawrapper = datawrapper;
+		this.user = user;
+		this.maxItemsPerPublish = maxItemsPerPublish;
+		this.checkpointInterval = checkpointInterval;
+		this.publisher = publisher;
+		this.requests = new LinkedList<Request>();
+		this.retries = new LinkedList<SavedPayload>();
+		this.removedCount = 0;
+		this.checkpointedCount = 0;
+	}
+
+	/**
+	 * Sends the payloads of the sendcache in the order they were saved.
+	 * Returns when all payloads are sent and their responses are handled, or when the publisher is offline.
+	 * @return Number of payloads removed from the sendcache.
+	 */
+	public int run() {
+		Iterator<SavedPayload> iterator = datawrapper.iteratePayloadsToSend(user);
+		SavedPayload next = null;
+		try {
+			while (publisher.isOnline()) {
+				handleResponses();
+				List<SavedPayload> payloads = new ArrayList<SavedPayload>();
+				if (!retries.isEmpty()) {
+					payloads.add(retries.removeFirst());
+				} else {
+					while (payloads.size() < maxItemsPerPublish && (next != null || iterator.hasNext())) {
+						if (next == null) {
+							next = iterator.next();
+						}
+						if (!payloads.isEmpty() && !payloads.get(0).getSpaceId().equals(next.getSpaceId())) {
+							break;
+						}
+						payloads.add(next);
+						next = null;
+					}
+				}
+				if (payloads.isEmpty()) {
+					if (requests.isEmpty()) {
+						break;
+					}
+					// Rejected requests may still add payloads to retry.
+					awaitResponse(requests.getFirst().future);
+					continue;
+				}
+				String spaceId = payloads.get(0).getSpaceId();
+				RequestFuture<IQ> requestFuture;
+				try {
+					requestFuture = publisher.publish(spaceId, payloads);
+				} catch (UnknownEntityException e) {
+					logger.log(Level.WARNING, "Saved payloads for the space " + spaceId + " could not be sent.", e);
+					continue;
+				}
+				requests.add(new Request(payloads, requestFuture));
+			}
+			for (Request request : requests) {
+				awaitResponse(request.future);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		handleResponses();
+		datawrapper.checkpointSendCache();
+		return removedCount;
+	}
+
+	private static void awaitResponse(RequestFuture<IQ> requestFuture) throws InterruptedException {
+		try {
+			requestFuture.get();
+		} catch (ExecutionException e) {
+			// The payloads remain in the sendcache.
+		} catch (CancellationException e) {
+			// The payloads remain in the sendcache.
+		}
+	}
+
+	/**
+	 * Applies the responses received so far to the sendcache.
+	 * Requests which failed without response, e.g., due to a timeout, are dropped and their payloads remain in the sendcache.
+	 */
+	private void handleResponses() {
+		for (Iterator<Request> iterator = requests.iterator(); iterator.hasNext();) {
+			Request request = iterator.next();
+			if (!request.future.isDone()) {
+				continue;
+			}
+			iterator.remove();
+			IQ response;
+			try {
+				response = request.future.get();
+			} catch (ExecutionException e) {
+				continue;
+			} catch (InterruptedException e) {
+				// Not thrown for completed futures.
+				Thread.currentThread().interrupt();
+				continue;
+			} catch (CancellationException e) {
+				continue;
+			}
+			XMPPError error = response.getError();
+			if (error != null && publisher.isTemporaryError(error)) {
+				continue;
+			}
+			if (error != null && request.payloads.size() > 1) {
+				retries.addAll(request.payloads);
+				continue;
+			}
+			if (error != null) {
+				logger.log(Level.WARNING, "A saved payload was rejected by the server and is discarded: " + error.getMessage());
+			}
+			for (SavedPayload payload : request.payloads) {
+				datawrapper.removePayloadToSend(user, payload.getPayloadId());
+				removedCount++;
+			}
+			if (removedCount - checkpointedCount >= checkpointInterval) {
+				checkpointedCount = removedCount;
+				datawrapper.checkpointSendCache();
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.XMPPError;
+import org.jivesoftware.smackx.pubsub.PayloadItem;
+import org.jivesoftware.smackx.pubsub.SimplePayload;
+
+import de.imc.mirror.sdk.exceptions.InvalidDataException;
+
+/**
+ * Items of a single publish request with a future for each item.
+ * Each item gets its own pubsub item identifier, its future is completed with this identifier when the request is acknowledged.
+ *
+ * {@link DataHandler}
+ */
+public class PublishBatch {
+	private final List<String> itemIds;
+	private final List<PayloadItem<SimplePayload>> items;
+	private final List<RequestFuture<String>> futures;
+
+	/**
+	 * Creates a batch for the given payloads.
+	 * @param payloads Payloads to publish with a single request.
+	 */
+	public PublishBatch(List<SimplePayload> payloads) {
+		this.itemIds = new ArrayList<String>(payloads.size());
+		this.items = new ArrayList<PayloadItem<SimplePayload>>(payloads.size());
+		this.futures = new ArrayList<RequestFuture<String>>(payloads.size());
+		for (SimplePayload payload : payloads) {
+			String itemId = UUID.randomUUID().toString();
+			itemIds.add(itemId);
+			items.add(new PayloadItem<SimplePayload>(itemId, payload));
+			futures.add(new RequestFuture<String>());
+		}
+	}
+
+	/**
+	 * Splits payloads into batches in their order.
+	 * @param payloads Payloads to publish.
+	 * @param maxItemsPerPublish Maximum number of items of a batch. Has to be positive.
+	 * @return List of batches.
+	 */
+	public static List<PublishBatch> split(List<SimplePayload> payloads, int maxItemsPerPublish) {
+		if (maxItemsPerPublish < 1) {
+			throw new IllegalArgumentException("The maximum number of items per publish request has to be positive.");
+		}
+		List<PublishBatch> batches = new ArrayList<PublishBatch>();
+		for (int offset = 0; offset < payloads.size(); offset += maxItemsPerPublish) {
+			int end = Math.min(offset + maxItemsPerPublish, payloads.size());
+			batches.add(new PublishBatch(payloads.subList(offset, end)));
+		}
+		return batches;
+	}
+
+	/**
+	 * Returns the items to publish.
+	 * @return List of pubsub items.
+	 */
+	public List<PayloadItem<SimplePayload>> getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the futures of the items.
+	 * @return List of futures in the order of the items.
+	 */
+	public List<RequestFuture<String>> getFutures() {
+		return futures;
+	}
+
+	/**
+	 * Completes the futures of the items when the publish request is completed.
+	 * If the request is rejected, each future fails with an {@link InvalidDataException}.
+	 * If the request fails without response, each future fails with the cause of the failure.
+	 * @param requestFuture Future of the publish request.
+	 */
+	public void complete(RequestFuture<IQ> requestFuture) {
+		requestFuture.addCallback(new RequestFuture.Callback<IQ>() {
+			@Override
+			public void onSuccess(IQ response) {
+				XMPPError error = response.getError();
+				for (int i = 0; i < futures.size(); i++) {
+					if (error != null) {
+						futures.get(i).setException(new InvalidDataException(error.getMessage()));
+					} else {
+						futures.get(i).setResponse(itemIds.get(i));
+					}
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable cause) {
+				fail(cause);
+			}
+		});
+	}
+
+	/**
+	 * Fails the futures of all items, e.g., because the request could not be sent.
+	 * @param cause Cause of the failure.
+	 */
+	public void fail(Throwable cause) {
+		for (RequestFuture<String> future : futures) {
+			future.setException(cause);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive flow control for publish requests sent to a pubsub service.
+ * The controller limits the number of requests in flight with a congestion window and paces the requests to the rate
+ * the window allows for the measured round-trip time.
+ * The window is increased additively for each acknowledged window of requests and decreased multiplicatively
+ * when a request times out, the service signals an overload, or the round-trip time approaches the request timeout.
+ * The window is decreased at most once per round-trip time.
+ *
+ * {@link DataHandler}
+ */
+public class PublishFlowController {
+	public static final int INITIAL_WINDOW = 4;
+	private static final double DECREASE_FACTOR = 0.5;
+	private static final double RTT_GAIN = 0.125;
+	
+	private final int maxWindow;
+	private final double maxRate;
+	private final long latencyThreshold;
+	private double window;
+	private int inFlight;
+	private double tokens;
+	private long lastRefill;
+	private long nextDecrease;
+	private long smoothedRtt;
+	private long acknowledgedCount;
+	private long congestionCount;
+	
+	/**
+	 * Creates a flow controller.
+	 * @param maxWindow Maximum number of requests in flight. Has to be positive.
+	 * @param maxRate Maximum number of requests per second. If <code>0</code>, the rate is only limited by the window.
+	 * @param requestTimeout Timeout of a request in milliseconds. Round-trip times above half of the timeout are treated as congestion.
+	 */
+	public PublishFlowController(int maxWindow, double maxRate, long requestTimeout) {
+		if (maxWindow < 1) {
+			throw new IllegalArgumentException("The maximum window has to be positive.");
+		}
+		if (maxRate < 0) {
+			throw new IllegalArgumentException("The maximum rate must not be negative.");
+		}
+		this.maxWindow = maxWindow;
+		this.maxRate = maxRate;
+		this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(requestTimeout) / 2;
+		this.window = Math.min(INITIAL_WINDOW, maxWindow);
+		this.inFlight = 0;
+		this.tokens = 1;
+		this.lastRefill = System.nanoTime();
+		this.nextDecrease = lastRefill;
+		this.smoothedRtt = 0;
+	}
+	
+	/**
+	 * Waits until a request may be sent and registers it as in flight.
+	 * Each call has to be followed by exactly one call of {@link #onAcknowledged(long, boolean)}, {@link #onTimeout()}, or {@link #onFailure()}.
+	 * @throws InterruptedException The calling thread was interrupted while waiting.
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (true) {
+			long now = System.nanoTime();
+			double rate = getRate();
+			if (rate > 0) {
+				tokens = Math.min(Math.max(1, window), tokens + (now - lastRefill) * rate / 1e9);
+			}
+			lastRefill = now;
+			if (inFlight < (int) window && (rate <= 0 || tokens >= 1)) {
+				inFlight++;
+				if (rate > 0) {
+					tokens -= 1;
+				}
+				return;
+			}
+			if (inFlight >= (int) window) {
+				wait();
+			} else {
+				TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, (long) ((1 - tokens) / rate * 1e9)));
+			}
+		}
+	}
+	
+	/**
+	 * Registers the response to a request.
+	 * @param rtt Round-trip time of the request in nanoseconds.
+	 * @param isOverloaded <code>true</code> if the service rejected the request because it is overloaded, otherwise <code>false</code>.
+	 */
+	public synchronized void onAcknowledged(long rtt, boolean isOverloaded) {
+		inFlight--;
+		acknowledgedCount++;
+		smoothedRtt = smoothedRtt == 0 ? rtt : (long) ((1 - RTT_GAIN) * smoothedRtt + RTT_GAIN * rtt);
+		if (isOverloaded || rtt > latencyThreshold) {
+			decrease();
+		} else {
+			window = Math.min(maxWindow, window + 1 / window);
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Registers a request which was not answered in time.
+	 */
+	public synchronized void onTimeout() {
+		inFlight--;
+		decrease();
+		notifyAll();
+	}
+	
+	/**
+	 * Registers a request which failed without reaching the service, e.g. because it could not be sent.
+	 * The window is not adjusted.
+	 */
+	public synchronized void onFailure() {
+		inFlight--;
+		notifyAll();
+	}
+	
+	private void decrease() {
+		long now = System.nanoTime();
+		if (now - nextDecrease < 0) {
+			return;
+		}
+		nextDecrease = now + smoothedRtt;
+		congestionCount++;
+		window = Math.max(1, window * DECREASE_FACTOR);
+	}
+	
+	/**
+	 * Returns the current congestion window.
+	 * @return Number of requests allowed to be in flight.
+	 */
+	public synchronized int getWindow() {
+		return (int) window;
+	}
+	
+	/**
+	 * Returns the current send rate.
+	 * Without round-trip time measurements, the configured maximum rate is returned.
+	 * @return Number of requests per second, or <code>0</code> if the rate is not limited.
+	 */
+	public synchronized double getRate() {
+		if (smoothedRtt == 0) {
+			return maxRate;
+		}
+		double rate = window * 1e9 / smoothedRtt;
+		return maxRate > 0 ? Math.min(maxRate, rate) : rate;
+	}
+	
+	/**
+	 * Returns the smoothed round-trip time of the acknowledged requests.
+	 * @return Round-trip time in nanoseconds, or <code>0</code> if no request was acknowledged yet.
+	 */
+	public synchronized long getSmoothedRtt() {
+		return smoothedRtt;
+	}
+	
+	/**
+	 * Returns the number of requests in flight.
+	 * @return Number of requests sent but not yet completed.
+	 */
+	public synchronized int getInFlightCount() {
+		return inFlight;
+	}
+	
+	/**
+	 * Returns the number of acknowledged requests.
+	 * @return Number of requests the service responded to.
+	 */
+	public synchronized long getAcknowledgedCount() {
+		return acknowledgedCount;
+	}
+	
+	/**
+	 * Returns how often the window was decreased due to timeouts, overload errors, or high round-trip times.
+	 * @return Number of window decreases.
+	 */
+	public synchronized long getCongestionCount() {
+		return congestionCount;
+	}
+}
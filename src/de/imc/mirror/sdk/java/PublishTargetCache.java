@@ -0,0 +1,98 @@
+package de.imc.mirror.sdk.java;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolved publish targets of spaces.
+ * A target is invalidated when its space is configured or deleted by the space handler the cache is registered with.
+ * The space handler only keeps a weak reference to the cache, so that a data handler which is no longer used is not kept reachable.
+ *
+ * {@link DataHandler}
+ */
+public class PublishTargetCache {
+
+	/**
+	 * Space change listener referring weakly to a cache.
+	 * It removes itself from the space handler when the cache was collected.
+	 */
+	private static class Invalidator implements SpaceHandler.SpaceChangeListener {
+		private final WeakReference<PublishTargetCache> cacheReference;
+		private final SpaceHandler spaceHandler;
+
+		public Invalidator(PublishTargetCache cache, SpaceHandler spaceHandler) {
+			this.cacheReference = new WeakReference<PublishTargetCache>(cache);
+			this.spaceHandler = spaceHandler;
+		}
+
+		@Override
+		public void spaceChanged(String spaceId) {
+			PublishTargetCache cache = cacheReference.get();
+			if (cache == null) {
+				spaceHandler.removeSpaceChangeListener(this);
+			} else {
+				cache.remove(spaceId);
+			}
+		}
+	}
+
+	private final ConcurrentMap<String, NodeRoute> targets; // <space id, route>
+
+	/**
+	 * Creates an empty cache.
+	 */
+	public PublishTargetCache() {
+		this.targets = new ConcurrentHashMap<String, NodeRoute>();
+	}
+
+	/**
+	 * Invalidates the targets of spaces which are configured or deleted by the given space handler.
+	 * @param spaceHandler Space handler to listen to.
+	 */
+	public void register(SpaceHandler spaceHandler) {
+		spaceHandler.addSpaceChangeListener(new Invalidator(this, spaceHandler));
+	}
+
+	/**
+	 * Returns the target of a space.
+	 * @param spaceId Identifier of the space.
+	 * @return Cached target or <code>null</code> if the target is not resolved.
+	 */
+	public NodeRoute get(String spaceId) {
+		return targets.get(spaceId);
+	}
+
+	/**
+	 * Adds the resolved target of a space.
+	 * @param spaceId Identifier of the space.
+	 * @param target Target with a resolved pubsub node.
+	 */
+	public void put(String spaceId, NodeRoute target) {
+		targets.put(spaceId, target);
+	}
+
+	/**
+	 * Invalidates the target of a space.
+	 * @param spaceId Identifier of the space.
+	 */
+	public void remove(String spaceId) {
+		targets.remove(spaceId);
+	}
+
+	/**
+	 * Invalidates the target of a space if it was not resolved again in the meantime.
+	 * @param spaceId Identifier of the space.
+	 * @param target Target to invalidate.
+	 */
+	public void remove(String spaceId, NodeRoute target) {
+		targets.remove(spaceId, target);
+	}
+
+	/**
+	 * Invalidates all targets.
+	 */
+	public void clear() {
+		targets.clear();
+	}
+}
@@ -0,0 +1,90 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounded window of unacknowledged publish requests.
+ * The window limits the number of pending requests for the whole connection and for each space.
+ * A caller acquiring a slot while the window is full is blocked until a pending request is acknowledged.
+ *
+ * {@link DataHandler}
+ */
+public class PublishWindow {
+	private final int maxPending;
+	private final int maxPendingPerSpace;
+	private final Semaphore connectionSlots;
+	private final ConcurrentMap<String, Semaphore> spaceSlots; // <space id, slots>
+	
+	/**
+	 * Creates a publish window.
+	 * @param maxPending Maximum number of pending requests for the connection.
+	 * @param maxPendingPerSpace Maximum number of pending requests for a single space.
+	 */
+	public PublishWindow(int maxPending, int maxPendingPerSpace) {
+		if (maxPending < 1 || maxPendingPerSpace < 1) {
+			throw new IllegalArgumentException("The window sizes have to be positive.");
+		}
+		this.maxPending = maxPending;
+		this.maxPendingPerSpace = maxPendingPerSpace;
+		this.connectionSlots = new Semaphore(maxPending, true);
+		this.spaceSlots = new ConcurrentHashMap<String, Semaphore>();
+	}
+	
+	private Semaphore getSpaceSlots(String spaceId) {
+		Semaphore slots = spaceSlots.get(spaceId);
+		if (slots == null) {
+			Semaphore newSlots = new Semaphore(maxPendingPerSpace, true);
+			slots = spaceSlots.putIfAbsent(spaceId, newSlots);
+			if (slots == null) {
+				slots = newSlots;
+			}
+		}
+		return slots;
+	}
+	
+	/**
+	 * Acquires a slot for a publish request, blocking until a slot is available.
+	 * The slot of the space is acquired first, so that a space with a full window does not block the connection window.
+	 * @param spaceId Identifier of the space to publish on.
+	 * @throws InterruptedException The calling thread was interrupted while waiting for a slot.
+	 */
+	public void acquire(String spaceId) throws InterruptedException {
+		Semaphore slots = getSpaceSlots(spaceId);
+		slots.acquire();
+		try {
+			connectionSlots.acquire();
+		} catch (InterruptedException e) {
+			slots.release();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Releases a slot acquired with {@link #acquire(String)}.
+	 * @param spaceId Identifier of the space the request was published on.
+	 */
+	public void release(String spaceId) {
+		connectionSlots.release();
+		getSpaceSlots(spaceId).release();
+	}
+	
+	/**
+	 * Returns the number of pending requests of the connection.
+	 * @return Number of acquired slots.
+	 */
+	public int getPendingCount() {
+		return maxPending - connectionSlots.availablePermits();
+	}
+	
+	/**
+	 * Returns the number of pending requests for a space.
+	 * @param spaceId Space identifier.
+	 * @return Number of acquired slots of the space.
+	 */
+	public int getPendingCount(String spaceId) {
+		Semaphore slots = spaceSlots.get(spaceId);
+		return slots != null ? maxPendingPerSpace - slots.availablePermits() : 0;
+	}
+}
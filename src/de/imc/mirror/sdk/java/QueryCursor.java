@@ -0,0 +1,187 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.XMPPError;
+
+import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.exceptions.QueryException;
+import de.imc.mirror.sdk.java.packet.QueryRequestIQ;
+import de.imc.mirror.sdk.java.packet.QueryResponseIQ;
+
+/**
+ * Cursor over the result of a persistence service query, which is retrieved in pages using result set management (XEP-0059).
+ * The next page is requested as soon as the current page is received, so that it is transferred while the current page is consumed.
+ * At most two pages are held in memory.
+ * If the persistence service does not support result set management, the complete result is returned as a single page.
+ * A cursor is not thread-safe.
+ *
+ * {@link DataHandler}
+ */
+public class QueryCursor {
+
+	/**
+	 * Sender of query requests to the persistence service.
+	 */
+	public interface QuerySender {
+		/**
+		 * Sends a query request.
+		 * @param request Query to send.
+		 * @return Future completed with the response of the persistence service.
+		 */
+		public RequestFuture<IQ> sendQuery(QueryRequestIQ request);
+	}
+
+	private final QueryRequestIQ query;
+	private final int pageSize;
+	private final long timeout;
+	private final QuerySender sender;
+	private List<DataObject> page;
+	private int pageIndex;
+	private RequestFuture<IQ> nextPage;
+	private int receivedCount;
+	private int totalCount;
+	private boolean isClosed;
+
+	/**
+	 * Creates a cursor and requests the first page.
+	 * @param query Query to page the result of.
+	 * @param pageSize Maximum number of data objects per page. Has to be positive.
+	 * @param timeout Timeout for the response to a page request in milliseconds.
+	 * @param sender Sender of the page requests.
+	 */
+	public QueryCursor(QueryRequestIQ query, int pageSize, long timeout, QuerySender sender) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("The page size has to be positive.");
+		}
+		this.query = query;
+		this.pageSize = pageSize;
+		this.timeout = timeout;
+		this.sender = sender;
+		this.page = Collections.emptyList();
+		this.pageIndex = 0;
+		this.receivedCount = 0;
+		this.totalCount = -1;
+		this.isClosed = false;
+		this.nextPage = sender.sendQuery(query.createPageRequest(pageSize, null));
+	}
+
+	/**
+	 * Checks if the result contains further data objects.
+	 * Waits for the next page if the current page is consumed.
+	 * @return <code>true</code> if another data object is available, otherwise <code>false</code>.
+	 * @throws QueryException Failed to retrieve the next page.
+	 */
+	public boolean hasNext() throws QueryException {
+		while (pageIndex >= page.size()) {
+			if (nextPage == null) {
+				return false;
+			}
+			QueryResponseIQ response = awaitResponse(nextPage, timeout);
+			nextPage = null;
+			page = response.getResult();
+			pageIndex = 0;
+			receivedCount += page.size();
+			totalCount = response.getCount();
+			String lastId = response.getLastId();
+			boolean isComplete = lastId == null || page.size() < pageSize
+					|| (response.getCount() >= 0 && response.getFirstIndex() >= 0 && response.getFirstIndex() + page.size() >= response.getCount());
+			if (!isComplete && !isClosed) {
+				nextPage = sender.sendQuery(query.createPageRequest(pageSize, lastId));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the next data object of the result.
+	 * @return Data object.
+	 * @throws QueryException Failed to retrieve the next page.
+	 * @throws NoSuchElementException The result contains no further data objects.
+	 */
+	public DataObject next() throws QueryException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.get(pageIndex++);
+	}
+
+	/**
+	 * Returns the number of data objects of the complete result, as reported by the persistence service.
+	 * @return Number of data objects or <code>-1</code> if it is not known yet or not reported.
+	 */
+	public int getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Returns the number of data objects received so far.
+	 * @return Number of received data objects.
+	 */
+	public int getReceivedCount() {
+		return receivedCount;
+	}
+
+	/**
+	 * Stops the retrieval of further pages. The data objects of the current page can still be consumed.
+	 */
+	public void close() {
+		isClosed = true;
+		if (nextPage != null) {
+			nextPage.cancel(false);
+			nextPage = null;
+		}
+	}
+
+	/**
+	 * Waits for the response to a query and checks it.
+	 * If no response is received in time, the query is cancelled.
+	 * @param queryFuture Future of the query.
+	 * @param timeout Timeout in milliseconds.
+	 * @return Query response.
+	 * @throws QueryException The query failed or the response is invalid.
+	 */
+	static QueryResponseIQ awaitResponse(RequestFuture<IQ> queryFuture, long timeout) throws QueryException {
+		try {
+			return checkResponse(queryFuture.get(timeout, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			queryFuture.cancel(false);
+			throw new QueryException(QueryException.Type.FAILURE, "The request was interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof QueryException) {
+				throw (QueryException) e.getCause();
+			}
+			throw new QueryException(QueryException.Type.FAILURE, "The request handling procedure caused an excution error.", e);
+		} catch (TimeoutException e) {
+			queryFuture.cancel(false);
+			throw new QueryException(QueryException.Type.FAILURE, "The request timed out.", e);
+		}
+	}
+	
+	/**
+	 * Checks the response to a query.
+	 * @param responseIQ Response received from the persistence service.
+	 * @return Query response.
+	 * @throws QueryException The query failed or the response is invalid.
+	 */
+	static QueryResponseIQ checkResponse(IQ responseIQ) throws QueryException {
+		if (responseIQ.getType() == IQ.Type.ERROR) {
+			XMPPError error = responseIQ.getError();
+			if (XMPPError.Condition.not_allowed.toString().equalsIgnoreCase(error.getCondition())) {
+				throw new QueryException(QueryException.Type.ACCESS_DENIED, "The currrent user is not allowed to access this data object.");
+			} else {
+				throw new QueryException(QueryException.Type.FAILURE, "Failed to perform query. " + error.getCondition() + ": " + error.getMessage());
+			}
+		} else if (responseIQ instanceof QueryResponseIQ) {
+			return (QueryResponseIQ) responseIQ;
+		} else {
+			throw new QueryException(QueryException.Type.FAILURE, "Invalid query iq type as response: " + responseIQ.getChildElementXML());
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.jdom2.output.XMLOutputter;
+
+import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.SerializableDataObjectFilter;
+import de.imc.mirror.sdk.config.NamespaceConfig;
+import de.imc.mirror.sdk.exceptions.QueryException;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
+
+/**
+ * Deduplication of identical persistence service queries.
+ * A query which is issued while an identical query is pending is not sent again, but shares the result of the pending query.
+ * Optionally, results are reused for a short time after the query is completed.
+ * Each caller receives its own copy of the result list, the data objects are shared.
+ *
+ * {@link DataHandler}
+ */
+public class QueryDeduplicator {
+
+	/**
+	 * Query to perform if no identical query is pending.
+	 */
+	public interface Query {
+		/**
+		 * Sends the query and waits for its result.
+		 * @return Data objects of the result.
+		 * @throws QueryException Failed to perform the query.
+		 */
+		public List<DataObject> execute() throws QueryException;
+	}
+
+	/**
+	 * Result kept after the query is completed.
+	 */
+	private static class Memo {
+		private final List<DataObject> result;
+		private final long expirationTime;
+
+		public Memo(List<DataObject> result, long expirationTime) {
+			this.result = result;
+			this.expirationTime = expirationTime;
+		}
+	}
+
+	private final ConcurrentMap<String, RequestFuture<List<DataObject>>> pendingQueries; // <query key, result>
+	private final Map<String, Memo> memos; // <query key, memo>
+	private volatile long memoTime;
+	private long sharedCount;
+
+	/**
+	 * Creates a deduplicator without result memo.
+	 */
+	public QueryDeduplicator() {
+		this.pendingQueries = new ConcurrentHashMap<String, RequestFuture<List<DataObject>>>();
+		this.memos = new HashMap<String, Memo>();
+		this.memoTime = 0;
+		this.sharedCount = 0;
+	}
+
+	/**
+	 * Creates the canonical key of a query.
+	 * The order of the identifiers and filters is not significant.
+	 * @param queryType Type of the query, e.g., <code>"space"</code>.
+	 * @param ids Identifiers the query refers to, e.g., space or data object identifiers.
+	 * @param filters Filters of the query. May be <code>null</code> or empty.
+	 * @return Query key.
+	 */
+	public static String createKey(String queryType, Collection<String> ids, Set<SerializableDataObjectFilter> filters) {
+		List<String> sortedIds = new ArrayList<String>(ids);
+		Collections.sort(sortedIds);
+		List<String> sortedFilters = new ArrayList<String>();
+		if (filters != null) {
+			XMLOutputter out = XMLCodec.getOutputter();
+			for (SerializableDataObjectFilter filter : filters) {
+				sortedFilters.add(out.outputString(filter.getFilterAsXML(NamespaceConfig.PERSISTENCE_SERVICE)));
+			}
+			Collections.sort(sortedFilters);
+		}
+		StringBuilder key = new StringBuilder(queryType);
+		for (String id : sortedIds) {
+			key.append('\u0000').append(id);
+		}
+		key.append('\u0001');
+		for (String filter : sortedFilters) {
+			key.append('\u0000').append(filter);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the result of a query.
+	 * If an identical query is pending or a memo of its result is available, the query is not performed.
+	 * @param key Canonical key of the query.
+	 * @param query Query to perform if required.
+	 * @return Copy of the result list.
+	 * @throws QueryException Failed to perform the query, or the shared query failed.
+	 */
+	public List<DataObject> execute(String key, Query query) throws QueryException {
+		List<DataObject> memoizedResult = getMemo(key);
+		if (memoizedResult != null) {
+			return new ArrayList<DataObject>(memoizedResult);
+		}
+		RequestFuture<List<DataObject>> future = new RequestFuture<List<DataObject>>();
+		RequestFuture<List<DataObject>> pendingFuture = pendingQueries.putIfAbsent(key, future);
+		if (pendingFuture != null) {
+			synchronized (this) {
+				sharedCount++;
+			}
+			return new ArrayList<DataObject>(awaitResult(pendingFuture));
+		}
+		try {
+			List<DataObject> result = query.execute();
+			putMemo(key, result);
+			future.setResponse(result);
+			return new ArrayList<DataObject>(result);
+		} catch (QueryException e) {
+			future.setException(e);
+			throw e;
+		} catch (RuntimeException e) {
+			future.setException(e);
+			throw e;
+		} finally {
+			pendingQueries.remove(key, future);
+		}
+	}
+
+	private static List<DataObject> awaitResult(RequestFuture<List<DataObject>> future) throws QueryException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new QueryException(QueryException.Type.FAILURE, "The request was interrupted.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof QueryException) {
+				throw new QueryException(((QueryException) cause).getType(), cause.getMessage(), cause);
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new QueryException(QueryException.Type.FAILURE, "The request handling procedure caused an excution error.", e);
+		}
+	}
+
+	private synchronized List<DataObject> getMemo(String key) {
+		Memo memo = memos.get(key);
+		if (memo == null) {
+			return null;
+		}
+		if (memo.expirationTime <= System.currentTimeMillis()) {
+			memos.remove(key);
+			return null;
+		}
+		sharedCount++;
+		return memo.result;
+	}
+
+	private synchronized void putMemo(String key, List<DataObject> result) {
+		if (memoTime <= 0) {
+			return;
+		}
+		long currentTime = System.currentTimeMillis();
+		for (Iterator<Memo> iterator = memos.values().iterator(); iterator.hasNext();) {
+			if (iterator.next().expirationTime <= currentTime) {
+				iterator.remove();
+			}
+		}
+		memos.put(key, new Memo(new ArrayList<DataObject>(result), currentTime + memoTime));
+	}
+
+	/**
+	 * Sets the time for which the result of a completed query is reused.
+	 * @param memoTime Time in milliseconds. <code>0</code> disables the memo, which is the default.
+	 */
+	public void setMemoTime(long memoTime) {
+		if (memoTime < 0) {
+			throw new IllegalArgumentException("The memo time must not be negative.");
+		}
+		this.memoTime = memoTime;
+		if (memoTime == 0) {
+			clearMemos();
+		}
+	}
+
+	/**
+	 * Returns the time for which the result of a completed query is reused.
+	 * @return Time in milliseconds. <code>0</code> if the memo is disabled.
+	 */
+	public long getMemoTime() {
+		return memoTime;
+	}
+
+	/**
+	 * Discards all memoized results, e.g., after data objects were deleted.
+	 */
+	public synchronized void clearMemos() {
+		memos.clear();
+	}
+
+	/**
+	 * Returns the number of queries which were not sent because they shared the result of another query.
+	 * @return Number of shared queries.
+	 */
+	public synchronized long getSharedCount() {
+		return sharedCount;
+	}
+}
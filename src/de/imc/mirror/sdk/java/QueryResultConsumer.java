@@ -0,0 +1,18 @@
+package de.imc.mirror.sdk.java;
+
+import de.imc.mirror.sdk.DataObject;
+
+/**
+ * Consumer of the data objects of a streamed persistence service query.
+ * The consumer is called by the thread which issued the query, while the response is received.
+ * A slow consumer only delays the reading of the connection once the stream of the query is full.
+ *
+ * {@link DataHandler}
+ */
+public interface QueryResultConsumer {
+	/**
+	 * Handles a data object of the query result.
+	 * @param dataObject Data object in the order of the result.
+	 */
+	public void handleDataObject(DataObject dataObject);
+}
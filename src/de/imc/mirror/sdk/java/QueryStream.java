@@ -0,0 +1,104 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.LinkedList;
+
+import de.imc.mirror.sdk.DataObject;
+
+/**
+ * Bounded queue of the data objects of a single streamed persistence service query.
+ * The query provider puts the data objects while the response is parsed, the caller of the query takes them.
+ * If the queue is full, the thread reading the connection waits until the caller takes a data object or closes the stream.
+ *
+ * {@link DataHandler}
+ */
+public class QueryStream {
+	private final int capacity;
+	private final LinkedList<DataObject> dataObjects;
+	private boolean isEnded;
+	private boolean isClosed;
+
+	/**
+	 * Creates an empty stream.
+	 * @param capacity Maximum number of data objects held by the stream. Has to be positive.
+	 */
+	public QueryStream(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity has to be positive.");
+		}
+		this.capacity = capacity;
+		this.dataObjects = new LinkedList<DataObject>();
+		this.isEnded = false;
+		this.isClosed = false;
+	}
+
+	/**
+	 * Adds a data object of the response. Waits while the stream is full.
+	 * @param dataObject Data object in the order of the result.
+	 * @return <code>true</code> if the data object was added, <code>false</code> if the stream was closed by the caller.
+	 * @throws InterruptedException The thread was interrupted while waiting.
+	 */
+	public synchronized boolean put(DataObject dataObject) throws InterruptedException {
+		while (!isClosed && dataObjects.size() >= capacity) {
+			wait();
+		}
+		if (isClosed) {
+			return false;
+		}
+		dataObjects.add(dataObject);
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Marks the stream as ended, i.e., no further data objects will be added.
+	 */
+	public synchronized void end() {
+		isEnded = true;
+		notifyAll();
+	}
+
+	/**
+	 * Removes the next data object. Waits while the stream is empty and not ended.
+	 * @param timeout Maximum time to wait in milliseconds.
+	 * @return Next data object or <code>null</code> if the stream is ended or the timeout elapsed.
+	 * @throws InterruptedException The thread was interrupted while waiting.
+	 */
+	public synchronized DataObject take(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (dataObjects.isEmpty() && !isEnded) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return null;
+			}
+			wait(remaining);
+		}
+		DataObject dataObject = dataObjects.poll();
+		notifyAll();
+		return dataObject;
+	}
+
+	/**
+	 * Checks if the stream is ended and all data objects were taken.
+	 * @return <code>true</code> if no further data objects will be available, otherwise <code>false</code>.
+	 */
+	public synchronized boolean isDrained() {
+		return isEnded && dataObjects.isEmpty();
+	}
+
+	/**
+	 * Closes the stream. Data objects which were not taken are discarded, further data objects are rejected.
+	 */
+	public synchronized void close() {
+		isClosed = true;
+		dataObjects.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Checks if the stream was closed by the caller.
+	 * @return <code>true</code> if the stream is closed, otherwise <code>false</code>.
+	 */
+	public synchronized boolean isClosed() {
+		return isClosed;
+	}
+}
@@ -0,0 +1,128 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Routes the responses of persistence service queries of a connection to the streams of their requests.
+ * Smack passes the response to the query provider without its packet id, so that a response is only routed to a stream
+ * if the streamed query is the only query of the connection awaiting a response. Otherwise the data objects are collected
+ * in the response and delivered with it.
+ * The router of a connection is known to the provider once a response of the connection was received, as the provider
+ * identifies the connection by the parser it reads from.
+ * A query stays registered until its response is received, even if the caller stopped waiting for it,
+ * or until the connection is reset.
+ *
+ * {@link DataHandler}
+ */
+public class QueryStreamRouter {
+	private static final Map<Object, QueryStreamRouter> routers = new WeakHashMap<Object, QueryStreamRouter>(); // <connection, router>
+	private static final Map<Object, QueryStreamRouter> sources = new WeakHashMap<Object, QueryStreamRouter>(); // <parser, router>
+
+	private final Map<String, QueryStream> pendingQueries; // <packet id, stream or null>
+	private final Set<String> claimedQueries;
+
+	/**
+	 * Creates a router without pending queries.
+	 */
+	public QueryStreamRouter() {
+		this.pendingQueries = new HashMap<String, QueryStream>();
+		this.claimedQueries = new HashSet<String>();
+	}
+
+	/**
+	 * Returns the router of a connection.
+	 * @param connection Connection to return the router for.
+	 * @return Router shared by all handlers of the connection.
+	 */
+	public static QueryStreamRouter getInstance(Object connection) {
+		synchronized (routers) {
+			QueryStreamRouter router = routers.get(connection);
+			if (router == null) {
+				router = new QueryStreamRouter();
+				routers.put(connection, router);
+			}
+			return router;
+		}
+	}
+
+	/**
+	 * Returns the stream of the response which is read from the given source.
+	 * @param source Parser the response is read from.
+	 * @return Stream of the only pending query of the connection, or <code>null</code> if the response has to be collected.
+	 */
+	public static QueryStream claimStream(Object source) {
+		QueryStreamRouter router;
+		synchronized (sources) {
+			router = sources.get(source);
+		}
+		return router != null ? router.claimStream() : null;
+	}
+
+	/**
+	 * Associates a source with this router, i.e., responses read from the source belong to the connection of the router.
+	 * @param source Parser responses of the connection are read from.
+	 */
+	public void bind(Object source) {
+		if (source == null) {
+			return;
+		}
+		synchronized (sources) {
+			sources.put(source, this);
+		}
+	}
+
+	/**
+	 * Registers a query before it is sent.
+	 * @param packetId Packet identifier of the query.
+	 * @param stream Stream to pass the data objects of the response to, or <code>null</code> if they are collected in the response.
+	 */
+	public synchronized void register(String packetId, QueryStream stream) {
+		pendingQueries.put(packetId, stream);
+	}
+
+	/**
+	 * Unregisters a query after its response was received or if it could not be sent.
+	 * If the query is not registered, nothing happens.
+	 * @param packetId Packet identifier of the query.
+	 */
+	public synchronized void complete(String packetId) {
+		pendingQueries.remove(packetId);
+		claimedQueries.remove(packetId);
+	}
+
+	/**
+	 * Unregisters all queries, e.g., because the connection was reset and no responses will be received.
+	 */
+	public synchronized void reset() {
+		pendingQueries.clear();
+		claimedQueries.clear();
+	}
+
+	/**
+	 * Returns the number of queries awaiting a response.
+	 * @return Number of pending queries.
+	 */
+	public synchronized int getPendingQueryCount() {
+		return pendingQueries.size();
+	}
+
+	/**
+	 * Claims the stream for a response which is about to be parsed.
+	 * @return Stream if a streamed query is the only pending query and its response was not parsed yet, otherwise <code>null</code>.
+	 */
+	synchronized QueryStream claimStream() {
+		if (pendingQueries.size() != 1) {
+			return null;
+		}
+		Entry<String, QueryStream> entry = pendingQueries.entrySet().iterator().next();
+		if (entry.getValue() == null || !claimedQueries.add(entry.getKey())) {
+			return null;
+		}
+		return entry.getValue();
+	}
+}
@@ -1,35 +1,67 @@
 package de.imc.mirror.sdk.java;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Helper class to provide blocking IQ requests. 
  * A latch is set up which is released when a result is available.
+ * Callbacks can be registered to be notified about the completion without blocking.
  * @author simon.schwantzer(at)im-c.de
  *
  */
 public class RequestFuture<E> implements Future<E> {
+	private static final Logger logger = Logger.getLogger(RequestFuture.class.getName());
+	
+	/**
+	 * Callback notified when a request future is completed.
+	 */
+	public interface Callback<E> {
+		/**
+		 * Called when the response for the request is available.
+		 * @param response Response of the request.
+		 */
+		public void onSuccess(E response);
+		
+		/**
+		 * Called when the request failed or was cancelled.
+		 * @param cause Cause of the failure. A {@link CancellationException} if the request was cancelled.
+		 */
+		public void onFailure(Throwable cause);
+	}
+	
 	private volatile E response = null;
+	private volatile Throwable exception = null;
     private volatile boolean cancelled = false;
     private final CountDownLatch countDownLatch;
+    private List<Callback<E>> callbacks;
     
 	public RequestFuture() {
 		countDownLatch = new CountDownLatch(1);
+		callbacks = new ArrayList<Callback<E>>();
 	}
 
 	@Override
 	public boolean cancel(boolean mayInterruptIfRunning) {
-		if (isDone()) {
-			return false;
-		} else {
-			countDownLatch.countDown();
+		List<Callback<E>> callbacksToNotify;
+		synchronized (this) {
+			if (isDone()) {
+				return false;
+			}
 			cancelled = true;
-			return !isDone();
+			countDownLatch.countDown();
+			callbacksToNotify = releaseCallbacks();
 		}
+		notifyCallbacks(callbacksToNotify);
+		return true;
 	}
 
 	@Override
@@ -45,7 +77,7 @@ public class RequestFuture<E> implements Future<E> {
 	@Override
 	public E get() throws InterruptedException, ExecutionException {
 		countDownLatch.await();
-		return response;
+		return getResult();
 	}
 
 	@Override
@@ -55,6 +87,13 @@ public class RequestFuture<E> implements Future<E> {
 			throw new TimeoutException();
 		}
 		
+		return getResult();
+	}
+	
+	private E getResult() throws ExecutionException {
+		if (exception != null) {
+			throw new ExecutionException(exception);
+		}
 		return response;
 	}
 	
@@ -62,11 +101,82 @@ public class RequestFuture<E> implements Future<E> {
 	 * Sets the response for the request.
 	 * When called, the countdown latch is released and the get()-calls are no longer blocked.
 	 * This method is called when the related IQ response is received by the SpacesService.
+	 * If the future is already completed, the call is ignored.
 	 * @param response IQ response send by the server.
 	 */
 	public void setResponse(E response) {
-		this.response = response;
-		countDownLatch.countDown();
+		List<Callback<E>> callbacksToNotify;
+		synchronized (this) {
+			if (isDone()) {
+				return;
+			}
+			this.response = response;
+			countDownLatch.countDown();
+			callbacksToNotify = releaseCallbacks();
+		}
+		notifyCallbacks(callbacksToNotify);
+	}
+	
+	/**
+	 * Marks the request as failed.
+	 * When called, the countdown latch is released and the get()-calls throw an {@link ExecutionException} wrapping the given cause.
+	 * If the future is already completed, the call is ignored.
+	 * @param cause Cause of the failure.
+	 */
+	public void setException(Throwable cause) {
+		if (cause == null) {
+			throw new IllegalArgumentException("The cause must not be null.");
+		}
+		List<Callback<E>> callbacksToNotify;
+		synchronized (this) {
+			if (isDone()) {
+				return;
+			}
+			this.exception = cause;
+			countDownLatch.countDown();
+			callbacksToNotify = releaseCallbacks();
+		}
+		notifyCallbacks(callbacksToNotify);
+	}
+	
+	/**
+	 * Registers a callback to be notified when the future is completed.
+	 * If the future is already completed, the callback is called immediately by the calling thread.
+	 * Otherwise, the callback is called by the thread completing the future.
+	 * @param callback Callback to register.
+	 */
+	public void addCallback(Callback<E> callback) {
+		synchronized (this) {
+			if (!isDone()) {
+				callbacks.add(callback);
+				return;
+			}
+		}
+		List<Callback<E>> callbacksToNotify = new ArrayList<Callback<E>>(1);
+		callbacksToNotify.add(callback);
+		notifyCallbacks(callbacksToNotify);
+	}
+	
+	private List<Callback<E>> releaseCallbacks() {
+		List<Callback<E>> released = callbacks;
+		callbacks = new ArrayList<Callback<E>>(0);
+		return released;
+	}
+	
+	private void notifyCallbacks(List<Callback<E>> callbacksToNotify) {
+		for (Callback<E> callback : callbacksToNotify) {
+			try {
+				if (cancelled) {
+					callback.onFailure(new CancellationException());
+				} else if (exception != null) {
+					callback.onFailure(exception);
+				} else {
+					callback.onSuccess(response);
+				}
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "A request callback caused an exception.", e);
+			}
+		}
 	}
 	
-}
\ No newline at end of file
+}
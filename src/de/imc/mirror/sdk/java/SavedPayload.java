@@ -0,0 +1,61 @@
+package de.imc.mirror.sdk.java;
+
+import org.jivesoftware.smackx.pubsub.SimplePayload;
+
+/**
+ * Payload of the sendcache together with the space it is sent to.
+ *
+ * {@link DataWrapper}
+ */
+public class SavedPayload {
+	private final String payloadId;
+	private final String spaceId;
+	private final SimplePayload payload;
+	private final long sequence;
+
+	/**
+	 * Creates a saved payload.
+	 * @param payloadId The id of the payload.
+	 * @param spaceId The id of the space to send the payload to.
+	 * @param payload The payload to send.
+	 * @param sequence Position of the payload in the sendcache.
+	 */
+	public SavedPayload(String payloadId, String spaceId, SimplePayload payload, long sequence) {
+		this.payloadId = payloadId;
+		this.spaceId = spaceId;
+		this.payload = payload;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Returns the id of the payload.
+	 * @return Payload id.
+	 */
+	public String getPayloadId() {
+		return payloadId;
+	}
+
+	/**
+	 * Returns the id of the space to send the payload to.
+	 * @return Space id.
+	 */
+	public String getSpaceId() {
+		return spaceId;
+	}
+
+	/**
+	 * Returns the payload to send.
+	 * @return Payload.
+	 */
+	public SimplePayload getPayload() {
+		return payload;
+	}
+
+	/**
+	 * Returns the position of the payload in the sendcache. Payloads are sent in ascending order.
+	 * @return Sequence number.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+}
@@ -0,0 +1,188 @@
+package de.imc.mirror.sdk.java;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory-bounded membership index for the identifiers of cached items.
+ * The index combines a bloom filter of all added identifiers with an LRU set of recently added or confirmed identifiers.
+ * A negative bloom filter answer is definite, an identifier in the recent set is known to be cached.
+ * All other identifiers have to be checked against the underlying storage.
+ * Removed identifiers are only dropped from the recent set, as the bloom filter does not support deletions.
+ *
+ * {@link DataWrapperExtern}
+ */
+public class SeenItemIndex {
+
+	/**
+	 * Result of a lookup.
+	 */
+	public enum Membership {
+		/**
+		 * The identifier was never added to the index.
+		 */
+		ABSENT,
+		/**
+		 * The identifier was recently added or confirmed.
+		 */
+		PRESENT,
+		/**
+		 * The identifier may have been added. The underlying storage has to be checked.
+		 */
+		UNKNOWN
+	}
+
+	public static final int DEFAULT_EXPECTED_ITEMS = 100000;
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+	public static final int DEFAULT_RECENT_CAPACITY = 10000;
+
+	private final double falsePositiveRate;
+	private final Map<String, Boolean> recentIds;
+	private int expectedItems;
+	private long[] bits;
+	private int bitCount;
+	private int hashCount;
+	private int addedCount;
+
+	/**
+	 * Creates an index with default sizes.
+	 */
+	public SeenItemIndex() {
+		this(DEFAULT_EXPECTED_ITEMS, DEFAULT_FALSE_POSITIVE_RATE, DEFAULT_RECENT_CAPACITY);
+	}
+
+	/**
+	 * Creates an index.
+	 * @param expectedItems Number of identifiers expected to be added.
+	 * @param falsePositiveRate Targeted false positive rate of the bloom filter, e.g., <code>0.01</code>.
+	 * @param recentCapacity Maximum number of identifiers kept in the recent set.
+	 */
+	public SeenItemIndex(int expectedItems, double falsePositiveRate, final int recentCapacity) {
+		if (expectedItems < 1 || recentCapacity < 1) {
+			throw new IllegalArgumentException("The sizes of the index have to be positive.");
+		}
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("The false positive rate has to be between 0 and 1.");
+		}
+		this.falsePositiveRate = falsePositiveRate;
+		this.recentIds = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > recentCapacity;
+			}
+		};
+		allocate(expectedItems);
+	}
+
+	private void allocate(int expectedItems) {
+		this.expectedItems = expectedItems;
+		double ln2 = Math.log(2);
+		long bitCount = (long) Math.ceil(-expectedItems * Math.log(falsePositiveRate) / (ln2 * ln2));
+		this.bitCount = (int) Math.max(64, Math.min(bitCount, Integer.MAX_VALUE - 63));
+		this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedItems * ln2));
+		this.bits = new long[(this.bitCount + 63) / 64];
+		this.addedCount = 0;
+	}
+
+	/**
+	 * Adds an identifier to the index.
+	 * @param id Item identifier.
+	 */
+	public synchronized void add(String id) {
+		int h1 = hash(id.hashCode());
+		int h2 = hash(h1 ^ 0x5bd1e995);
+		for (int i = 0; i < hashCount; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+			bits[bit >>> 6] |= 1L << bit;
+		}
+		addedCount++;
+		recentIds.put(id, Boolean.TRUE);
+	}
+
+	/**
+	 * Marks an identifier as present after it was confirmed by the underlying storage.
+	 * @param id Item identifier.
+	 */
+	public synchronized void confirm(String id) {
+		recentIds.put(id, Boolean.TRUE);
+	}
+
+	/**
+	 * Removes an identifier from the recent set.
+	 * Subsequent lookups for the identifier will return {@link Membership#UNKNOWN} or {@link Membership#ABSENT}.
+	 * @param id Item identifier.
+	 */
+	public synchronized void remove(String id) {
+		recentIds.remove(id);
+	}
+
+	/**
+	 * Checks if an identifier was added to the index.
+	 * @param id Item identifier.
+	 * @return Membership of the identifier.
+	 */
+	public synchronized Membership lookup(String id) {
+		if (recentIds.containsKey(id)) {
+			return Membership.PRESENT;
+		}
+		int h1 = hash(id.hashCode());
+		int h2 = hash(h1 ^ 0x5bd1e995);
+		for (int i = 0; i < hashCount; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+			if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+				return Membership.ABSENT;
+			}
+		}
+		return Membership.UNKNOWN;
+	}
+
+	/**
+	 * Removes all identifiers from the index.
+	 */
+	public synchronized void clear() {
+		recentIds.clear();
+		allocate(expectedItems);
+	}
+
+	/**
+	 * Replaces the content of the index with the given identifiers.
+	 * The bloom filter is resized if more identifiers are given than expected.
+	 * @param ids Identifiers of all cached items.
+	 */
+	public synchronized void rebuild(Collection<String> ids) {
+		recentIds.clear();
+		allocate(Math.max(expectedItems, 2 * ids.size()));
+		for (String id : ids) {
+			add(id);
+		}
+	}
+
+	/**
+	 * Checks if more identifiers were added than the bloom filter was sized for.
+	 * In this case, the false positive rate exceeds the targeted rate and the index should be rebuilt.
+	 * @return <code>true</code> if the index should be rebuilt, otherwise <code>false</code>.
+	 */
+	public synchronized boolean isSaturated() {
+		return addedCount > expectedItems;
+	}
+
+	/**
+	 * Returns the number of identifiers added since the last rebuild.
+	 * @return Number of added identifiers.
+	 */
+	public synchronized int getAddedCount() {
+		return addedCount;
+	}
+
+	private static int hash(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -2,7 +2,7 @@ package de.imc.mirror.sdk.java;
 
 /**
  * Hook for the JVM shutdown process to safely store an external HSQL database if used.
- * This will close the database properly when the program is terminated.
+ * This will close the database and the outbox logs properly when the program is terminated.
  * @author Mach
  *
  */
@@ -23,6 +23,7 @@ public class ShutdownInterceptor extends Thread {
 	@Override
 	public void run(){
 		DataWrapperExtern.shutdown();
+		DataWrapper.closeOutboxLogs();
 	}
 
 }
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -55,6 +56,7 @@ import de.imc.mirror.sdk.exceptions.SpaceManagementException;
 import de.imc.mirror.sdk.exceptions.SpaceManagementException.Type;
 import de.imc.mirror.sdk.exceptions.UnknownEntityException;
 import de.imc.mirror.sdk.java.data.DatabaseConfig;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 
 /**
@@ -77,6 +79,19 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 	private Map<String, RequestFuture<Element>> pendingSpacesRequests;
 	private List<Space> spaces;
 	private DataWrapper datawrapper;
+	private List<SpaceChangeListener> spaceChangeListeners;
+	
+	/**
+	 * Listener notified when a space is modified or deleted by this handler.
+	 * Used internally to invalidate information derived from the space, e.g. its pubsub channel.
+	 */
+	public interface SpaceChangeListener {
+		/**
+		 * Called after a space was successfully configured or deleted.
+		 * @param spaceId Identifier of the space.
+		 */
+		public void spaceChanged(String spaceId);
+	}
 	
 	private PacketListener packetListener = new PacketListener(){
 
@@ -111,6 +126,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 		pendingSpacesRequests = new ConcurrentHashMap<String, RequestFuture<Element>>();
 		this.userInfo = this.connectionHandler.getCurrentUser();
 		this.spaces = new ArrayList<Space>();
+		this.spaceChangeListeners = new CopyOnWriteArrayList<SpaceChangeListener>();
 		connectionHandler.addConnectionStatusListener(new ConnectionStatusListener() {
 			
 			@Override
@@ -148,7 +164,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 			public String getChildElementXML() {
 				Element childElement = new Element("spaces", NamespaceConfig.SPACES_SERVICE);
 				childElement.addContent(new Element("create", NamespaceConfig.SPACES_SERVICE));
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 		};
@@ -262,7 +278,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 				xElement.addContent(moderatorsElement);
 				configureElement.addContent(xElement);
 				childElement.addContent(configureElement);
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 		};
@@ -350,7 +366,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 			public String getChildElementXML() {
 				Element childElement = new Element("spaces", NamespaceConfig.SPACES_SERVICE);
 				childElement.addContent(new Element("delete", NamespaceConfig.SPACES_SERVICE).setAttribute("space", spaceId));
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 			
@@ -369,6 +385,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 			String type = response.getAttributeValue("type");
 			if ("result".equalsIgnoreCase(type)){
 				datawrapper.deleteCachedSpace(spaceId);
+				notifySpaceChanged(spaceId);
 			}
 			else if ("error".equalsIgnoreCase(type)){
 				//TODO
@@ -561,7 +578,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 				xElement.addContent(membersElement);
 				xElement.addContent(moderatorsElement);
 			
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 			
@@ -580,6 +597,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 			if (response != null){
 				String type = response.getAttributeValue("type");
 				if ("result".equalsIgnoreCase(type)){
+					notifySpaceChanged(space.getId());
 					return getSpace(space.getId());
 				}
 				else if ("error".equalsIgnoreCase(type)){
@@ -790,7 +808,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 				Element channelsElement = new Element("channels", NamespaceConfig.SPACES_SERVICE);
 				channelsElement.setAttribute("space", space.getId());
 				childElement.addContent(channelsElement);
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 		};
@@ -861,7 +879,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 				Element modelsElement = new Element("models", NamespaceConfig.SPACES_SERVICE);
 				modelsElement.setAttribute("space", space.getId());
 				childElement.addContent(modelsElement);
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 		};
@@ -937,7 +955,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 					modelsElement.addContent(modelElement);
 				}
 				childElement.addContent(modelsElement);
-				XMLOutputter out = new XMLOutputter();
+				XMLOutputter out = XMLCodec.getOutputter();
 				return out.outputString(childElement);
 			}
 		};
@@ -1181,7 +1199,7 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 	 * @return The parsed JDOMElement.
 	 */
 	private Element parsePacketToElement(Packet packet){
-		SAXBuilder reader = new SAXBuilder();
+		SAXBuilder reader = XMLCodec.getBuilder();
 		StringReader in = new StringReader(packet.toXML());
 		Document document = null;
 		try {
@@ -1243,4 +1261,26 @@ public class SpaceHandler implements de.imc.mirror.sdk.OfflineModeHandler, de.im
 			throw new UnknownEntityException("OFFLINE mode: No space with ID " + spaceId + " cached.");
 		}
 	}
+	
+	/**
+	 * Registers a listener to be notified when a space is configured or deleted.
+	 * @param listener Listener to add.
+	 */
+	protected void addSpaceChangeListener(SpaceChangeListener listener) {
+		spaceChangeListeners.add(listener);
+	}
+	
+	/**
+	 * Removes a space change listener.
+	 * @param listener Listener to remove.
+	 */
+	protected void removeSpaceChangeListener(SpaceChangeListener listener) {
+		spaceChangeListeners.remove(listener);
+	}
+	
+	private void notifySpaceChanged(String spaceId) {
+		for (SpaceChangeListener listener : spaceChangeListeners) {
+			listener.spaceChanged(spaceId);
+		}
+	}
 }
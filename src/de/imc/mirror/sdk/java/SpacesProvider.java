@@ -6,6 +6,8 @@ import org.jivesoftware.smack.packet.IQ;
 import org.jivesoftware.smack.provider.IQProvider;
 import org.xmlpull.v1.XmlPullParser;
 
+import de.imc.mirror.sdk.java.xml.XMLCodec;
+
 
 /**
  * Provider for IQ packages starting with a <code>spaces</code> tag.
@@ -22,7 +24,7 @@ public class SpacesProvider implements IQProvider {
 		
 		@Override
 		public String getChildElementXML() {
-			XMLOutputter out = new XMLOutputter();
+			XMLOutputter out = XMLCodec.getOutputter();
 			return out.outputString(element);
 		}
 	}
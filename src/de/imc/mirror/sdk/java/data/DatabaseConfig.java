@@ -48,6 +48,7 @@ public class DatabaseConfig {
 	private String hostName = "";
 	private String dbUser = "SA";
 	private String dbPassword = "";
+	private String outboxLocation = null;
 	
 	/**
 	 * Method to create a new DatabaseConfig object with the specified parameters.
@@ -200,6 +201,28 @@ public class DatabaseConfig {
 		return dbName;
 	}
 	
+	/**
+	 * Sets the directory of the outbox log, in which payloads published in offline mode are stored until they are sent.
+	 * The outbox log is used instead of the send table of the database and can also be used if database caching is disabled.
+	 * @param location Path of the directory. If <code>null</code>, the default location is used.
+	 */
+	public void setOutboxLocation(String location){
+		this.outboxLocation = location;
+	}
+	
+	/**
+	 * Returns the directory of the outbox log.
+	 * If no directory is set and the embedded database is used, the outbox log is stored next to the database.
+	 * There is no default for other database types, as no local directory is known which is used by a single process only.
+	 * @return Path of the directory or <code>null</code> if payloads to send are stored in the database or in memory.
+	 */
+	public String getOutboxLocation(){
+		if (outboxLocation == null && type == Type.EMBEDDED && hostName != null){
+			return hostName + dbName + "-outbox";
+		}
+		return outboxLocation;
+	}
+	
 	/**
 	 * Sets the type of the database to the given one.
 	 * @param type The new type of the database.
@@ -13,6 +13,7 @@ public class SendTable {
 	public static final String SEND_NAMESPACE = "send_namespace";
 	public static final String SEND_PAYLOAD = "payload";
 	public static final String USER = "user";
+	public static final String SEND_SEQUENCE = "send_sequence";
 	public static final String SQL_CREATE = 
 										"CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
 										SEND_ID + " VARCHAR(64) NOT NULL," +
@@ -20,7 +21,10 @@ public class SendTable {
 										SEND_NAME + " VARCHAR(64) NOT NULL," +
 										SEND_NAMESPACE + " VARCHAR(64) NOT NULL," + 
 										SEND_PAYLOAD + " VARCHAR(1024) NOT NULL," +
-										USER + " VARCHAR(64) NOT NULL);";
+										USER + " VARCHAR(64) NOT NULL," +
+										SEND_SEQUENCE + " BIGINT DEFAULT 0 NOT NULL);";
+	
+	public static final String SQL_ADD_SEQUENCE = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + SEND_SEQUENCE + " BIGINT DEFAULT 0 NOT NULL;";
 
 	public static final String SQL_DROP = "DROP TABLE IF EXISTS " + TABLE_NAME + ";";
 
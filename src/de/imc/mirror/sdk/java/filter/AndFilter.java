@@ -6,6 +6,7 @@ import java.util.Set;
 
 import de.imc.mirror.sdk.DataObject;
 import de.imc.mirror.sdk.DataObjectFilter;
+import de.imc.mirror.sdk.java.DataObjectHeader;
 
 /**
  * This meta filter represents a logical AND. IF and only if any child filter validates the data object,
@@ -13,7 +14,7 @@ import de.imc.mirror.sdk.DataObjectFilter;
  * 
  * @author simon.schwantzer(at)im-c.de
  */
-public class AndFilter implements de.imc.mirror.sdk.filter.AndFilter {
+public class AndFilter implements de.imc.mirror.sdk.filter.AndFilter, EnvelopeFilter {
 	private Set<DataObjectFilter> childFilters;
 	
 	/**
@@ -35,6 +36,29 @@ public class AndFilter implements de.imc.mirror.sdk.filter.AndFilter {
 		return true;
 	}
 
+	@Override
+	public Set<String> getEnvelopeFields() {
+		Set<String> fields = new HashSet<String>();
+		for (DataObjectFilter filter : childFilters) {
+			if (filter instanceof EnvelopeFilter) {
+				fields.addAll(((EnvelopeFilter) filter).getEnvelopeFields());
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Rejects the header if any child envelope filter rejects it.
+	 * Child filters which cannot be evaluated on the header are ignored.
+	 */
+	@Override
+	public boolean isEnvelopeValid(DataObjectHeader header) {
+		for (DataObjectFilter filter : childFilters) {
+			if (filter instanceof EnvelopeFilter && !((EnvelopeFilter) filter).isEnvelopeValid(header)) return false;
+		}
+		return true;
+	}
+
 	@Override
 	public DataObjectFilter addFilter(DataObjectFilter filter) {
 		childFilters.add(filter);
@@ -1,15 +1,21 @@
 package de.imc.mirror.sdk.java.filter;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.jdom2.Element;
 
 import de.imc.mirror.sdk.CDMData;
 import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.java.DataObjectHeader;
 
 /**
  * Filter for data model information.
  * @author simon.schwantzer(at)im-c.de
  */
-public class DataModelFilter implements de.imc.mirror.sdk.filter.DataModelFilter {
+public class DataModelFilter implements de.imc.mirror.sdk.filter.DataModelFilter, EnvelopeFilter {
 	private final String namespace;
 	private final String version;
 	
@@ -41,6 +47,27 @@ public class DataModelFilter implements de.imc.mirror.sdk.filter.DataModelFilter
 		return element;
 	}
 
+	@Override
+	public Set<String> getEnvelopeFields() {
+		if (version != null) {
+			return Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(FIELD_NAMESPACE, FIELD_MODEL_VERSION)));
+		} else {
+			return Collections.singleton(FIELD_NAMESPACE);
+		}
+	}
+
+	/**
+	 * Checks the namespace and, if a version is set, the model version of the header.
+	 * The verification of the CDM information is only performed on the data object. 
+	 */
+	@Override
+	public boolean isEnvelopeValid(DataObjectHeader header) {
+		if (!namespace.equals(header.getNamespaceURI())) {
+			return false;
+		}
+		return version == null || version.equals(header.getModelVersion());
+	}
+
 	@Override
 	public boolean isDataObjectValid(DataObject dataObject) {
 		if (!namespace.equals(dataObject.getNamespaceURI())) {
@@ -0,0 +1,26 @@
+package de.imc.mirror.sdk.java.filter;
+
+import de.imc.mirror.sdk.DataObject;
+
+/**
+ * Access to root attributes of data objects.
+ * For data objects created from their XML string, the header is used and the XML element is not built.
+ */
+final class EnvelopeFields {
+	
+	private EnvelopeFields() {
+	}
+	
+	/**
+	 * Returns the value of a root attribute.
+	 * @param dataObject Data object to read the attribute from.
+	 * @param name Name of the attribute.
+	 * @return Attribute value or <code>null</code> if the attribute is not set.
+	 */
+	static String getAttribute(DataObject dataObject, String name) {
+		if (dataObject instanceof de.imc.mirror.sdk.java.DataObject) {
+			return ((de.imc.mirror.sdk.java.DataObject) dataObject).getHeader().getAttribute(name);
+		}
+		return dataObject.getElement().getAttributeValue(name);
+	}
+}
@@ -0,0 +1,34 @@
+package de.imc.mirror.sdk.java.filter;
+
+import java.util.Set;
+
+import de.imc.mirror.sdk.java.DataObjectHeader;
+
+/**
+ * Filter which can be evaluated on the header of a data object.
+ * The data handler applies envelope filters before a received data object is built,
+ * so that rejected objects are never parsed completely.
+ * @see DataObjectHeader
+ */
+public interface EnvelopeFilter {
+	public static final String FIELD_NAMESPACE = "namespace";
+	public static final String FIELD_PUBLISHER = "publisher";
+	public static final String FIELD_TIMESTAMP = "timestamp";
+	public static final String FIELD_REF = "ref";
+	public static final String FIELD_MODEL_VERSION = "modelVersion";
+	
+	/**
+	 * Returns the header fields the filter depends on.
+	 * @return Set of field names, e.g., {@link #FIELD_PUBLISHER}. The set is empty if the filter cannot be evaluated on the header.
+	 */
+	public Set<String> getEnvelopeFields();
+	
+	/**
+	 * Checks the header of a data object.
+	 * A negative result is final, i.e., the data object would also be rejected by the filter.
+	 * A positive result does not imply that the data object is valid, the filter may check additional information.
+	 * @param header Header of the data object.
+	 * @return <code>false</code> if the data object is rejected by the filter, otherwise <code>true</code>.
+	 */
+	public boolean isEnvelopeValid(DataObjectHeader header);
+}
@@ -1,15 +1,19 @@
 package de.imc.mirror.sdk.java.filter;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.jdom2.Element;
 
 import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.java.DataObjectHeader;
 
 /**
  * Filter for specific namespaces.
  * Restricts the query to specific namespaces, e.g. "mirror:application:moodmap:mood".
  * @author simon.schwantzer(at)im-c.de
  */
-public class NamespaceFilter implements de.imc.mirror.sdk.filter.NamespaceFilter {
+public class NamespaceFilter implements de.imc.mirror.sdk.filter.NamespaceFilter, EnvelopeFilter {
 	private final String compareString;
 	private final CompareType compareType;
 	
@@ -41,7 +45,20 @@ public class NamespaceFilter implements de.imc.mirror.sdk.filter.NamespaceFilter
 
 	@Override
 	public boolean isDataObjectValid(DataObject dataObject) {
-		String objectNamespace = dataObject.getNamespaceURI();
+		return isNamespaceValid(dataObject.getNamespaceURI());
+	}
+
+	@Override
+	public Set<String> getEnvelopeFields() {
+		return Collections.singleton(FIELD_NAMESPACE);
+	}
+
+	@Override
+	public boolean isEnvelopeValid(DataObjectHeader header) {
+		return isNamespaceValid(header.getNamespaceURI());
+	}
+	
+	private boolean isNamespaceValid(String objectNamespace) {
 		switch (compareType) {
 		case STRICT:
 			if (!objectNamespace.equals(compareString)) {
@@ -6,6 +6,7 @@ import java.util.Set;
 
 import de.imc.mirror.sdk.DataObject;
 import de.imc.mirror.sdk.DataObjectFilter;
+import de.imc.mirror.sdk.java.DataObjectHeader;
 
 /**
  * This meta filter represents a logical OR. If a single child filter validates the data object,
@@ -13,7 +14,7 @@ import de.imc.mirror.sdk.DataObjectFilter;
  * 
  * @author simon.schwantzer(at)im-c.de
  */
-public class OrFilter implements de.imc.mirror.sdk.filter.OrFilter {
+public class OrFilter implements de.imc.mirror.sdk.filter.OrFilter, EnvelopeFilter {
 	private Set<DataObjectFilter> childFilters;
 	
 	/**
@@ -35,6 +36,33 @@ public class OrFilter implements de.imc.mirror.sdk.filter.OrFilter {
 		return false;
 	}
 
+	@Override
+	public Set<String> getEnvelopeFields() {
+		Set<String> fields = new HashSet<String>();
+		for (DataObjectFilter filter : childFilters) {
+			if (!(filter instanceof EnvelopeFilter)) {
+				return Collections.emptySet();
+			}
+			fields.addAll(((EnvelopeFilter) filter).getEnvelopeFields());
+		}
+		return fields;
+	}
+
+	/**
+	 * Rejects the header if all child filters reject it.
+	 * If any child filter cannot be evaluated on the header, the header is accepted.
+	 */
+	@Override
+	public boolean isEnvelopeValid(DataObjectHeader header) {
+		if (childFilters.isEmpty()) {
+			return false;
+		}
+		for (DataObjectFilter filter : childFilters) {
+			if (!(filter instanceof EnvelopeFilter) || ((EnvelopeFilter) filter).isEnvelopeValid(header)) return true;
+		}
+		return false;
+	}
+
 	@Override
 	public DataObjectFilter addFilter(DataObjectFilter filter) {
 		childFilters.add(filter);
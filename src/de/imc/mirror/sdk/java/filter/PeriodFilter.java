@@ -3,19 +3,22 @@ package de.imc.mirror.sdk.java.filter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Set;
 
 import javax.xml.bind.DatatypeConverter;
 
 import org.jdom2.Element;
 
 import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.java.DataObjectHeader;
 
 /**
  * Restricts the period in time the data object was published. 
  * @author simon.schwantzer(at)im-c.de
  */
-public class PeriodFilter implements de.imc.mirror.sdk.filter.PeriodFilter {
+public class PeriodFilter implements de.imc.mirror.sdk.filter.PeriodFilter, EnvelopeFilter {
 	private static final DateFormat ISO8061_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
 
 	private final Date from, to;
@@ -50,7 +53,20 @@ public class PeriodFilter implements de.imc.mirror.sdk.filter.PeriodFilter {
 
 	@Override
 	public boolean isDataObjectValid(DataObject dataObject) {
-		String timestampValue = dataObject.getElement().getAttributeValue("timestamp"); 
+		return isTimestampValid(EnvelopeFields.getAttribute(dataObject, FIELD_TIMESTAMP));
+	}
+
+	@Override
+	public Set<String> getEnvelopeFields() {
+		return Collections.singleton(FIELD_TIMESTAMP);
+	}
+
+	@Override
+	public boolean isEnvelopeValid(DataObjectHeader header) {
+		return isTimestampValid(header.getTimestamp());
+	}
+	
+	private boolean isTimestampValid(String timestampValue) {
 		if (timestampValue == null) {
 			return false;
 		}
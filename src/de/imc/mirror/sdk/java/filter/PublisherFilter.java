@@ -1,15 +1,19 @@
 package de.imc.mirror.sdk.java.filter;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.jdom2.Element;
 
 import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.java.DataObjectHeader;
 
 /**
  * Only data objects from the given publisher (bare-JID or full-JID) are returned. Removes all non-personalized data objects.
  * @author simon.schwantzer(at)im-c.de
  *
  */
-public class PublisherFilter implements de.imc.mirror.sdk.filter.PublisherFilter {
+public class PublisherFilter implements de.imc.mirror.sdk.filter.PublisherFilter, EnvelopeFilter {
 	
 	private final String publisher;
 	
@@ -30,7 +34,20 @@ public class PublisherFilter implements de.imc.mirror.sdk.filter.PublisherFilter
 
 	@Override
 	public boolean isDataObjectValid(DataObject dataObject) {
-		String objectPublisher = dataObject.getElement().getAttributeValue("publisher");
+		return isPublisherValid(EnvelopeFields.getAttribute(dataObject, FIELD_PUBLISHER));
+	}
+
+	@Override
+	public Set<String> getEnvelopeFields() {
+		return Collections.singleton(FIELD_PUBLISHER);
+	}
+
+	@Override
+	public boolean isEnvelopeValid(DataObjectHeader header) {
+		return isPublisherValid(header.getPublisher());
+	}
+	
+	private boolean isPublisherValid(String objectPublisher) {
 		if (objectPublisher == null || !objectPublisher.startsWith(publisher)) {
 			return false;
 		}
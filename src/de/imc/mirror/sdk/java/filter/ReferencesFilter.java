@@ -1,15 +1,19 @@
 package de.imc.mirror.sdk.java.filter;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.jdom2.Element;
 
 import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.java.DataObjectHeader;
 
 /**
  * Request only data objects which refer to a specific object.
  * @author simon.schwantzer(at)im-c.de
  *
  */
-public class ReferencesFilter implements de.imc.mirror.sdk.filter.ReferencesFilter {
+public class ReferencesFilter implements de.imc.mirror.sdk.filter.ReferencesFilter, EnvelopeFilter {
 	private final String referenceId;
 	
 	/**
@@ -29,7 +33,20 @@ public class ReferencesFilter implements de.imc.mirror.sdk.filter.ReferencesFilt
 
 	@Override
 	public boolean isDataObjectValid(DataObject dataObject) {
-		String objectRefValue = dataObject.getElement().getAttributeValue("ref");
+		return isReferenceValid(EnvelopeFields.getAttribute(dataObject, FIELD_REF));
+	}
+
+	@Override
+	public Set<String> getEnvelopeFields() {
+		return Collections.singleton(FIELD_REF);
+	}
+
+	@Override
+	public boolean isEnvelopeValid(DataObjectHeader header) {
+		return isReferenceValid(header.getRef());
+	}
+	
+	private boolean isReferenceValid(String objectRefValue) {
 		if (objectRefValue == null || !objectRefValue.equals(referenceId)) {
 			return false;
 		}
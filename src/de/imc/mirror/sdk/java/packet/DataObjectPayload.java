@@ -0,0 +1,66 @@
+package de.imc.mirror.sdk.java.packet;
+
+import org.jdom2.Element;
+import org.jivesoftware.smack.packet.PacketExtension;
+
+import de.imc.mirror.sdk.java.DataObject;
+import de.imc.mirror.sdk.java.DataObjectHeader;
+
+/**
+ * Payload of a pubsub item containing a data object.
+ * The payload keeps the header read while parsing the item together with the XML string of the data object,
+ * so that the data object can be created without re-parsing the payload.
+ * The XML element of the data object is only built when it is requested.
+ */
+public class DataObjectPayload implements PacketExtension {
+	private final DataObject dataObject;
+
+	/**
+	 * Creates a payload.
+	 * @param header Header of the data object.
+	 * @param xml XML string of the data object.
+	 */
+	public DataObjectPayload(DataObjectHeader header, String xml) {
+		this.dataObject = new DataObject(header, xml);
+	}
+
+	/**
+	 * Returns the header of the data object.
+	 * @return Header of the data object.
+	 */
+	public DataObjectHeader getHeader() {
+		return dataObject.getHeader();
+	}
+
+	/**
+	 * Returns the root element of the payload.
+	 * The element is built on the first call.
+	 * @return XML element.
+	 */
+	public Element getElement() {
+		return dataObject.getElement();
+	}
+
+	/**
+	 * Returns the data object represented by this payload.
+	 * @return Data object.
+	 */
+	public DataObject getDataObject() {
+		return dataObject;
+	}
+
+	@Override
+	public String getElementName() {
+		return dataObject.getElementName();
+	}
+
+	@Override
+	public String getNamespace() {
+		return dataObject.getNamespaceURI();
+	}
+
+	@Override
+	public String toXML() {
+		return dataObject.toString();
+	}
+}
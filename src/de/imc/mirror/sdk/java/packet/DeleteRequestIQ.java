@@ -8,6 +8,7 @@ import org.jivesoftware.smack.packet.IQ;
 
 import de.imc.mirror.sdk.config.NamespaceConfig;
 import de.imc.mirror.sdk.exceptions.QueryException;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 public class DeleteRequestIQ extends IQ {
 	
@@ -57,7 +58,7 @@ public class DeleteRequestIQ extends IQ {
 	
 	@Override
 	public String getChildElementXML() {
-		XMLOutputter out = new XMLOutputter();
+		XMLOutputter out = XMLCodec.getOutputter();
 		return out.outputString(childElement);
 	}
 }
@@ -4,6 +4,8 @@ import org.jdom2.Element;
 import org.jdom2.output.XMLOutputter;
 import org.jivesoftware.smack.packet.IQ;
 
+import de.imc.mirror.sdk.java.xml.XMLCodec;
+
 public class DeleteResponseIQ extends IQ {
 
 	private int numberOfDeletedEntries;	
@@ -29,7 +31,7 @@ public class DeleteResponseIQ extends IQ {
 	
 	@Override
 	public String getChildElementXML() {
-		XMLOutputter out = new XMLOutputter();
+		XMLOutputter out = XMLCodec.getOutputter();
 		return out.outputString(childElement);
 	}
 }
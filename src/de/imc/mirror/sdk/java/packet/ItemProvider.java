@@ -13,19 +13,20 @@
  */
 package de.imc.mirror.sdk.java.packet;
 
-import org.jdom2.Element;
-import org.jdom2.Namespace;
-import org.jdom2.output.XMLOutputter;
 import org.jivesoftware.smack.packet.PacketExtension;
 import org.jivesoftware.smack.provider.PacketExtensionProvider;
 import org.jivesoftware.smack.provider.ProviderManager;
 import org.jivesoftware.smack.util.PacketParserUtils;
 import org.jivesoftware.smackx.pubsub.PayloadItem;
-import org.jivesoftware.smackx.pubsub.SimplePayload;
 import org.xmlpull.v1.XmlPullParser;
 
+import de.imc.mirror.sdk.java.DataObjectHeader;
+import de.imc.mirror.sdk.java.xml.DataObjectReader;
+
 /**
- * Replaces the original item parser which doesn't transfer namespace information. 
+ * Replaces the original item parser which doesn't transfer namespace information.
+ * Payloads without a registered extension provider are returned as {@link DataObjectPayload}.
+ * The payload is streamed into a header and an XML string, the XML element is only built on demand.
  */
 public class ItemProvider implements PacketExtensionProvider {
 	public PacketExtension parseExtension(XmlPullParser parser) throws Exception {
@@ -58,62 +59,10 @@ public class ItemProvider implements PacketExtensionProvider {
 		if (ProviderManager.getInstance().getExtensionProvider(elementName, namespace) != null) {
 			return new PayloadItem<PacketExtension>(id, node, PacketParserUtils.parsePacketExtension(elementName, namespace, parser));
 		} else {
-			Element element = new Element(elementName, namespace);
-			for (int i = 0; i < parser.getAttributeCount(); i++) {
-				if (parser.getAttributePrefix(i) != null) {
-					Namespace attributeNamespace = Namespace.getNamespace(parser.getAttributePrefix(i), parser.getAttributeNamespace(i));
-					element.setAttribute(parser.getAttributeName(i), parser.getAttributeValue(i), attributeNamespace);
-				} else {
-					element.setAttribute(parser.getAttributeName(i), parser.getAttributeValue(i));
-				}
-			}
-			boolean done = false;
-			while (!done) {
-				int event = parser.next();
-				switch (event) {
-				case XmlPullParser.START_TAG:
-					element.addContent(parseArbitraryElement(parser));
-					break;
-				case XmlPullParser.TEXT:
-					element.setText(parser.getText());
-					break;
-				case XmlPullParser.END_TAG:
-					if (parser.getName().equals(elementName)) {
-						done = true;
-					}
-				}
-			}
-			String elementString = new XMLOutputter().outputString(element);
-			return new PayloadItem<SimplePayload>(id, node, new SimplePayload(elementName, namespace, elementString));
-		}
-	}
-
-	private Element parseArbitraryElement(XmlPullParser parser) throws Exception {
-		String elementName = parser.getName();
-		String namespace = parser.getNamespace();
-		Element element = new Element(elementName, namespace);
-		for (int i = 0; i < parser.getAttributeCount(); i++) {
-			element.setAttribute(parser.getAttributeName(i),
-					parser.getAttributeValue(i));
-		}
-
-		boolean done = false;
-		while (!done) {
-			int event = parser.next();
-			switch (event) {
-			case XmlPullParser.START_TAG:
-				element.addContent(parseArbitraryElement(parser));
-				break;
-			case XmlPullParser.TEXT:
-				element.setText(parser.getText());
-				break;
-			case XmlPullParser.END_TAG:
-				if (parser.getName().equals(elementName)) {
-					done = true;
-				}
-			}
+			DataObjectHeader header = DataObjectReader.readHeader(parser);
+			String xml = DataObjectReader.readElementXML(parser);
+			return new PayloadItem<DataObjectPayload>(id, node, new DataObjectPayload(header, xml));
 		}
-		return element;
 	}
 
 }
@@ -1,34 +1,94 @@
 package de.imc.mirror.sdk.java.packet;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jdom2.Element;
 import org.jdom2.Namespace;
 import org.jivesoftware.smack.packet.IQ;
 import org.jivesoftware.smack.provider.IQProvider;
 import org.xmlpull.v1.XmlPullParser;
 
+import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.config.NamespaceConfig;
+import de.imc.mirror.sdk.java.DataObjectHeader;
+import de.imc.mirror.sdk.java.QueryStream;
+import de.imc.mirror.sdk.java.QueryStreamRouter;
+import de.imc.mirror.sdk.java.xml.DataObjectReader;
 
+/**
+ * Provider for responses of the persistence service to queries.
+ * The data objects of the result are read from the pull parser without building an XML tree.
+ * If the response is routed to the stream of a query, each data object is put in the stream as soon as it is parsed
+ * instead of being collected in the response.
+ */
 public class PersistenceServiceQueryProvider implements IQProvider {
+	
 	@Override
 	public IQ parseIQ(XmlPullParser parser) throws Exception {
+		QueryStream stream = QueryStreamRouter.claimStream(parser);
 		String rootTagName = parser.getName();
 		String namespace = parser.getNamespace();
 		Element childElement = new Element(rootTagName, namespace);
+		List<DataObject> dataObjects = new ArrayList<DataObject>();
+		int streamedCount = 0;
 		boolean done = false;
-		while (!done) {
+		try {
+			while (!done) {
+				int event = parser.next();
+				switch (event) {
+				case XmlPullParser.START_TAG:
+					if ("result".equals(parser.getName()) && NamespaceConfig.PERSISTENCE_SERVICE.equals(parser.getNamespace())) {
+						childElement.addContent(new Element("result", NamespaceConfig.PERSISTENCE_SERVICE));
+						streamedCount += parseResult(parser, stream, dataObjects);
+					} else {
+						childElement.addContent(parseArbitraryElement(parser));
+					}
+					break;
+				case XmlPullParser.END_TAG:
+					if ("query".equals(parser.getName())) {
+						done = true;
+					}
+					break;
+				}
+			}
+		} finally {
+			if (stream != null) {
+				stream.end();
+			}
+		}
+		IQ iq = new QueryResponseIQ(childElement, dataObjects, streamedCount, parser);
+		return iq;
+	}
+	
+	/**
+	 * Reads the data objects of the result element.
+	 * Data objects of a stream closed by the caller are discarded.
+	 * @return Number of data objects put in the stream.
+	 */
+	private int parseResult(XmlPullParser parser, QueryStream stream, List<DataObject> dataObjects) throws Exception {
+		int streamedCount = 0;
+		while (true) {
 			int event = parser.next();
 			switch (event) {
 			case XmlPullParser.START_TAG:
-				childElement.addContent(parseArbitraryElement(parser));
+				DataObjectHeader header = DataObjectReader.readHeader(parser);
+				DataObject dataObject = new de.imc.mirror.sdk.java.DataObject(header, DataObjectReader.readElementXML(parser));
+				if (stream == null) {
+					dataObjects.add(dataObject);
+				} else if (stream.put(dataObject)) {
+					streamedCount++;
+				}
 				break;
 			case XmlPullParser.END_TAG:
-				if ("query".equals(parser.getName())) {
-					done = true;
+				if ("result".equals(parser.getName())) {
+					return streamedCount;
 				}
 				break;
+			case XmlPullParser.END_DOCUMENT:
+				return streamedCount;
 			}
 		}
-		IQ iq = new QueryResponseIQ(childElement);
-		return iq;
 	}
 	
 	private Element parseArbitraryElement(XmlPullParser parser) throws Exception {
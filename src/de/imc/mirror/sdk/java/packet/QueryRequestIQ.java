@@ -3,14 +3,21 @@ package de.imc.mirror.sdk.java.packet;
 import java.util.Set;
 
 import org.jdom2.Element;
+import org.jdom2.Namespace;
 import org.jdom2.output.XMLOutputter;
 import org.jivesoftware.smack.packet.IQ;
 
 import de.imc.mirror.sdk.SerializableDataObjectFilter;
 import de.imc.mirror.sdk.config.NamespaceConfig;
 import de.imc.mirror.sdk.exceptions.QueryException;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 public class QueryRequestIQ extends IQ {
+	/**
+	 * Namespace of result set management (XEP-0059) used to page query results.
+	 */
+	public static final String RESULT_SET_NAMESPACE = "http://jabber.org/protocol/rsm";
+	
 	/**
 	 * Creates a query for a data object with the given ID.
 	 * @param objectId Identifier of the data object to retrieve.
@@ -105,6 +112,27 @@ public class QueryRequestIQ extends IQ {
 	
 	private Element childElement;
 	
+	/**
+	 * Creates a query for a page of the result of this query.
+	 * The returned IQ has its own packet id.
+	 * @param max Maximum number of data objects to return.
+	 * @param after Identifier of the last data object of the previous page, as returned by the persistence service.
+	 * <code>null</code> to request the first page.
+	 * @return IQ for the query.
+	 */
+	public QueryRequestIQ createPageRequest(int max, String after) {
+		Namespace resultSetNamespace = Namespace.getNamespace(RESULT_SET_NAMESPACE);
+		Element queryElement = childElement.clone();
+		queryElement.removeChild("set", resultSetNamespace);
+		Element setElement = new Element("set", resultSetNamespace);
+		setElement.addContent(new Element("max", resultSetNamespace).setText(Integer.toString(max)));
+		if (after != null) {
+			setElement.addContent(new Element("after", resultSetNamespace).setText(after));
+		}
+		queryElement.addContent(setElement);
+		return new QueryRequestIQ(queryElement);
+	}
+	
 	/**
 	 * Private constructor.
 	 * @param childElement Element representing the IQ packet.
@@ -116,7 +144,7 @@ public class QueryRequestIQ extends IQ {
 	
 	@Override
 	public String getChildElementXML() {
-		XMLOutputter out = new XMLOutputter();
+		XMLOutputter out = XMLCodec.getOutputter();
 		return out.outputString(childElement);
 	}
 }
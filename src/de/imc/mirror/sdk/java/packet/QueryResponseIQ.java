@@ -1,6 +1,5 @@
 package de.imc.mirror.sdk.java.packet;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.jdom2.Element;
@@ -10,24 +9,53 @@ import org.jivesoftware.smack.packet.IQ;
 
 import de.imc.mirror.sdk.DataObject;
 import de.imc.mirror.sdk.config.NamespaceConfig;
-import de.imc.mirror.sdk.java.DataObjectBuilder;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
 
 public class QueryResponseIQ extends IQ {
 
 	private List<DataObject> retrievedDataObjects;	
 	private Element childElement;
+	private String lastId;
+	private int firstIndex;
+	private int count;
+	private int streamedCount;
+	private Object source;
 	
 	/**
 	 * Creates a IQ based on the given query response.
-	 * @param queryElement Child element of the response.
+	 * @param queryElement Child element of the response. The result element does not contain the data objects.
+	 * @param dataObjects Data objects of the result which were not put in the stream of the query.
+	 * @param streamedCount Number of data objects put in the stream of the query.
+	 * @param source Parser the response was read from.
 	 */
-	protected QueryResponseIQ(Element queryElement) {
+	protected QueryResponseIQ(Element queryElement, List<DataObject> dataObjects, int streamedCount, Object source) {
 		this.childElement = queryElement;
-		retrievedDataObjects = new ArrayList<DataObject>();
-		Element resultElement = queryElement.getChild("result", Namespace.getNamespace(NamespaceConfig.PERSISTENCE_SERVICE));
-		for (Element dataObjectElement : resultElement.getChildren()) {
-			DataObjectBuilder builder = new DataObjectBuilder(dataObjectElement, dataObjectElement.getNamespaceURI()); 
-			retrievedDataObjects.add(builder.build());
+		this.retrievedDataObjects = dataObjects;
+		this.streamedCount = streamedCount;
+		this.source = source;
+		Namespace resultSetNamespace = Namespace.getNamespace(QueryRequestIQ.RESULT_SET_NAMESPACE);
+		Element setElement = queryElement.getChild("set", resultSetNamespace);
+		lastId = null;
+		firstIndex = -1;
+		count = -1;
+		if (setElement != null) {
+			lastId = setElement.getChildTextTrim("last", resultSetNamespace);
+			Element firstElement = setElement.getChild("first", resultSetNamespace);
+			if (firstElement != null) {
+				firstIndex = parseInt(firstElement.getAttributeValue("index"));
+			}
+			count = parseInt(setElement.getChildTextTrim("count", resultSetNamespace));
+		}
+	}
+	
+	private static int parseInt(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return -1;
 		}
 	}
 	
@@ -39,9 +67,58 @@ public class QueryResponseIQ extends IQ {
 		return retrievedDataObjects;
 	}
 	
+	/**
+	 * Returns the identifier of the last data object of a paged result.
+	 * @return Identifier to request the next page with, or <code>null</code> if the result is not paged or the page is empty.
+	 */
+	public String getLastId() {
+		return lastId;
+	}
+	
+	/**
+	 * Returns the position of the first data object of a paged result within the complete result.
+	 * @return Index of the first data object or <code>-1</code> if it is not provided.
+	 */
+	public int getFirstIndex() {
+		return firstIndex;
+	}
+	
+	/**
+	 * Returns the number of data objects of the complete result of a paged query.
+	 * @return Number of data objects or <code>-1</code> if it is not provided.
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the number of data objects which were put in the stream of the query while the response was parsed.
+	 * These data objects are not contained in the result list.
+	 * @return Number of streamed data objects.
+	 */
+	public int getStreamedCount() {
+		return streamedCount;
+	}
+	
+	/**
+	 * Returns the source the response was read from.
+	 * Responses read from the same source were received over the same connection.
+	 * @return Parser the response was read from.
+	 */
+	public Object getSource() {
+		return source;
+	}
+	
 	@Override
 	public String getChildElementXML() {
-		XMLOutputter out = new XMLOutputter();
-		return out.outputString(childElement);
+		Element queryElement = childElement.clone();
+		Element resultElement = queryElement.getChild("result", Namespace.getNamespace(NamespaceConfig.PERSISTENCE_SERVICE));
+		if (resultElement != null) {
+			for (DataObject dataObject : retrievedDataObjects) {
+				resultElement.addContent(dataObject.getElement().clone());
+			}
+		}
+		XMLOutputter out = XMLCodec.getOutputter();
+		return out.outputString(queryElement);
 	}
 }
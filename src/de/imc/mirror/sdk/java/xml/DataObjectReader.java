@@ -0,0 +1,225 @@
+package de.imc.mirror.sdk.java.xml;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import de.imc.mirror.sdk.java.DataObjectHeader;
+
+/**
+ * Streaming reader for data object payloads.
+ * The reader extracts the header of a data object and captures its XML string without building a JDOM tree.
+ */
+public final class DataObjectReader {
+
+	private DataObjectReader() {
+	}
+
+	/**
+	 * Reads the header of a data object.
+	 * @param parser Pull parser positioned on the start tag of the root element of the data object.
+	 * The parser has to process namespaces. The position of the parser is not changed.
+	 * @return Header of the data object.
+	 */
+	public static DataObjectHeader readHeader(XmlPullParser parser) {
+		Map<String, String> attributes = new HashMap<String, String>();
+		String schemaLocation = null;
+		for (int i = 0; i < parser.getAttributeCount(); i++) {
+			String attributeNamespace = parser.getAttributeNamespace(i);
+			if (attributeNamespace == null || attributeNamespace.length() == 0) {
+				attributes.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+			} else if (DataObjectHeader.XSI_NAMESPACE.equals(attributeNamespace) && "schemaLocation".equals(parser.getAttributeName(i))) {
+				schemaLocation = parser.getAttributeValue(i);
+			}
+		}
+		return new DataObjectHeader(parser.getName(), parser.getNamespace(), attributes, schemaLocation);
+	}
+
+	/**
+	 * Reads the header of a serialized data object.
+	 * Only the start tag of the root element is parsed.
+	 * @param xml XML string of the data object.
+	 * @return Header of the data object.
+	 * @throws XmlPullParserException Failed to parse the start tag of the root element.
+	 * @throws IOException Failed to read the XML string.
+	 */
+	public static DataObjectHeader readHeader(String xml) throws XmlPullParserException, IOException {
+		XmlPullParser parser = new MXParser();
+		parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+		parser.setInput(new StringReader(xml));
+		int event = parser.getEventType();
+		while (event != XmlPullParser.START_TAG) {
+			if (event == XmlPullParser.END_DOCUMENT) {
+				throw new XmlPullParserException("No root element found.");
+			}
+			event = parser.next();
+		}
+		return readHeader(parser);
+	}
+
+	/**
+	 * Serializes the element the parser is positioned on.
+	 * All namespaces used by the element and its descendants are declared in the returned string.
+	 * @param parser Pull parser positioned on the start tag of the element. The parser has to process namespaces.
+	 * After the call, the parser is positioned on the end tag of the element.
+	 * @return XML string of the element.
+	 * @throws XmlPullParserException Failed to parse the element.
+	 * @throws IOException Failed to read the input of the parser.
+	 */
+	public static String readElementXML(XmlPullParser parser) throws XmlPullParserException, IOException {
+		StringBuilder xml = new StringBuilder(512);
+		List<String[]> declarations = new ArrayList<String[]>(); // [prefix, uri]
+		List<Integer> scopes = new ArrayList<Integer>();
+		int depth = 0;
+		int event = parser.getEventType();
+		while (true) {
+			switch (event) {
+			case XmlPullParser.START_TAG:
+				scopes.add(declarations.size());
+				writeStartTag(parser, xml, declarations);
+				depth++;
+				break;
+			case XmlPullParser.TEXT:
+			case XmlPullParser.CDSECT:
+			case XmlPullParser.IGNORABLE_WHITESPACE:
+				escapeText(parser.getText(), xml);
+				break;
+			case XmlPullParser.ENTITY_REF:
+				if (parser.getText() != null) {
+					escapeText(parser.getText(), xml);
+				} else {
+					xml.append('&').append(parser.getName()).append(';');
+				}
+				break;
+			case XmlPullParser.END_TAG:
+				xml.append("</");
+				appendQualifiedName(parser.getPrefix(), parser.getName(), xml);
+				xml.append('>');
+				int scope = scopes.remove(scopes.size() - 1);
+				while (declarations.size() > scope) {
+					declarations.remove(declarations.size() - 1);
+				}
+				depth--;
+				break;
+			case XmlPullParser.END_DOCUMENT:
+				throw new XmlPullParserException("Unexpected end of document.");
+			}
+			if (depth == 0) {
+				return xml.toString();
+			}
+			// Tokens are read individually, as the parser shipped with Smack merges CDATA sections incorrectly into text events.
+			event = parser.nextToken();
+		}
+	}
+
+	private static void writeStartTag(XmlPullParser parser, StringBuilder xml, List<String[]> declarations) throws XmlPullParserException {
+		xml.append('<');
+		appendQualifiedName(parser.getPrefix(), parser.getName(), xml);
+		declare(parser.getPrefix(), parser.getNamespace(), xml, declarations);
+		int depth = parser.getDepth();
+		for (int i = parser.getNamespaceCount(depth - 1); i < parser.getNamespaceCount(depth); i++) {
+			declare(parser.getNamespacePrefix(i), parser.getNamespaceUri(i), xml, declarations);
+		}
+		for (int i = 0; i < parser.getAttributeCount(); i++) {
+			String prefix = parser.getAttributePrefix(i);
+			if (prefix != null) {
+				declare(prefix, parser.getAttributeNamespace(i), xml, declarations);
+			}
+			xml.append(' ');
+			appendQualifiedName(prefix, parser.getAttributeName(i), xml);
+			xml.append("=\"");
+			escapeAttribute(parser.getAttributeValue(i), xml);
+			xml.append('"');
+		}
+		xml.append('>');
+	}
+
+	/**
+	 * Writes a namespace declaration if the prefix is not yet bound to the given URI.
+	 */
+	private static void declare(String prefix, String uri, StringBuilder xml, List<String[]> declarations) {
+		String key = prefix != null ? prefix : "";
+		String value = uri != null ? uri : "";
+		if ("xml".equals(key)) {
+			return;
+		}
+		String current = key.length() == 0 ? "" : null;
+		for (int i = declarations.size() - 1; i >= 0; i--) {
+			if (declarations.get(i)[0].equals(key)) {
+				current = declarations.get(i)[1];
+				break;
+			}
+		}
+		if (value.equals(current)) {
+			return;
+		}
+		declarations.add(new String[] {key, value});
+		xml.append(key.length() == 0 ? " xmlns" : " xmlns:").append(key).append("=\"");
+		escapeAttribute(value, xml);
+		xml.append('"');
+	}
+
+	private static void appendQualifiedName(String prefix, String name, StringBuilder xml) {
+		if (prefix != null && prefix.length() > 0) {
+			xml.append(prefix).append(':');
+		}
+		xml.append(name);
+	}
+
+	private static void escapeText(String text, StringBuilder xml) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				xml.append("&lt;");
+				break;
+			case '>':
+				xml.append("&gt;");
+				break;
+			case '&':
+				xml.append("&amp;");
+				break;
+			default:
+				xml.append(c);
+			}
+		}
+	}
+
+	private static void escapeAttribute(String text, StringBuilder xml) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				xml.append("&lt;");
+				break;
+			case '>':
+				xml.append("&gt;");
+				break;
+			case '&':
+				xml.append("&amp;");
+				break;
+			case '"':
+				xml.append("&quot;");
+				break;
+			case '\r':
+				xml.append("&#xD;");
+				break;
+			case '\n':
+				xml.append("&#xA;");
+				break;
+			case '\t':
+				xml.append("&#x9;");
+				break;
+			default:
+				xml.append(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package de.imc.mirror.sdk.java.xml;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.input.sax.XMLReaderJDOMFactory;
+import org.jdom2.input.sax.XMLReaders;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * Central access point for XML parsing and serialization in the SDK.
+ * Each thread gets its own SAX builder and XML outputter, which are reused for subsequent calls.
+ * This avoids the lookup of the JAXP parser factory for every parsed document.
+ * The returned instances are confined to the calling thread and must not be reconfigured or passed to other threads.
+ * Configuration changes apply to all threads with their next call.
+ */
+public final class XMLCodec {
+	private static volatile XMLReaderJDOMFactory parserFactory = XMLReaders.NONVALIDATING;
+	private static volatile Format format = Format.getRawFormat();
+	private static final AtomicInteger configurationVersion = new AtomicInteger();
+
+	private static final ThreadLocal<BuilderHolder> builders = new ThreadLocal<BuilderHolder>();
+	private static final ThreadLocal<OutputterHolder> outputters = new ThreadLocal<OutputterHolder>();
+
+	private XMLCodec() {
+	}
+
+	/**
+	 * Sets the factory used to create the XML readers of the SAX builders.
+	 * @param factory Parser factory. If <code>null</code>, a non-validating parser is used.
+	 */
+	public static void setParserFactory(XMLReaderJDOMFactory factory) {
+		parserFactory = factory != null ? factory : XMLReaders.NONVALIDATING;
+		configurationVersion.incrementAndGet();
+	}
+
+	/**
+	 * Returns the factory used to create the XML readers of the SAX builders.
+	 * @return Parser factory.
+	 */
+	public static XMLReaderJDOMFactory getParserFactory() {
+		return parserFactory;
+	}
+
+	/**
+	 * Sets the output format used for serialization.
+	 * @param outputFormat Output format. If <code>null</code>, the raw format is used.
+	 */
+	public static void setFormat(Format outputFormat) {
+		format = outputFormat != null ? outputFormat.clone() : Format.getRawFormat();
+		configurationVersion.incrementAndGet();
+	}
+
+	/**
+	 * Returns the SAX builder of the calling thread.
+	 * @return SAX builder for the current configuration.
+	 */
+	public static SAXBuilder getBuilder() {
+		int version = configurationVersion.get();
+		BuilderHolder holder = builders.get();
+		if (holder == null || holder.version != version) {
+			holder = new BuilderHolder(new SAXBuilder(parserFactory), version);
+			builders.set(holder);
+		}
+		return holder.builder;
+	}
+
+	/**
+	 * Returns the XML outputter of the calling thread.
+	 * @return XML outputter for the current configuration.
+	 */
+	public static XMLOutputter getOutputter() {
+		int version = configurationVersion.get();
+		OutputterHolder holder = outputters.get();
+		if (holder == null || holder.version != version) {
+			holder = new OutputterHolder(new XMLOutputter(format), version);
+			outputters.set(holder);
+		}
+		return holder.outputter;
+	}
+
+	/**
+	 * Parses the given XML string.
+	 * @param xml XML string to parse.
+	 * @return Parsed document.
+	 * @throws JDOMException Failed to parse the XML string.
+	 * @throws IOException Failed to read the XML string.
+	 */
+	public static Document parse(String xml) throws JDOMException, IOException {
+		return getBuilder().build(new StringReader(xml));
+	}
+
+	/**
+	 * Parses the given XML string and returns its root element detached from the document.
+	 * @param xml XML string to parse.
+	 * @return Root element of the parsed document.
+	 * @throws JDOMException Failed to parse the XML string.
+	 * @throws IOException Failed to read the XML string.
+	 */
+	public static Element parseElement(String xml) throws JDOMException, IOException {
+		return parse(xml).detachRootElement();
+	}
+
+	/**
+	 * Serializes the given element.
+	 * @param element Element to serialize.
+	 * @return XML string.
+	 */
+	public static String toXML(Element element) {
+		return getOutputter().outputString(element);
+	}
+
+	/**
+	 * Serializes the given document.
+	 * @param document Document to serialize.
+	 * @return XML string.
+	 */
+	public static String toXML(Document document) {
+		return getOutputter().outputString(document);
+	}
+
+	private static class BuilderHolder {
+		private final SAXBuilder builder;
+		private final int version;
+
+		public BuilderHolder(SAXBuilder builder, int version) {
+			this.builder = builder;
+			this.version = version;
+		}
+	}
+
+	private static class OutputterHolder {
+		private final XMLOutputter outputter;
+		private final int version;
+
+		public OutputterHolder(XMLOutputter outputter, int version) {
+			this.outputter = outputter;
+			this.version = version;
+		}
+	}
+}
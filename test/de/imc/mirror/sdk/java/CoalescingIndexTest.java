@@ -0,0 +1,73 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoalescingIndexTest {
+	private static final String NAMESPACE = "mirror:application:moodmap:mood";
+	private CoalescingIndex<String> index;
+
+	@Before
+	public void initializeTests() {
+		index = new CoalescingIndex<String>();
+	}
+
+	private static DataObjectHeader createHeader(String id, String customId, String updates) {
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("id", id);
+		if (customId != null) {
+			attributes.put("customId", customId);
+		}
+		if (updates != null) {
+			attributes.put("updates", updates);
+		}
+		return new DataObjectHeader("mood", NAMESPACE, attributes, null);
+	}
+
+	@Test
+	public void testObjectsWithoutKeyAreNotCoalesced() {
+		assertNull(index.put(createHeader("a", null, null), "a"));
+		assertNull(index.put(createHeader("b", null, null), "b"));
+		assertEquals(2, index.size());
+		assertEquals("a", index.poll());
+		assertEquals("b", index.poll());
+		assertTrue(index.isEmpty());
+	}
+
+	@Test
+	public void testSameCustomIdReplacesPendingObject() {
+		index.put(createHeader("a", "c1", null), "a");
+		index.put(createHeader("b", null, null), "b");
+		assertEquals("a", index.put(createHeader("c", "c1", null), "c"));
+		assertEquals(2, index.size());
+		assertEquals("c", index.poll());
+		assertEquals("b", index.poll());
+	}
+
+	@Test
+	public void testUpdateChainReplacesPendingObject() {
+		index.put(createHeader("a", null, null), "a");
+		assertEquals("a", index.put(createHeader("b", null, "a"), "b"));
+		assertEquals("b", index.put(createHeader("c", null, "b"), "c"));
+		assertNull(index.put(createHeader("d", null, "a"), "d"));
+		assertEquals(2, index.size());
+		assertEquals("c", index.poll());
+		assertEquals("d", index.poll());
+	}
+
+	@Test
+	public void testPolledObjectIsNotReplaced() {
+		index.put(createHeader("a", "c1", null), "a");
+		assertEquals("a", index.poll());
+		assertNull(index.put(createHeader("b", null, "a"), "b"));
+		assertNull(index.put(createHeader("c", "c1", null), "c"));
+		assertEquals(2, index.size());
+	}
+}
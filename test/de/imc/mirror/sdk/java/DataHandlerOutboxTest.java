@@ -0,0 +1,93 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jivesoftware.smackx.pubsub.SimplePayload;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.cdm.CDMVersion;
+import de.imc.mirror.sdk.java.data.DatabaseConfig;
+import de.imc.mirror.sdk.java.exceptions.InvalidBuildException;
+
+public class DataHandlerOutboxTest {
+	private static final String SPACE = "team#1";
+	private ConnectionHandler connectionHandler;
+	private DataHandler dataHandler;
+	private DataWrapper datawrapper;
+
+	@Before
+	public void initialize() {
+		ConnectionConfiguration connectionConfig = new ConnectionConfigurationBuilder("mirror-demo.eu", "test").build();
+		connectionHandler = new ConnectionHandler("alice", "secret", connectionConfig);
+		SpaceHandler spaceHandler = new SpaceHandler(connectionHandler, DatabaseConfig.disableDatabaseCaching());
+		dataHandler = new DataHandler(connectionHandler, spaceHandler);
+		dataHandler.setCoalescingEnabled(true);
+		datawrapper = DataWrapper.getInstance();
+	}
+
+	private static DataObject createMoodObject(String customId, int value) {
+		CDMDataBuilder cdmBuilder = new CDMDataBuilder(CDMVersion.CDM_1_0);
+		cdmBuilder.setModelVersion("1.0");
+		if (customId != null) {
+			cdmBuilder.setCustomId(customId);
+		}
+		DataObjectBuilder objectBuilder = new DataObjectBuilder("mood", "mirror:application:moodmap:mood");
+		try {
+			objectBuilder.setCDMData(cdmBuilder.build());
+		} catch (InvalidBuildException e) {
+			fail("Failed to build CDM data: " + e.getMessage());
+		}
+		objectBuilder.addElement("value", Integer.toString(value), false);
+		return objectBuilder.build();
+	}
+
+	private static SimplePayload createPayload(DataObject object) {
+		return new SimplePayload(object.getElementName(), object.getNamespaceURI(), object.toString());
+	}
+
+	private List<String> getSavedPayloadIds() {
+		List<String> payloadIds = new ArrayList<String>();
+		Iterator<SavedPayload> iterator = datawrapper.iteratePayloadsToSend(connectionHandler.getCurrentUser().getBareJID());
+		while (iterator.hasNext()) {
+			payloadIds.add(iterator.next().getPayloadId());
+		}
+		return payloadIds;
+	}
+
+	@Test
+	public void testOfflinePublishSupersedesSavedPayload() throws Exception {
+		String user = connectionHandler.getCurrentUser().getBareJID();
+		// Payloads saved by a previous session, which are not known to the handler.
+		datawrapper.savePayloadToSend(user, "saved1", SPACE, createPayload(createMoodObject("c1", 1)));
+		datawrapper.savePayloadToSend(user, "saved2", SPACE, createPayload(createMoodObject("c2", 2)));
+		datawrapper.savePayloadToSend(user, "other", "team#2", createPayload(createMoodObject("c1", 3)));
+
+		String payloadId = dataHandler.publishDataObjectAsync(createMoodObject("c1", 4), SPACE).get();
+		List<String> expected = new ArrayList<String>();
+		expected.add("saved2");
+		expected.add("other");
+		expected.add(payloadId);
+		assertEquals(expected, getSavedPayloadIds());
+		assertEquals(1, dataHandler.getSupersededCount());
+	}
+
+	@Test
+	public void testOfflinePublishSupersedesOwnPayload() throws Exception {
+		String firstId = dataHandler.publishDataObjectAsync(createMoodObject("c1", 1), SPACE).get();
+		String uncoalescedId = dataHandler.publishDataObjectAsync(createMoodObject(null, 2), SPACE).get();
+		String secondId = dataHandler.publishDataObjectAsync(createMoodObject("c1", 3), SPACE).get();
+		List<String> expected = new ArrayList<String>();
+		expected.add(uncoalescedId);
+		expected.add(secondId);
+		assertEquals(expected, getSavedPayloadIds());
+		assertEquals(1, dataHandler.getSupersededCount());
+		assertFalse(getSavedPayloadIds().contains(firstId));
+	}
+}
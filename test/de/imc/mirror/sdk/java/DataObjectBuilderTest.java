@@ -149,5 +149,33 @@ public class DataObjectBuilderTest {
 		assertEquals("Incorrect CDM version.", CDMVersion.CDM_2_0, cdmData.getCDMVersion());
 		assertTrue("Incorrect CDM instance.", cdmData instanceof CDMData_2_0);
 	}
-}
 
+	@Test
+	public void testBuiltDataObjectIsNotModifiedByBuilder() {
+		DataObjectBuilder builder = new DataObjectBuilder(exampleXML.clone(), exampleXML.getNamespaceURI());
+		DataObject dataObject = builder.build();
+		String dataObjectString = dataObject.toString();
+		assertEquals(exampleXMLString, dataObjectString);
+		assertTrue("XML string is not reused.", dataObjectString == dataObject.toString());
+		
+		builder.setAttribute("id", "modified");
+		builder.addElement("other", "other content", false);
+		assertEquals("n/a", dataObject.getId());
+		assertEquals(1, dataObject.getElement().getChildren().size());
+		assertEquals(exampleXMLString, dataObject.toString());
+		assertEquals("modified", builder.build().getId());
+	}
+
+	@Test
+	public void testBuiltDataObjectIsNotModifiedByBuilderOfItsElement() {
+		DataObject dataObject = new DataObjectBuilder(exampleXML.clone(), exampleXML.getNamespaceURI()).build();
+		DataObjectHeader header = dataObject.getHeader();
+		
+		DataObjectBuilder builder = new DataObjectBuilder(dataObject.getElement(), dataObject.getNamespaceURI());
+		builder.setAttribute("id", "modified");
+		assertEquals("n/a", dataObject.getElement().getAttributeValue("id"));
+		assertEquals("n/a", header.getId());
+		assertEquals(exampleXMLString, dataObject.toString());
+		assertEquals("modified", builder.build().getId());
+	}
+}
@@ -0,0 +1,64 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class DataObjectCacheTest {
+	private static final String NAMESPACE = "mirror:application:moodmap:mood";
+
+	private static DataObject createDataObject(String id) {
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("id", id);
+		DataObjectHeader header = new DataObjectHeader("mood", NAMESPACE, attributes, null);
+		return new DataObject(header, "<mood xmlns=\"" + NAMESPACE + "\" id=\"" + id + "\"/>");
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryIsEvicted() {
+		DataObjectCache cache = new DataObjectCache(2, 60000);
+		DataObject a = createDataObject("a");
+		cache.put(a);
+		cache.put(createDataObject("b"));
+		assertSame(a, cache.get("a"));
+		cache.put(createDataObject("c"));
+		assertEquals(2, cache.size());
+		assertSame(a, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("c", cache.get("c").getId());
+	}
+
+	@Test
+	public void testExpiredEntryIsRemoved() throws InterruptedException {
+		DataObjectCache cache = new DataObjectCache(10, 20);
+		cache.put(createDataObject("a"));
+		cache.invalidate("b");
+		assertEquals("a", cache.get("a").getId());
+		assertTrue(cache.isInvalidated("b"));
+		Thread.sleep(40);
+		assertNull(cache.get("a"));
+		assertFalse(cache.isInvalidated("b"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testInvalidatedEntryIsReplacedByPut() {
+		DataObjectCache cache = new DataObjectCache(10, 60000);
+		cache.put(createDataObject("a"));
+		cache.invalidate("a");
+		assertNull(cache.get("a"));
+		assertTrue(cache.isInvalidated("a"));
+		cache.put(createDataObject("a"));
+		assertFalse(cache.isInvalidated("a"));
+		assertEquals("a", cache.get("a").getId());
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+}
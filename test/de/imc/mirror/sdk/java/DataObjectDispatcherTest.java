@@ -0,0 +1,194 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class DataObjectDispatcherTest {
+	private static final String SPACE = "team#1";
+
+	/**
+	 * Executor which keeps the submitted tasks until the test runs them, and optionally rejects new tasks.
+	 */
+	private static class ManualExecutor implements Executor {
+		private final LinkedList<Runnable> submitted = new LinkedList<Runnable>();
+		private volatile boolean isRejecting = false;
+
+		@Override
+		public synchronized void execute(Runnable command) {
+			if (isRejecting) {
+				throw new RejectedExecutionException();
+			}
+			submitted.add(command);
+		}
+
+		public synchronized Runnable poll() {
+			return submitted.poll();
+		}
+	}
+
+	private static Runnable createTask(final List<Integer> executed, final int value) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				executed.add(value);
+			}
+		};
+	}
+
+	@Test
+	public void testDefaultPolicyDoesNotBlock() {
+		DataObjectDispatcher dispatcher = new DataObjectDispatcher();
+		assertEquals(DataObjectDispatcher.OverflowPolicy.DROP, dispatcher.getOverflowPolicy());
+		dispatcher.shutdown();
+
+		ManualExecutor executor = new ManualExecutor();
+		dispatcher = new DataObjectDispatcher(executor, 2, DataObjectDispatcher.OverflowPolicy.DROP);
+		List<Integer> executed = new ArrayList<Integer>();
+		assertTrue(dispatcher.dispatch(SPACE, createTask(executed, 0)));
+		assertTrue(dispatcher.dispatch(SPACE, createTask(executed, 1)));
+		assertFalse(dispatcher.dispatch(SPACE, createTask(executed, 2)));
+		assertEquals(1, dispatcher.getDroppedCount());
+		executor.poll().run();
+		assertEquals("[0, 1]", executed.toString());
+		assertTrue(dispatcher.dispatch(SPACE, createTask(executed, 3)));
+	}
+
+	@Test
+	public void testRejectedDrainTaskContinuesOnCurrentThread() {
+		ManualExecutor executor = new ManualExecutor();
+		DataObjectDispatcher dispatcher = new DataObjectDispatcher(executor, 1000, DataObjectDispatcher.OverflowPolicy.DROP);
+		List<Integer> executed = new ArrayList<Integer>();
+		for (int i = 0; i < 100; i++) {
+			dispatcher.dispatch(SPACE, createTask(executed, i));
+		}
+		executor.isRejecting = true;
+		executor.poll().run();
+		assertEquals(100, executed.size());
+		assertEquals(Integer.valueOf(99), executed.get(99));
+		assertEquals(0, dispatcher.getQueueDepth());
+
+		// A rejected dispatch is executed by the calling thread and does not leave the queue scheduled.
+		assertTrue(dispatcher.dispatch(SPACE, createTask(executed, 100)));
+		assertEquals(Integer.valueOf(100), executed.get(100));
+		assertEquals(0, dispatcher.getDroppedCount());
+		executor.isRejecting = false;
+		assertTrue(dispatcher.dispatch(SPACE, createTask(executed, 101)));
+		executor.poll().run();
+		assertEquals(Integer.valueOf(101), executed.get(101));
+	}
+
+	@Test
+	public void testTasksQueuedDuringRejectedSubmissionAreExecuted() {
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final DataObjectDispatcher[] dispatcher = new DataObjectDispatcher[1];
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				// Another thread dispatches a task while the drain task is being submitted.
+				Thread otherThread = new Thread() {
+					@Override
+					public void run() {
+						dispatcher[0].dispatch(SPACE, createTask(executed, 1));
+					}
+				};
+				otherThread.start();
+				try {
+					otherThread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new RejectedExecutionException();
+			}
+		};
+		dispatcher[0] = new DataObjectDispatcher(executor, 10, DataObjectDispatcher.OverflowPolicy.DROP);
+		assertTrue(dispatcher[0].dispatch(SPACE, createTask(executed, 0)));
+		assertEquals("[0, 1]", executed.toString());
+		assertEquals(0, dispatcher[0].getQueueDepth());
+		assertEquals(0, dispatcher[0].getDroppedCount());
+	}
+
+	@Test
+	public void testSpilledTasksAreExecutedInOrder() {
+		ManualExecutor executor = new ManualExecutor();
+		DataObjectDispatcher dispatcher = new DataObjectDispatcher(executor, 2, DataObjectDispatcher.OverflowPolicy.SPILL);
+		List<Integer> executed = new ArrayList<Integer>();
+		for (int i = 0; i < 10; i++) {
+			assertTrue(dispatcher.dispatch(SPACE, createTask(executed, i)));
+		}
+		assertEquals(8, dispatcher.getSpilledCount());
+		assertEquals(10, dispatcher.getQueueDepth(SPACE));
+		assertEquals(0, dispatcher.getDroppedCount());
+		executor.poll().run();
+		assertEquals("[0, 1, 2, 3, 4, 5, 6, 7, 8, 9]", executed.toString());
+		assertEquals(0, dispatcher.getQueueDepth());
+
+		// Once the overflow list is processed, tasks are queued again.
+		assertTrue(dispatcher.dispatch(SPACE, createTask(executed, 10)));
+		assertEquals(8, dispatcher.getSpilledCount());
+	}
+
+	@Test
+	public void testBlockedDispatchIsReleasedOnRejection() throws InterruptedException {
+		ManualExecutor executor = new ManualExecutor();
+		final DataObjectDispatcher dispatcher = new DataObjectDispatcher(executor, 1, DataObjectDispatcher.OverflowPolicy.BLOCK);
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		dispatcher.dispatch(SPACE, createTask(executed, 0));
+		Thread blockedThread = new Thread() {
+			@Override
+			public void run() {
+				dispatcher.dispatch(SPACE, createTask(executed, 1));
+			}
+		};
+		blockedThread.start();
+		blockedThread.join(50);
+		assertTrue(blockedThread.isAlive());
+
+		executor.isRejecting = true;
+		executor.poll().run();
+		blockedThread.join(1000);
+		assertFalse(blockedThread.isAlive());
+		assertEquals(0, dispatcher.getQueueDepth());
+		assertEquals(2, dispatcher.getDispatchedCount() + dispatcher.getDroppedCount());
+	}
+
+	@Test
+	public void testShutdownProcessesQueuedTasks() throws InterruptedException {
+		DataObjectDispatcher dispatcher = new DataObjectDispatcher();
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch completed = new CountDownLatch(200);
+		dispatcher.dispatch(SPACE, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		for (int i = 0; i < 200; i++) {
+			dispatcher.dispatch(SPACE, new Runnable() {
+				@Override
+				public void run() {
+					completed.countDown();
+				}
+			});
+		}
+		dispatcher.shutdown();
+		assertFalse(dispatcher.dispatch(SPACE, createTask(new ArrayList<Integer>(), 0)));
+		release.countDown();
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+	}
+}
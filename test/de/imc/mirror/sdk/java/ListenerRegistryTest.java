@@ -0,0 +1,78 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.DataObjectListener;
+import de.imc.mirror.sdk.java.filter.PublisherFilter;
+
+public class ListenerRegistryTest {
+	private ListenerRegistry registry;
+	private DataObject moodObject, pingObject;
+	
+	private static class RecordingListener implements DataObjectListener {
+		private final List<String> received = new ArrayList<String>();
+		
+		@Override
+		public void handleDataObject(de.imc.mirror.sdk.DataObject dataObject, String spaceId) {
+			received.add(spaceId + ":" + dataObject.getId());
+		}
+	}
+	
+	@Before
+	public void initializeTests() {
+		registry = new ListenerRegistry();
+		moodObject = new DataObjectBuilder("mood", "mirror:application:moodmap:mood").setAttribute("id", "m1").setAttribute("publisher", "alice@mirror-demo.eu").build();
+		pingObject = new DataObjectBuilder("ping", "mirror:application:ping:ping").setAttribute("id", "p1").build();
+	}
+	
+	@Test
+	public void testGlobalListener() {
+		RecordingListener listener = new RecordingListener();
+		registry.addListener(listener);
+		registry.addListener(listener);
+		registry.notifyListeners(moodObject, "space1");
+		registry.notifyListeners(pingObject, "space2");
+		assertEquals(2, listener.received.size());
+	}
+	
+	@Test
+	public void testScopedListeners() {
+		RecordingListener spaceListener = new RecordingListener();
+		RecordingListener namespaceListener = new RecordingListener();
+		RecordingListener filterListener = new RecordingListener();
+		registry.addListener(spaceListener, "space1", null, null);
+		registry.addListener(namespaceListener, null, "mirror:application:ping:ping", null);
+		registry.addListener(filterListener, null, null, new PublisherFilter("alice"));
+		
+		registry.notifyListeners(moodObject, "space1");
+		registry.notifyListeners(pingObject, "space2");
+		
+		assertEquals(1, spaceListener.received.size());
+		assertEquals("space1:m1", spaceListener.received.get(0));
+		assertEquals(1, namespaceListener.received.size());
+		assertEquals("space2:p1", namespaceListener.received.get(0));
+		assertEquals(1, filterListener.received.size());
+		assertEquals("space1:m1", filterListener.received.get(0));
+	}
+	
+	@Test
+	public void testMultipleRegistrationsAndRemoval() {
+		RecordingListener listener = new RecordingListener();
+		registry.addListener(listener, "space1", null, null);
+		registry.addListener(listener, null, "mirror:application:moodmap:mood", null);
+		registry.notifyListeners(moodObject, "space1");
+		assertEquals(1, listener.received.size());
+		
+		registry.removeListener(listener);
+		registry.notifyListeners(moodObject, "space1");
+		assertEquals(1, listener.received.size());
+		assertTrue(registry.getListeners("space1", moodObject).isEmpty());
+	}
+}
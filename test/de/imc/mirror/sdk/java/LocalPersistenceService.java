@@ -0,0 +1,141 @@
+package de.imc.mirror.sdk.java;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.jivesoftware.smack.packet.IQ;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import de.imc.mirror.sdk.config.NamespaceConfig;
+import de.imc.mirror.sdk.java.packet.PersistenceServiceQueryProvider;
+import de.imc.mirror.sdk.java.packet.QueryRequestIQ;
+import de.imc.mirror.sdk.java.xml.XMLCodec;
+
+/**
+ * In-memory stand-in for the persistence service, answering space queries with result set management.
+ * Responses are serialized and parsed with the query provider, and delivered asynchronously.
+ */
+public class LocalPersistenceService implements QueryCursor.QuerySender {
+	private final Map<String, List<String>> spaces; // <space id, serialized data objects>
+	private final ExecutorService executor;
+	private final boolean isResultSetManagementSupported;
+	private final AtomicInteger requestCount;
+	private final AtomicInteger pendingCount;
+	private final AtomicInteger maxPendingCount;
+	private volatile long responseDelay;
+
+	public LocalPersistenceService(boolean isResultSetManagementSupported) {
+		this.spaces = new HashMap<String, List<String>>();
+		this.executor = Executors.newSingleThreadExecutor();
+		this.isResultSetManagementSupported = isResultSetManagementSupported;
+		this.requestCount = new AtomicInteger();
+		this.pendingCount = new AtomicInteger();
+		this.maxPendingCount = new AtomicInteger();
+		this.responseDelay = 0;
+	}
+
+	public synchronized void addDataObject(String spaceId, String dataObjectXML) {
+		List<String> dataObjects = spaces.get(spaceId);
+		if (dataObjects == null) {
+			dataObjects = new ArrayList<String>();
+			spaces.put(spaceId, dataObjects);
+		}
+		dataObjects.add(dataObjectXML);
+	}
+
+	public void setResponseDelay(long responseDelay) {
+		this.responseDelay = responseDelay;
+	}
+
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	public int getMaxPendingCount() {
+		return maxPendingCount.get();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	public RequestFuture<IQ> sendQuery(final QueryRequestIQ request) {
+		requestCount.incrementAndGet();
+		int pending = pendingCount.incrementAndGet();
+		while (pending > maxPendingCount.get()) {
+			maxPendingCount.set(pending);
+		}
+		final RequestFuture<IQ> queryFuture = new RequestFuture<IQ>();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(responseDelay);
+					IQ response = answer(request);
+					pendingCount.decrementAndGet();
+					queryFuture.setResponse(response);
+				} catch (Exception e) {
+					pendingCount.decrementAndGet();
+					queryFuture.setException(e);
+				}
+			}
+		});
+		return queryFuture;
+	}
+
+	private IQ answer(QueryRequestIQ request) throws Exception {
+		Namespace namespace = Namespace.getNamespace(NamespaceConfig.PERSISTENCE_SERVICE);
+		Namespace resultSetNamespace = Namespace.getNamespace(QueryRequestIQ.RESULT_SET_NAMESPACE);
+		Element queryElement = XMLCodec.parseElement(request.getChildElementXML());
+		String spaceId = queryElement.getChild("objectsForSpace", namespace).getAttributeValue("id");
+		List<String> dataObjects;
+		synchronized (this) {
+			dataObjects = spaces.containsKey(spaceId) ? new ArrayList<String>(spaces.get(spaceId)) : new ArrayList<String>();
+		}
+		int first = 0;
+		int last = dataObjects.size();
+		Element setElement = queryElement.getChild("set", resultSetNamespace);
+		if (isResultSetManagementSupported && setElement != null) {
+			String after = setElement.getChildText("after", resultSetNamespace);
+			if (after != null) {
+				first = Integer.parseInt(after) + 1;
+			}
+			last = Math.min(dataObjects.size(), first + Integer.parseInt(setElement.getChildText("max", resultSetNamespace)));
+		}
+		StringBuilder xml = new StringBuilder();
+		xml.append("<query xmlns=\"").append(NamespaceConfig.PERSISTENCE_SERVICE).append("\"><result>");
+		for (int i = first; i < last; i++) {
+			xml.append(dataObjects.get(i));
+		}
+		xml.append("</result>");
+		if (isResultSetManagementSupported && setElement != null) {
+			xml.append("<set xmlns=\"").append(QueryRequestIQ.RESULT_SET_NAMESPACE).append("\">");
+			if (last > first) {
+				// The position of a data object is used as its identifier.
+				xml.append("<first index=\"").append(first).append("\">").append(first).append("</first>");
+				xml.append("<last>").append(last - 1).append("</last>");
+			}
+			xml.append("<count>").append(dataObjects.size()).append("</count></set>");
+		}
+		xml.append("</query>");
+
+		XmlPullParser parser = new MXParser();
+		parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+		parser.setInput(new StringReader(xml.toString()));
+		parser.next();
+		IQ response = new PersistenceServiceQueryProvider().parseIQ(parser);
+		response.setType(IQ.Type.RESULT);
+		response.setPacketID(request.getPacketID());
+		return response;
+	}
+}
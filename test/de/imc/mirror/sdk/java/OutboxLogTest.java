@@ -0,0 +1,236 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.jivesoftware.smackx.pubsub.SimplePayload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.java.data.DatabaseConfig;
+
+public class OutboxLogTest {
+	private static final String USER = "alice@mirror-demo.eu";
+	private File directory;
+	private OutboxLog log;
+
+	@Before
+	public void initializeTests() throws IOException {
+		directory = File.createTempFile("outbox", "");
+		directory.delete();
+		log = new OutboxLog(directory, 4096, 0.5);
+	}
+
+	@After
+	public void cleanUp() throws IOException {
+		log.close();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private static SimplePayload createPayload(int value) {
+		return new SimplePayload("mood", "mirror:application:moodmap:mood",
+				"<mood xmlns=\"mirror:application:moodmap:mood\" id=\"" + value + "\"><value>" + value + "</value></mood>");
+	}
+
+	@Test
+	public void testPayloadsAreRecoveredInOrder() throws IOException {
+		for (int i = 0; i < 100; i++) {
+			log.append(USER, "p" + i, "space" + (i % 3), createPayload(i));
+		}
+		log.append("bob@mirror-demo.eu", "other", "space0", createPayload(-1));
+		log.close();
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		Map<String, SimplePayload> payloads = log.getPayloads(USER);
+		assertEquals(100, payloads.size());
+		int i = 0;
+		for (Map.Entry<String, SimplePayload> entry : payloads.entrySet()) {
+			assertEquals("p" + i, entry.getKey());
+			assertEquals(createPayload(i).toXML(), entry.getValue().toXML());
+			assertEquals("mood", entry.getValue().getElementName());
+			i++;
+		}
+		assertEquals("space2", log.getSpaceId("p5"));
+		assertEquals(101, log.size());
+	}
+
+	@Test
+	public void testRemovedPayloadsAreNotRecovered() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			log.append(USER, "p" + i, "space", createPayload(i));
+		}
+		assertTrue(log.remove(USER, "p3"));
+		assertFalse(log.remove("bob@mirror-demo.eu", "p4"));
+		log.clear("bob@mirror-demo.eu");
+		log.close();
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		Map<String, SimplePayload> payloads = log.getPayloads(USER);
+		assertEquals(9, payloads.size());
+		assertFalse(payloads.containsKey("p3"));
+		assertNull(log.getSpaceId("p3"));
+
+		log.clear(USER);
+		log.close();
+		log = new OutboxLog(directory, 4096, 0.5);
+		assertEquals(0, log.size());
+	}
+
+	@Test
+	public void testTornRecordIsDiscarded() throws IOException {
+		log.append(USER, "p0", "space", createPayload(0));
+		log.append(USER, "p1", "space", createPayload(1));
+		log.close();
+
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+		try {
+			// Corrupt the content of the second record.
+			int firstLength = readInt(file, 8);
+			file.seek(8 + 8 + firstLength + 20);
+			file.write(0x7F);
+		} finally {
+			file.close();
+		}
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		assertEquals(1, log.size());
+		log.append(USER, "p2", "space", createPayload(2));
+		log.close();
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		assertEquals("[p0, p2]", new ArrayList<String>(log.getPayloads(USER).keySet()).toString());
+	}
+
+	@Test
+	public void testAcknowledgedSegmentsAreCompacted() throws IOException {
+		for (int i = 0; i < 200; i++) {
+			log.append(USER, "p" + i, "space", createPayload(i));
+		}
+		int segmentCount = log.getSegmentCount();
+		assertTrue(segmentCount > 3);
+		for (int i = 0; i < 190; i++) {
+			log.remove(USER, "p" + i);
+		}
+		assertTrue(log.getSegmentCount() < segmentCount);
+		assertEquals(10, log.size());
+		log.close();
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		Map<String, SimplePayload> payloads = log.getPayloads(USER);
+		assertEquals(10, payloads.size());
+		assertEquals("p190", payloads.keySet().iterator().next());
+	}
+
+	@Test
+	public void testUndeletableSegmentsAreDeletedLater() throws IOException {
+		log.close();
+		final boolean[] isDeletable = new boolean[1];
+		log = new OutboxLog(directory, 4096, 0.5) {
+			@Override
+			boolean deleteFile(File file) {
+				return isDeletable[0] && super.deleteFile(file);
+			}
+		};
+		for (int i = 0; i < 200; i++) {
+			log.append(USER, "p" + i, "space", createPayload(i));
+		}
+		int segmentCount = log.getSegmentCount();
+		for (int i = 0; i < 190; i++) {
+			log.remove(USER, "p" + i);
+		}
+		// The segments are compacted, although their files could not be deleted.
+		assertTrue(log.getSegmentCount() < segmentCount);
+		assertTrue(directory.listFiles().length > segmentCount);
+		log.close();
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		Map<String, SimplePayload> payloads = log.getPayloads(USER);
+		assertEquals(10, payloads.size());
+		assertEquals("p190", payloads.keySet().iterator().next());
+		assertEquals(log.getSegmentCount(), directory.listFiles().length);
+	}
+
+	@Test
+	public void testIteratorReadsChunksInOrder() throws IOException {
+		for (int i = 0; i < 25; i++) {
+			log.append(USER, "p" + i, "space" + (i % 2), createPayload(i));
+			log.append("bob@mirror-demo.eu", "b" + i, "space", createPayload(i));
+		}
+		Iterator<SavedPayload> iterator = log.iterator(USER, 10);
+		int i = 0;
+		while (iterator.hasNext()) {
+			SavedPayload savedPayload = iterator.next();
+			assertEquals("p" + i, savedPayload.getPayloadId());
+			assertEquals("space" + (i % 2), savedPayload.getSpaceId());
+			assertEquals(createPayload(i).toXML(), savedPayload.getPayload().toXML());
+			if (i == 5) {
+				// Removals are reflected by chunks which are read later.
+				log.remove(USER, "p5");
+				log.remove(USER, "p12");
+			}
+			i += i == 11 ? 2 : 1;
+		}
+		assertEquals(25, i);
+	}
+
+	@Test
+	public void testLargePayloadIsStored() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			value.append("0123456789");
+		}
+		SimplePayload payload = new SimplePayload("mood", "mirror:application:moodmap:mood",
+				"<mood xmlns=\"mirror:application:moodmap:mood\"><value>" + value + "</value></mood>");
+		log.append(USER, "large", "space", payload);
+		log.close();
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		assertEquals(payload.toXML(), log.getPayloads(USER).get("large").toXML());
+	}
+
+	private static int readInt(RandomAccessFile file, long position) throws IOException {
+		file.seek(position);
+		return file.readInt();
+	}
+
+	@Test
+	public void testWrappersShareLogOfDirectory() throws IOException {
+		File sharedDirectory = new File(directory, "shared");
+		DatabaseConfig config = DatabaseConfig.disableDatabaseCaching();
+		config.setOutboxLocation(sharedDirectory.getPath());
+		OutboxLog sharedLog = DataWrapper.getInstance(config).getOutboxLog();
+		config.setOutboxLocation(new File(directory, "../" + directory.getName() + "/shared").getPath());
+		assertSame(sharedLog, DataWrapper.getInstance(config).getOutboxLog());
+
+		DataWrapper.closeOutboxLogs();
+		assertTrue(sharedLog.isClosed());
+		OutboxLog reopenedLog = DataWrapper.getInstance(config).getOutboxLog();
+		assertNotSame(sharedLog, reopenedLog);
+		assertFalse(reopenedLog.isClosed());
+		DataWrapper.closeOutboxLogs();
+		for (File file : sharedDirectory.listFiles()) {
+			file.delete();
+		}
+		sharedDirectory.delete();
+	}
+}
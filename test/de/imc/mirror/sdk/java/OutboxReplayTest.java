@@ -0,0 +1,235 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.XMPPError;
+import org.jivesoftware.smackx.pubsub.SimplePayload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.exceptions.UnknownEntityException;
+
+public class OutboxReplayTest {
+	private static final String USER = "alice@mirror-demo.eu";
+	private File directory;
+	private OutboxLog log;
+	private RecordingDataWrapper datawrapper;
+
+	/**
+	 * Data wrapper recording the threads removing payloads.
+	 */
+	private static class RecordingDataWrapper extends DataWrapperIntern {
+		private final List<Thread> removingThreads = new ArrayList<Thread>();
+
+		@Override
+		protected void removePayloadToSend(String user, String payloadId) {
+			synchronized (removingThreads) {
+				removingThreads.add(Thread.currentThread());
+			}
+			super.removePayloadToSend(user, payloadId);
+		}
+	}
+
+	/**
+	 * Publisher answering requests with a response defined by the test.
+	 */
+	private static abstract class TestPublisher implements OutboxReplay.Publisher {
+		protected final List<List<String>> requests = new ArrayList<List<String>>();
+		protected boolean isOnline = true;
+
+		@Override
+		public boolean isOnline() {
+			return isOnline;
+		}
+
+		@Override
+		public RequestFuture<IQ> publish(String spaceId, List<SavedPayload> payloads) throws UnknownEntityException, InterruptedException {
+			List<String> payloadIds = new ArrayList<String>();
+			for (SavedPayload payload : payloads) {
+				payloadIds.add(payload.getPayloadId());
+			}
+			requests.add(payloadIds);
+			RequestFuture<IQ> future = new RequestFuture<IQ>();
+			respond(spaceId, payloadIds, future);
+			return future;
+		}
+
+		@Override
+		public boolean isTemporaryError(XMPPError error) {
+			return error.getCondition().equals(XMPPError.Condition.resource_constraint.toString());
+		}
+
+		protected abstract void respond(String spaceId, List<String> payloadIds, RequestFuture<IQ> future);
+	}
+
+	@Before
+	public void initializeTests() throws IOException {
+		directory = File.createTempFile("outbox", "");
+		directory.delete();
+		log = new OutboxLog(directory, 4096, 0.5);
+		datawrapper = new RecordingDataWrapper();
+		datawrapper.setOutboxLog(log);
+	}
+
+	@After
+	public void cleanUp() throws IOException {
+		log.close();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private static SimplePayload createPayload(int value) {
+		return new SimplePayload("mood", "mirror:application:moodmap:mood",
+				"<mood xmlns=\"mirror:application:moodmap:mood\" id=\"" + value + "\"><value>" + value + "</value></mood>");
+	}
+
+	private static IQ createResponse(XMPPError.Condition condition) {
+		IQ response = new IQ() {
+			@Override
+			public String getChildElementXML() {
+				return null;
+			}
+		};
+		if (condition == null) {
+			response.setType(IQ.Type.RESULT);
+		} else {
+			response.setType(IQ.Type.ERROR);
+			response.setError(new XMPPError(condition));
+		}
+		return response;
+	}
+
+	private List<String> getRemainingPayloadIds() {
+		List<String> payloadIds = new ArrayList<String>();
+		for (Iterator<SavedPayload> iterator = datawrapper.iteratePayloadsToSend(USER); iterator.hasNext();) {
+			payloadIds.add(iterator.next().getPayloadId());
+		}
+		return payloadIds;
+	}
+
+	@Test
+	public void testOnlyAcknowledgedPayloadsAreRemovedByReplayThread() {
+		for (int i = 0; i < 6; i++) {
+			datawrapper.savePayloadToSend(USER, "p" + i, i < 3 ? "acked" : "failed", createPayload(i));
+		}
+		TestPublisher publisher = new TestPublisher() {
+			@Override
+			protected void respond(final String spaceId, List<String> payloadIds, final RequestFuture<IQ> future) {
+				new Thread() {
+					@Override
+					public void run() {
+						if ("acked".equals(spaceId)) {
+							future.setResponse(createResponse(null));
+						} else {
+							future.setException(new IllegalStateException("The request timed out."));
+						}
+					}
+				}.start();
+			}
+		};
+
+		OutboxReplay replay = new OutboxReplay(datawrapper, USER, 2, 100, publisher);
+		assertEquals(3, replay.run());
+		assertEquals(4, publisher.requests.size());
+		List<String> expected = new ArrayList<String>();
+		expected.add("p3");
+		expected.add("p4");
+		expected.add("p5");
+		assertEquals(expected, getRemainingPayloadIds());
+		assertEquals(3, datawrapper.removingThreads.size());
+		for (Thread thread : datawrapper.removingThreads) {
+			assertTrue(thread == Thread.currentThread());
+		}
+	}
+
+	@Test
+	public void testRejectedBatchIsRetriedPerItem() {
+		for (int i = 0; i < 4; i++) {
+			datawrapper.savePayloadToSend(USER, "p" + i, "space", createPayload(i));
+		}
+		TestPublisher publisher = new TestPublisher() {
+			@Override
+			protected void respond(String spaceId, List<String> payloadIds, RequestFuture<IQ> future) {
+				if (payloadIds.contains("p1")) {
+					future.setResponse(createResponse(XMPPError.Condition.bad_request));
+				} else {
+					future.setResponse(createResponse(null));
+				}
+			}
+		};
+
+		OutboxReplay replay = new OutboxReplay(datawrapper, USER, 3, 100, publisher);
+		assertEquals(4, replay.run());
+		assertEquals("[[p0, p1, p2], [p0], [p1], [p2], [p3]]", publisher.requests.toString());
+		assertTrue(getRemainingPayloadIds().isEmpty());
+	}
+
+	@Test
+	public void testTemporaryErrorKeepsPayloads() {
+		for (int i = 0; i < 3; i++) {
+			datawrapper.savePayloadToSend(USER, "p" + i, "space", createPayload(i));
+		}
+		TestPublisher publisher = new TestPublisher() {
+			@Override
+			protected void respond(String spaceId, List<String> payloadIds, RequestFuture<IQ> future) {
+				future.setResponse(createResponse(XMPPError.Condition.resource_constraint));
+			}
+		};
+
+		OutboxReplay replay = new OutboxReplay(datawrapper, USER, 3, 100, publisher);
+		assertEquals(0, replay.run());
+		assertEquals(1, publisher.requests.size());
+		assertEquals(3, getRemainingPayloadIds().size());
+	}
+
+	@Test
+	public void testReplayResumesAfterCheckpoint() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			datawrapper.savePayloadToSend(USER, "p" + i, "space", createPayload(i));
+		}
+		TestPublisher publisher = new TestPublisher() {
+			@Override
+			protected void respond(String spaceId, List<String> payloadIds, RequestFuture<IQ> future) {
+				future.setResponse(createResponse(null));
+				if (requests.size() == 5) {
+					// The connection is lost after the fifth acknowledgment.
+					isOnline = false;
+				}
+			}
+		};
+
+		OutboxReplay replay = new OutboxReplay(datawrapper, USER, 1, 2, publisher);
+		assertEquals(5, replay.run());
+		log.close();
+
+		log = new OutboxLog(directory, 4096, 0.5);
+		datawrapper = new RecordingDataWrapper();
+		datawrapper.setOutboxLog(log);
+		List<String> remaining = getRemainingPayloadIds();
+		assertEquals(5, remaining.size());
+		assertEquals("p5", remaining.get(0));
+		assertFalse(remaining.contains("p4"));
+
+		publisher.isOnline = true;
+		publisher.requests.clear();
+		replay = new OutboxReplay(datawrapper, USER, 1, 2, publisher);
+		assertEquals(5, replay.run());
+		assertEquals("[[p5], [p6], [p7], [p8], [p9]]", publisher.requests.toString());
+		assertTrue(getRemainingPayloadIds().isEmpty());
+	}
+}
@@ -0,0 +1,110 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.XMPPError;
+import org.jivesoftware.smackx.pubsub.SimplePayload;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.exceptions.InvalidDataException;
+
+public class PublishBatchTest {
+
+	private static List<SimplePayload> createPayloads(int count) {
+		List<SimplePayload> payloads = new ArrayList<SimplePayload>();
+		for (int i = 0; i < count; i++) {
+			payloads.add(new SimplePayload("mood", "mirror:application:moodmap:mood",
+					"<mood xmlns=\"mirror:application:moodmap:mood\"><value>" + i + "</value></mood>"));
+		}
+		return payloads;
+	}
+
+	private static IQ createResponse(XMPPError.Condition condition) {
+		IQ response = new IQ() {
+			@Override
+			public String getChildElementXML() {
+				return null;
+			}
+		};
+		if (condition == null) {
+			response.setType(IQ.Type.RESULT);
+		} else {
+			response.setType(IQ.Type.ERROR);
+			response.setError(new XMPPError(condition));
+		}
+		return response;
+	}
+
+	private static Throwable getFailure(RequestFuture<String> future) throws InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+		fail("The future was not failed.");
+		return null;
+	}
+
+	@Test
+	public void testPayloadsAreSplitInOrder() {
+		List<SimplePayload> payloads = createPayloads(45);
+		List<PublishBatch> batches = PublishBatch.split(payloads, 20);
+		assertEquals(3, batches.size());
+		assertEquals(20, batches.get(0).getItems().size());
+		assertEquals(20, batches.get(1).getItems().size());
+		assertEquals(5, batches.get(2).getItems().size());
+		assertEquals(5, batches.get(2).getFutures().size());
+		assertTrue(payloads.get(40) == batches.get(2).getItems().get(0).getPayload());
+
+		Set<String> itemIds = new HashSet<String>();
+		for (PublishBatch batch : batches) {
+			for (int i = 0; i < batch.getItems().size(); i++) {
+				itemIds.add(batch.getItems().get(i).getId());
+			}
+		}
+		assertEquals(45, itemIds.size());
+
+		assertEquals(45, PublishBatch.split(payloads, 1).size());
+		assertTrue(PublishBatch.split(new ArrayList<SimplePayload>(), 1).isEmpty());
+	}
+
+	@Test
+	public void testFuturesAreCompletedPerItem() throws Exception {
+		List<PublishBatch> batches = PublishBatch.split(createPayloads(3), 2);
+		RequestFuture<IQ> acknowledgedRequest = new RequestFuture<IQ>();
+		RequestFuture<IQ> rejectedRequest = new RequestFuture<IQ>();
+		batches.get(0).complete(acknowledgedRequest);
+		batches.get(1).complete(rejectedRequest);
+		assertFalse(batches.get(0).getFutures().get(0).isDone());
+
+		acknowledgedRequest.setResponse(createResponse(null));
+		for (int i = 0; i < 2; i++) {
+			assertEquals(batches.get(0).getItems().get(i).getId(), batches.get(0).getFutures().get(i).get());
+		}
+		assertFalse(batches.get(1).getFutures().get(0).isDone());
+		rejectedRequest.setResponse(createResponse(XMPPError.Condition.bad_request));
+		assertTrue(getFailure(batches.get(1).getFutures().get(0)) instanceof InvalidDataException);
+	}
+
+	@Test
+	public void testFailedRequestFailsAllItems() throws Exception {
+		PublishBatch batch = new PublishBatch(createPayloads(3));
+		RequestFuture<IQ> request = new RequestFuture<IQ>();
+		batch.complete(request);
+		request.setException(new TimeoutException());
+		for (RequestFuture<String> future : batch.getFutures()) {
+			assertTrue(getFailure(future) instanceof TimeoutException);
+		}
+	}
+}
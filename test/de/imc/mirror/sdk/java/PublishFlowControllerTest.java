@@ -0,0 +1,77 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PublishFlowControllerTest {
+	private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	@Test
+	public void testWindowGrowsAdditively() throws Exception {
+		PublishFlowController controller = new PublishFlowController(8, 0, 2000);
+		assertEquals(PublishFlowController.INITIAL_WINDOW, controller.getWindow());
+		for (int i = 0; i < PublishFlowController.INITIAL_WINDOW; i++) {
+			controller.acquire();
+		}
+		assertEquals(PublishFlowController.INITIAL_WINDOW, controller.getInFlightCount());
+		for (int i = 0; i < PublishFlowController.INITIAL_WINDOW; i++) {
+			controller.onAcknowledged(RTT, false);
+		}
+		// The window grows by about one request per acknowledged window.
+		controller.acquire();
+		controller.onAcknowledged(RTT, false);
+		assertEquals(PublishFlowController.INITIAL_WINDOW + 1, controller.getWindow());
+		assertEquals(RTT, controller.getSmoothedRtt());
+		assertEquals(0, controller.getInFlightCount());
+	}
+	
+	@Test
+	public void testWindowIsCapped() throws Exception {
+		PublishFlowController controller = new PublishFlowController(5, 0, 2000);
+		for (int i = 0; i < 100; i++) {
+			controller.acquire();
+			controller.onAcknowledged(RTT, false);
+		}
+		assertEquals(5, controller.getWindow());
+	}
+	
+	@Test
+	public void testWindowDecreasesOnCongestion() throws Exception {
+		PublishFlowController controller = new PublishFlowController(64, 0, 2000);
+		controller.acquire();
+		controller.onTimeout();
+		assertEquals(PublishFlowController.INITIAL_WINDOW / 2, controller.getWindow());
+		assertEquals(1, controller.getCongestionCount());
+		
+		controller = new PublishFlowController(64, 0, 2000);
+		controller.acquire();
+		controller.onAcknowledged(TimeUnit.MILLISECONDS.toNanos(1500), false);
+		assertEquals(PublishFlowController.INITIAL_WINDOW / 2, controller.getWindow());
+		
+		controller = new PublishFlowController(64, 0, 2000);
+		controller.acquire();
+		controller.onAcknowledged(RTT, true);
+		assertEquals(PublishFlowController.INITIAL_WINDOW / 2, controller.getWindow());
+		
+		controller.acquire();
+		controller.onFailure();
+		assertEquals(PublishFlowController.INITIAL_WINDOW / 2, controller.getWindow());
+	}
+	
+	@Test
+	public void testRateIsLimited() throws Exception {
+		PublishFlowController controller = new PublishFlowController(64, 100, 2000);
+		assertEquals(100, controller.getRate(), 0.001);
+		long start = System.nanoTime();
+		for (int i = 0; i < 6; i++) {
+			controller.acquire();
+			controller.onFailure();
+		}
+		// The first request is sent immediately, the others are paced at 100 requests per second.
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(45));
+	}
+}
@@ -0,0 +1,94 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.java.data.DatabaseConfig;
+
+public class PublishTargetCacheTest {
+	private RecordingSpaceHandler spaceHandler;
+
+	/**
+	 * Space handler recording its space change listeners.
+	 */
+	private static class RecordingSpaceHandler extends SpaceHandler {
+		private final List<SpaceChangeListener> listeners = new ArrayList<SpaceChangeListener>();
+
+		public RecordingSpaceHandler(ConnectionHandler connectionHandler) {
+			super(connectionHandler, DatabaseConfig.disableDatabaseCaching());
+		}
+
+		@Override
+		protected void addSpaceChangeListener(SpaceChangeListener listener) {
+			super.addSpaceChangeListener(listener);
+			listeners.add(listener);
+		}
+
+		@Override
+		protected void removeSpaceChangeListener(SpaceChangeListener listener) {
+			super.removeSpaceChangeListener(listener);
+			listeners.remove(listener);
+		}
+
+		public void changeSpace(String spaceId) {
+			for (SpaceChangeListener listener : new ArrayList<SpaceChangeListener>(listeners)) {
+				listener.spaceChanged(spaceId);
+			}
+		}
+	}
+
+	@Before
+	public void initializeTests() {
+		ConnectionConfiguration connectionConfig = new ConnectionConfigurationBuilder("mirror-demo.eu", "test").build();
+		spaceHandler = new RecordingSpaceHandler(new ConnectionHandler("alice", "secret", connectionConfig));
+	}
+
+	@Test
+	public void testSpaceChangeInvalidatesTarget() {
+		PublishTargetCache cache = new PublishTargetCache();
+		cache.register(spaceHandler);
+		NodeRoute target = new NodeRoute("team#1", "spaces#team#1", "pubsub.mirror-demo.eu");
+		NodeRoute otherTarget = new NodeRoute("team#2", "spaces#team#2", "pubsub.mirror-demo.eu");
+		cache.put("team#1", target);
+		cache.put("team#2", otherTarget);
+
+		spaceHandler.changeSpace("team#1");
+		assertNull(cache.get("team#1"));
+		assertTrue(otherTarget == cache.get("team#2"));
+	}
+
+	@Test
+	public void testTargetResolvedAgainIsKept() {
+		PublishTargetCache cache = new PublishTargetCache();
+		NodeRoute staleTarget = new NodeRoute("team#1", "spaces#team#1", "pubsub.mirror-demo.eu");
+		NodeRoute target = new NodeRoute("team#1", "spaces#team#1", "pubsub.mirror-demo.eu");
+		cache.put("team#1", target);
+		cache.remove("team#1", staleTarget);
+		assertTrue(target == cache.get("team#1"));
+	}
+
+	@Test
+	public void testCollectedCacheIsUnregistered() throws InterruptedException {
+		PublishTargetCache cache = new PublishTargetCache();
+		cache.register(spaceHandler);
+		assertEquals(1, spaceHandler.listeners.size());
+
+		WeakReference<PublishTargetCache> cacheReference = new WeakReference<PublishTargetCache>(cache);
+		cache = null;
+		for (int i = 0; i < 50 && cacheReference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(cacheReference.get());
+		spaceHandler.changeSpace("team#1");
+		assertEquals(0, spaceHandler.listeners.size());
+	}
+}
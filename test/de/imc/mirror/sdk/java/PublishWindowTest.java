@@ -0,0 +1,81 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PublishWindowTest {
+	
+	@Test
+	public void testSpaceWindowBlocksUntilRelease() throws Exception {
+		final PublishWindow window = new PublishWindow(4, 2);
+		window.acquire("space1");
+		window.acquire("space1");
+		window.acquire("space2");
+		assertEquals(3, window.getPendingCount());
+		assertEquals(2, window.getPendingCount("space1"));
+		
+		final CountDownLatch acquired = new CountDownLatch(1);
+		Thread publisher = new Thread() {
+			@Override
+			public void run() {
+				try {
+					window.acquire("space1");
+					acquired.countDown();
+				} catch (InterruptedException e) {
+					// Test fails on timeout.
+				}
+			}
+		};
+		publisher.start();
+		assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+		// The connection window still has a free slot for other spaces.
+		window.acquire("space2");
+		
+		window.release("space1");
+		assertTrue(acquired.await(1000, TimeUnit.MILLISECONDS));
+		assertEquals(4, window.getPendingCount());
+	}
+	
+	@Test
+	public void testRequestFutureCallbacks() throws Exception {
+		final StringBuilder result = new StringBuilder();
+		RequestFuture.Callback<String> callback = new RequestFuture.Callback<String>() {
+			@Override
+			public void onSuccess(String response) {
+				result.append("success:").append(response).append(';');
+			}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				result.append("failure:").append(cause.getMessage()).append(';');
+			}
+		};
+		RequestFuture<String> future = new RequestFuture<String>();
+		future.addCallback(callback);
+		future.setResponse("1");
+		future.setException(new IllegalStateException("ignored"));
+		future.addCallback(callback);
+		assertEquals("success:1;success:1;", result.toString());
+		assertEquals("1", future.get());
+		
+		result.setLength(0);
+		RequestFuture<String> failedFuture = new RequestFuture<String>();
+		failedFuture.addCallback(callback);
+		failedFuture.setException(new IllegalStateException("rejected"));
+		assertEquals("failure:rejected;", result.toString());
+		try {
+			failedFuture.get();
+			fail("The future should have failed.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
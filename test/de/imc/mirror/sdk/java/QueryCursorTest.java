@@ -0,0 +1,111 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.SerializableDataObjectFilter;
+import de.imc.mirror.sdk.java.packet.QueryRequestIQ;
+
+public class QueryCursorTest {
+	private static final String SPACE_ID = "team#1";
+	private LocalPersistenceService persistenceService;
+
+	@Before
+	public void initializeTests() {
+		persistenceService = new LocalPersistenceService(true);
+		for (int i = 0; i < 95; i++) {
+			persistenceService.addDataObject(SPACE_ID, createDataObjectXML(i));
+		}
+	}
+
+	@After
+	public void cleanUp() {
+		persistenceService.shutdown();
+	}
+
+	private static String createDataObjectXML(int index) {
+		return "<ping xmlns=\"mirror:application:ping:ping\" cdmVersion=\"2.0\" id=\"object-" + index + "\" "
+				+ "timestamp=\"2013-07-10T12:00:00+02:00\" modelVersion=\"1.0\"><content>" + index + "</content></ping>";
+	}
+
+	private static QueryRequestIQ createQuery() {
+		return QueryRequestIQ.createQueryBySpace(SPACE_ID, Collections.<SerializableDataObjectFilter>emptySet());
+	}
+
+	@Test
+	public void testAllPagesAreReturnedInOrder() throws Exception {
+		QueryCursor cursor = new QueryCursor(createQuery(), 10, 2000, persistenceService);
+		int count = 0;
+		while (cursor.hasNext()) {
+			DataObject dataObject = cursor.next();
+			assertEquals("object-" + count, dataObject.getId());
+			count++;
+		}
+		assertEquals(95, count);
+		assertEquals(95, cursor.getReceivedCount());
+		assertEquals(95, cursor.getTotalCount());
+		assertEquals(10, persistenceService.getRequestCount());
+	}
+
+	@Test
+	public void testNextPageIsPrefetched() throws Exception {
+		persistenceService.setResponseDelay(20);
+		QueryCursor cursor = new QueryCursor(createQuery(), 10, 2000, persistenceService);
+		assertTrue(cursor.hasNext());
+		cursor.next();
+		// The second page is requested when the first one is received, before it is consumed.
+		assertEquals(2, persistenceService.getRequestCount());
+		assertEquals(1, persistenceService.getMaxPendingCount());
+	}
+
+	@Test
+	public void testClosedCursorStopsRequestingPages() throws Exception {
+		QueryCursor cursor = new QueryCursor(createQuery(), 10, 2000, persistenceService);
+		assertTrue(cursor.hasNext());
+		cursor.close();
+		int count = 0;
+		while (cursor.hasNext()) {
+			cursor.next();
+			count++;
+		}
+		assertEquals(10, count);
+		assertEquals(2, persistenceService.getRequestCount());
+	}
+
+	@Test
+	public void testResultWithoutResultSetManagementIsOnePage() throws Exception {
+		LocalPersistenceService legacyService = new LocalPersistenceService(false);
+		try {
+			for (int i = 0; i < 25; i++) {
+				legacyService.addDataObject(SPACE_ID, createDataObjectXML(i));
+			}
+			QueryCursor cursor = new QueryCursor(createQuery(), 10, 2000, legacyService);
+			int count = 0;
+			while (cursor.hasNext()) {
+				cursor.next();
+				count++;
+			}
+			assertEquals(25, count);
+			assertEquals(1, legacyService.getRequestCount());
+			assertEquals(-1, cursor.getTotalCount());
+		} finally {
+			legacyService.shutdown();
+		}
+	}
+
+	@Test
+	public void testEmptyResult() throws Exception {
+		QueryRequestIQ query = QueryRequestIQ.createQueryBySpace("empty", Collections.<SerializableDataObjectFilter>emptySet());
+		QueryCursor cursor = new QueryCursor(query, 10, 2000, persistenceService);
+		assertFalse(cursor.hasNext());
+		assertEquals(0, cursor.getTotalCount());
+	}
+}
@@ -0,0 +1,164 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.SerializableDataObjectFilter;
+import de.imc.mirror.sdk.exceptions.QueryException;
+import de.imc.mirror.sdk.java.filter.NamespaceFilter;
+import de.imc.mirror.sdk.java.filter.PublisherFilter;
+
+public class QueryDeduplicatorTest {
+	private QueryDeduplicator deduplicator;
+	private ExecutorService executor;
+
+	@Before
+	public void initializeTests() {
+		deduplicator = new QueryDeduplicator();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void cleanUp() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Query which blocks until it is released and counts its executions.
+	 */
+	private static class BlockingQuery implements QueryDeduplicator.Query {
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final AtomicInteger executionCount = new AtomicInteger();
+		private final List<DataObject> result = new ArrayList<DataObject>();
+		private volatile boolean isFailing = false;
+
+		@Override
+		public List<DataObject> execute() throws QueryException {
+			executionCount.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (isFailing) {
+				throw new QueryException(QueryException.Type.ACCESS_DENIED, "Test");
+			}
+			return result;
+		}
+	}
+
+	private List<Future<List<DataObject>>> submit(final String key, final BlockingQuery query, int count) {
+		List<Future<List<DataObject>>> futures = new ArrayList<Future<List<DataObject>>>();
+		for (int i = 0; i < count; i++) {
+			futures.add(executor.submit(new Callable<List<DataObject>>() {
+				@Override
+				public List<DataObject> call() throws Exception {
+					return deduplicator.execute(key, query);
+				}
+			}));
+		}
+		return futures;
+	}
+
+	private void awaitSharedCount(long sharedCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (deduplicator.getSharedCount() < sharedCount && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testKeyIsCanonical() {
+		Set<SerializableDataObjectFilter> filters = new LinkedHashSet<SerializableDataObjectFilter>();
+		filters.add(new NamespaceFilter("mirror:application:moodmap:mood"));
+		filters.add(new PublisherFilter("alice@mirror-demo.eu"));
+		Set<SerializableDataObjectFilter> reversedFilters = new LinkedHashSet<SerializableDataObjectFilter>();
+		reversedFilters.add(new PublisherFilter("alice@mirror-demo.eu"));
+		reversedFilters.add(new NamespaceFilter("mirror:application:moodmap:mood"));
+
+		String key = QueryDeduplicator.createKey("spaces", Arrays.asList("a", "b"), filters);
+		assertEquals(key, QueryDeduplicator.createKey("spaces", Arrays.asList("b", "a"), reversedFilters));
+		assertFalse(key.equals(QueryDeduplicator.createKey("objects", Arrays.asList("a", "b"), filters)));
+		assertFalse(key.equals(QueryDeduplicator.createKey("spaces", Arrays.asList("a", "b"), new HashSet<SerializableDataObjectFilter>())));
+		assertEquals(QueryDeduplicator.createKey("space", Collections.singleton("a"), null),
+				QueryDeduplicator.createKey("space", Collections.singleton("a"), new HashSet<SerializableDataObjectFilter>()));
+	}
+
+	@Test
+	public void testConcurrentQueriesShareResult() throws Exception {
+		BlockingQuery query = new BlockingQuery();
+		List<Future<List<DataObject>>> futures = submit("key", query, 5);
+		awaitSharedCount(4);
+		query.release.countDown();
+		List<DataObject> firstResult = futures.get(0).get(5, TimeUnit.SECONDS);
+		for (Future<List<DataObject>> future : futures) {
+			List<DataObject> result = future.get(5, TimeUnit.SECONDS);
+			assertTrue(result.isEmpty());
+			if (future != futures.get(0)) {
+				assertNotSame(firstResult, result);
+			}
+		}
+		assertEquals(1, query.executionCount.get());
+		assertEquals(4, deduplicator.getSharedCount());
+
+		// Without memo, a later query is performed again.
+		deduplicator.execute("key", query);
+		assertEquals(2, query.executionCount.get());
+	}
+
+	@Test
+	public void testFailureIsShared() throws Exception {
+		BlockingQuery query = new BlockingQuery();
+		query.isFailing = true;
+		List<Future<List<DataObject>>> futures = submit("key", query, 3);
+		awaitSharedCount(2);
+		query.release.countDown();
+		for (Future<List<DataObject>> future : futures) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertSame(QueryException.Type.ACCESS_DENIED, ((QueryException) e.getCause()).getType());
+			}
+		}
+		assertEquals(1, query.executionCount.get());
+	}
+
+	@Test
+	public void testMemoIsReusedUntilCleared() throws Exception {
+		BlockingQuery query = new BlockingQuery();
+		query.release.countDown();
+		deduplicator.setMemoTime(60000);
+		deduplicator.execute("key", query);
+		deduplicator.execute("key", query);
+		assertEquals(1, query.executionCount.get());
+		deduplicator.clearMemos();
+		deduplicator.execute("key", query);
+		assertEquals(2, query.executionCount.get());
+	}
+}
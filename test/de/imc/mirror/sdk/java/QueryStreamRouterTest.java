@@ -0,0 +1,62 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryStreamRouterTest {
+	private static final Object SOURCE = new Object();
+	private QueryStreamRouter router;
+
+	@Before
+	public void initializeTests() {
+		router = new QueryStreamRouter();
+		router.bind(SOURCE);
+	}
+
+	@Test
+	public void testStreamIsClaimedOnlyIfItIsTheOnlyPendingQuery() {
+		QueryStream stream = new QueryStream(10);
+		router.register("q1", null);
+		router.register("s1", stream);
+		// The response may belong to q1.
+		assertNull(QueryStreamRouter.claimStream(SOURCE));
+
+		router.complete("q1");
+		assertTrue(stream == QueryStreamRouter.claimStream(SOURCE));
+		// A response is routed to a stream only once.
+		assertNull(QueryStreamRouter.claimStream(SOURCE));
+		router.complete("s1");
+		assertEquals(0, router.getPendingQueryCount());
+	}
+
+	@Test
+	public void testTimedOutQueryIsPendingUntilResponse() {
+		router.register("q1", null);
+		// The caller of q1 timed out, but no response was received yet.
+		router.register("s1", new QueryStream(10));
+		assertNull(QueryStreamRouter.claimStream(SOURCE));
+		assertEquals(2, router.getPendingQueryCount());
+
+		router.reset();
+		assertEquals(0, router.getPendingQueryCount());
+		assertNull(QueryStreamRouter.claimStream(SOURCE));
+	}
+
+	@Test
+	public void testUnboundSourceIsNotRouted() {
+		router.register("s1", new QueryStream(10));
+		assertNull(QueryStreamRouter.claimStream(new Object()));
+	}
+
+	@Test
+	public void testRoutersAreSharedPerConnection() {
+		Object connection = new Object();
+		assertTrue(QueryStreamRouter.getInstance(connection) == QueryStreamRouter.getInstance(connection));
+		assertFalse(QueryStreamRouter.getInstance(connection) == QueryStreamRouter.getInstance(new Object()));
+	}
+}
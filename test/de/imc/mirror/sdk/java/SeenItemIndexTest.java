@@ -0,0 +1,73 @@
+package de.imc.mirror.sdk.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.java.SeenItemIndex.Membership;
+
+public class SeenItemIndexTest {
+	private SeenItemIndex index;
+	
+	@Before
+	public void initializeTests() {
+		index = new SeenItemIndex(1000, 0.01, 10);
+	}
+	
+	@Test
+	public void testAddedItemsAreNeverAbsent() {
+		for (int i = 0; i < 1000; i++) {
+			index.add("item-" + i);
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertFalse(index.lookup("item-" + i) == Membership.ABSENT);
+		}
+		assertEquals(Membership.PRESENT, index.lookup("item-999"));
+	}
+	
+	@Test
+	public void testFalsePositiveRate() {
+		for (int i = 0; i < 1000; i++) {
+			index.add("item-" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (index.lookup("other-" + i) != Membership.ABSENT) {
+				falsePositives++;
+			}
+		}
+		assertTrue("Too many false positives: " + falsePositives, falsePositives < 300);
+	}
+	
+	@Test
+	public void testRemoveAndClear() {
+		index.add("a");
+		assertEquals(Membership.PRESENT, index.lookup("a"));
+		index.remove("a");
+		assertEquals(Membership.UNKNOWN, index.lookup("a"));
+		index.confirm("a");
+		assertEquals(Membership.PRESENT, index.lookup("a"));
+		index.clear();
+		assertEquals(Membership.ABSENT, index.lookup("a"));
+	}
+	
+	@Test
+	public void testRebuild() {
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 3000; i++) {
+			ids.add("item-" + i);
+		}
+		index.rebuild(ids);
+		assertFalse(index.isSaturated());
+		for (String id : ids) {
+			assertFalse(index.lookup(id) == Membership.ABSENT);
+		}
+		assertEquals(Membership.ABSENT, index.lookup("missing"));
+	}
+}
@@ -0,0 +1,102 @@
+package de.imc.mirror.sdk.java.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.imc.mirror.sdk.DataObjectFilter;
+import de.imc.mirror.sdk.java.DataObject;
+import de.imc.mirror.sdk.java.DataObjectBuilder;
+import de.imc.mirror.sdk.java.DataObjectHeader;
+import de.imc.mirror.sdk.java.xml.DataObjectReader;
+
+public class EnvelopeFilterTest {
+	private static final String MOOD_NAMESPACE = "mirror:application:moodmap:mood";
+	private DataObject aliceMood, bobMood, alicePing;
+
+	/**
+	 * Filter which cannot be evaluated on the header.
+	 */
+	private static class ContentFilter implements DataObjectFilter {
+		private final boolean isValid;
+
+		public ContentFilter(boolean isValid) {
+			this.isValid = isValid;
+		}
+
+		@Override
+		public boolean isDataObjectValid(de.imc.mirror.sdk.DataObject dataObject) {
+			return isValid;
+		}
+	}
+
+	@Before
+	public void initializeTests() {
+		aliceMood = new DataObjectBuilder("mood", MOOD_NAMESPACE).setAttribute("id", "m1").setAttribute("publisher", "alice@mirror-demo.eu/app").build();
+		bobMood = new DataObjectBuilder("mood", MOOD_NAMESPACE).setAttribute("id", "m2").setAttribute("publisher", "bob@mirror-demo.eu/app").build();
+		alicePing = new DataObjectBuilder("ping", "mirror:application:ping:ping").setAttribute("id", "p1").setAttribute("publisher", "alice@mirror-demo.eu").build();
+	}
+
+	private static DataObject parse(DataObject dataObject) throws Exception {
+		String xml = dataObject.toString();
+		return new DataObject(DataObjectReader.readHeader(xml), xml);
+	}
+
+	@Test
+	public void testHeaderOfBuiltObjectIsCached() {
+		DataObjectHeader header = aliceMood.getHeader();
+		assertTrue(header == aliceMood.getHeader());
+		assertEquals("alice@mirror-demo.eu/app", EnvelopeFields.getAttribute(aliceMood, EnvelopeFilter.FIELD_PUBLISHER));
+		assertTrue(header == aliceMood.getHeader());
+	}
+
+	@Test
+	public void testHeaderAndObjectResultsAgree() throws Exception {
+		PublisherFilter publisherFilter = new PublisherFilter("alice@mirror-demo.eu");
+		NamespaceFilter namespaceFilter = new NamespaceFilter(MOOD_NAMESPACE);
+		for (DataObject dataObject : new DataObject[] {aliceMood, bobMood, alicePing}) {
+			DataObject parsedObject = parse(dataObject);
+			for (EnvelopeFilter filter : new EnvelopeFilter[] {publisherFilter, namespaceFilter}) {
+				boolean isValid = ((DataObjectFilter) filter).isDataObjectValid(dataObject);
+				assertEquals(isValid, filter.isEnvelopeValid(dataObject.getHeader()));
+				assertEquals(isValid, ((DataObjectFilter) filter).isDataObjectValid(parsedObject));
+			}
+		}
+		assertTrue(publisherFilter.isEnvelopeValid(aliceMood.getHeader()));
+		assertFalse(publisherFilter.isEnvelopeValid(bobMood.getHeader()));
+		assertFalse(namespaceFilter.isEnvelopeValid(alicePing.getHeader()));
+	}
+
+	@Test
+	public void testAndFilterRejectsIfAnyChildRejects() {
+		AndFilter filter = new AndFilter(new PublisherFilter("alice@mirror-demo.eu"), new NamespaceFilter(MOOD_NAMESPACE));
+		assertTrue(filter.isEnvelopeValid(aliceMood.getHeader()));
+		assertFalse(filter.isEnvelopeValid(bobMood.getHeader()));
+		assertFalse(filter.isEnvelopeValid(alicePing.getHeader()));
+		assertEquals(2, filter.getEnvelopeFields().size());
+
+		// Child filters which cannot be evaluated on the header are ignored by the envelope check only.
+		filter.addFilter(new ContentFilter(false));
+		assertTrue(filter.isEnvelopeValid(aliceMood.getHeader()));
+		assertFalse(filter.isDataObjectValid(aliceMood));
+	}
+
+	@Test
+	public void testOrFilterRejectsIfAllChildrenReject() {
+		OrFilter filter = new OrFilter(new PublisherFilter("alice@mirror-demo.eu"), new NamespaceFilter(MOOD_NAMESPACE));
+		assertTrue(filter.isEnvelopeValid(aliceMood.getHeader()));
+		assertTrue(filter.isEnvelopeValid(bobMood.getHeader()));
+		assertTrue(filter.isEnvelopeValid(alicePing.getHeader()));
+		assertFalse(new OrFilter(new PublisherFilter("carol@mirror-demo.eu")).isEnvelopeValid(aliceMood.getHeader()));
+		assertFalse(new OrFilter().isEnvelopeValid(aliceMood.getHeader()));
+
+		// A child filter which cannot be evaluated on the header may accept any object.
+		OrFilter mixedFilter = new OrFilter(new PublisherFilter("carol@mirror-demo.eu"), new ContentFilter(true));
+		assertTrue(mixedFilter.getEnvelopeFields().isEmpty());
+		assertTrue(mixedFilter.isEnvelopeValid(aliceMood.getHeader()));
+		assertTrue(mixedFilter.isDataObjectValid(aliceMood));
+	}
+}
@@ -0,0 +1,161 @@
+package de.imc.mirror.sdk.java.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import de.imc.mirror.sdk.DataObject;
+import de.imc.mirror.sdk.config.NamespaceConfig;
+import de.imc.mirror.sdk.java.QueryStream;
+import de.imc.mirror.sdk.java.QueryStreamRouter;
+
+public class PersistenceServiceQueryProviderTest {
+	private static final int OBJECT_COUNT = 500;
+
+	/**
+	 * Reader which records if the end of the input was reached.
+	 */
+	private static class TrackingReader extends Reader {
+		private final Reader reader;
+		private boolean isEndReached = false;
+
+		public TrackingReader(String input) {
+			this.reader = new StringReader(input);
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int count = reader.read(buffer, offset, length);
+			if (count < 0) {
+				isEndReached = true;
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	private static String createResponse(int objectCount) {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<query xmlns=\"").append(NamespaceConfig.PERSISTENCE_SERVICE).append("\"><result>");
+		for (int i = 0; i < objectCount; i++) {
+			xml.append("<mood xmlns=\"mirror:application:moodmap:mood\" cdmVersion=\"2.0\" id=\"").append(i)
+				.append("\" timestamp=\"2013-07-10T12:00:00+02:00\"><value>").append(i).append("</value></mood>");
+		}
+		xml.append("</result></query>");
+		return xml.toString();
+	}
+
+	private static XmlPullParser createParser(Reader reader) throws Exception {
+		XmlPullParser parser = new MXParser();
+		parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+		parser.setInput(reader);
+		parser.next();
+		return parser;
+	}
+
+	private static QueryResponseIQ parse(XmlPullParser parser) throws Exception {
+		return (QueryResponseIQ) new PersistenceServiceQueryProvider().parseIQ(parser);
+	}
+
+	@Test
+	public void testResultIsCollectedWithoutStream() throws Exception {
+		XmlPullParser parser = createParser(new StringReader(createResponse(3)));
+		QueryResponseIQ response = parse(parser);
+		List<DataObject> result = response.getResult();
+		assertEquals(3, result.size());
+		assertEquals(0, response.getStreamedCount());
+		assertTrue(parser == response.getSource());
+		assertEquals("1", result.get(1).getId());
+		assertEquals("mirror:application:moodmap:mood", result.get(1).getNamespaceURI());
+		assertTrue(response.getChildElementXML().contains("id=\"2\""));
+	}
+
+	@Test
+	public void testResultIsStreamedThroughBoundedQueue() throws Exception {
+		final TrackingReader reader = new TrackingReader(createResponse(OBJECT_COUNT));
+		XmlPullParser parser = createParser(reader);
+		QueryStreamRouter router = new QueryStreamRouter();
+		router.bind(parser);
+		final QueryStream stream = new QueryStream(10);
+		router.register("s1", stream);
+
+		final List<String> ids = new ArrayList<String>();
+		final boolean[] isFirstBeforeEnd = new boolean[1];
+		Thread caller = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						DataObject dataObject = stream.take(5000);
+						if (dataObject == null) {
+							return;
+						}
+						if (ids.isEmpty()) {
+							isFirstBeforeEnd[0] = !reader.isEndReached;
+						}
+						ids.add(dataObject.getId());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		caller.start();
+		QueryResponseIQ response = parse(parser);
+		caller.join(5000);
+		assertFalse(caller.isAlive());
+		assertTrue(stream.isDrained());
+		assertTrue(isFirstBeforeEnd[0]);
+		assertTrue(response.getResult().isEmpty());
+		assertEquals(OBJECT_COUNT, response.getStreamedCount());
+		assertEquals(OBJECT_COUNT, ids.size());
+		for (int i = 0; i < OBJECT_COUNT; i++) {
+			assertEquals(String.valueOf(i), ids.get(i));
+		}
+	}
+
+	@Test
+	public void testClosedStreamDiscardsResult() throws Exception {
+		XmlPullParser parser = createParser(new StringReader(createResponse(20)));
+		QueryStreamRouter router = new QueryStreamRouter();
+		router.bind(parser);
+		QueryStream stream = new QueryStream(1);
+		router.register("s1", stream);
+		// The caller timed out before the response was received.
+		stream.close();
+		QueryResponseIQ response = parse(parser);
+		assertEquals(0, response.getStreamedCount());
+		assertTrue(response.getResult().isEmpty());
+		assertFalse(response.getChildElementXML().contains("<mood"));
+	}
+
+	@Test
+	public void testResultIsCollectedIfOtherQueriesArePending() throws Exception {
+		XmlPullParser parser = createParser(new StringReader(createResponse(2)));
+		QueryStreamRouter router = new QueryStreamRouter();
+		router.bind(parser);
+		QueryStream stream = new QueryStream(10);
+		router.register("q1", null);
+		router.register("s1", stream);
+		QueryResponseIQ response = parse(parser);
+		assertEquals(0, response.getStreamedCount());
+		assertEquals(2, response.getResult().size());
+		assertNull(stream.take(0));
+		assertFalse(stream.isDrained());
+	}
+}
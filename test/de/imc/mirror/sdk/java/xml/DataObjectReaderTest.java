@@ -0,0 +1,85 @@
+package de.imc.mirror.sdk.java.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.jdom2.Element;
+import org.junit.Test;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import de.imc.mirror.sdk.java.DataObject;
+import de.imc.mirror.sdk.java.DataObjectHeader;
+
+public class DataObjectReaderTest {
+	private static final String PAYLOAD =
+		"<mood xmlns=\"mirror:application:moodmap:mood\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+		+ "xsi:schemaLocation=\"mirror:application:moodmap:mood http://data.mirror-demo.eu/application/moodmap/mood-1.0.xsd\" "
+		+ "cdmVersion=\"2.0\" modelVersion=\"1.0\" id=\"abc\" timestamp=\"2013-07-10T12:00:00+02:00\" "
+		+ "publisher=\"alice@mirror-demo.eu\" customId=\"c1\">"
+		+ "<value unit=\"&quot;%&quot;\">0.75 &amp; more</value><x:info xmlns:x=\"urn:example\"><empty/></x:info></mood>";
+
+	@Test
+	public void testReadHeaderFromString() throws Exception {
+		DataObjectHeader header = DataObjectReader.readHeader(PAYLOAD);
+		assertEquals("mood", header.getElementName());
+		assertEquals("mirror:application:moodmap:mood", header.getNamespaceURI());
+		assertEquals("abc", header.getId());
+		assertEquals("2.0", header.getCDMVersion());
+		assertEquals("1.0", header.getModelVersion());
+		assertEquals("alice@mirror-demo.eu", header.getPublisher());
+		assertEquals("c1", header.getCustomId());
+		assertNull(header.getRef());
+		assertNull(header.getUpdates());
+		assertEquals("http://data.mirror-demo.eu/application/moodmap/mood-1.0.xsd", header.getDataModel().getSchemaLocation());
+	}
+
+	@Test
+	public void testReadElementFromItem() throws Exception {
+		String item = "<item xmlns=\"http://jabber.org/protocol/pubsub#event\" xmlns:x=\"urn:example\" id=\"1\">" + PAYLOAD + "</item>";
+		XmlPullParser parser = new MXParser();
+		parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+		parser.setInput(new StringReader(item));
+		parser.next();
+		parser.next();
+		assertEquals("mood", parser.getName());
+
+		DataObjectHeader header = DataObjectReader.readHeader(parser);
+		String xml = DataObjectReader.readElementXML(parser);
+		assertEquals(XmlPullParser.END_TAG, parser.getEventType());
+		assertEquals("mood", parser.getName());
+
+		DataObject dataObject = new DataObject(header, xml);
+		assertEquals("abc", dataObject.getId());
+		assertEquals("mirror:application:moodmap:mood", dataObject.getNamespaceURI());
+
+		Element expected = XMLCodec.parseElement(PAYLOAD);
+		Element element = dataObject.getElement();
+		assertEquals(XMLCodec.toXML(expected), XMLCodec.toXML(element));
+		assertTrue(element.getChild("info", org.jdom2.Namespace.getNamespace("urn:example")) != null);
+	}
+
+	@Test
+	public void testReadElementWithCharacterData() throws Exception {
+		String payload = "<mood xmlns=\"mirror:application:moodmap:mood\" id=\"abc\">"
+			+ "<value>a <![CDATA[<z>&]]> b &#65;&lt;&gt;</value><!-- comment --><note>\r\n</note></mood>";
+		XmlPullParser parser = new MXParser();
+		parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+		parser.setInput(new StringReader("<item xmlns=\"http://jabber.org/protocol/pubsub#event\">" + payload + "</item>"));
+		parser.next();
+		parser.next();
+
+		String xml = DataObjectReader.readElementXML(parser);
+		assertEquals(XmlPullParser.END_TAG, parser.getEventType());
+		assertEquals(XmlPullParser.END_TAG, parser.next());
+		assertEquals("item", parser.getName());
+
+		Element element = XMLCodec.parseElement(xml);
+		Element expected = XMLCodec.parseElement(payload);
+		assertEquals("a <z>& b A<>", element.getChildText("value", element.getNamespace()));
+		assertEquals(expected.getChildText("note", expected.getNamespace()), element.getChildText("note", element.getNamespace()));
+	}
+}
@@ -0,0 +1,84 @@
+package de.imc.mirror.sdk.java.xml;
+
+import java.io.StringReader;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * Micro benchmark comparing the pooled parsers and serializers of the XML codec
+ * with the construction of a new SAX builder and XML outputter for every call.
+ * Run as application, optionally passing the number of measured iterations as argument.
+ */
+public class XMLCodecBenchmark {
+	private static final String PAYLOAD =
+		"<mood xmlns=\"mirror:application:moodmap:mood\" "
+		+ "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+		+ "xsi:schemaLocation=\"mirror:application:moodmap:mood http://data.mirror-demo.eu/application/moodmap/mood-1.0.xsd\" "
+		+ "cdmVersion=\"2.0\" modelVersion=\"1.0\" id=\"5f5c1b32-2f6e-4a4b-a5c2-7b2a2f7d0e11\" "
+		+ "timestamp=\"2013-07-10T12:00:00+02:00\" publisher=\"alice@mirror-demo.eu\">"
+		+ "<value>0.75</value><comment>Feeling good after the retrospective.</comment>"
+		+ "<creationInfo><date>2013-07-10T12:00:00+02:00</date><person>alice@mirror-demo.eu</person></creationInfo>"
+		+ "</mood>";
+	private static final int WARMUP_ITERATIONS = 20000;
+
+	private interface Operation {
+		Object run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		final Element element = XMLCodec.parseElement(PAYLOAD);
+
+		Operation parsePerCall = new Operation() {
+			@Override
+			public Object run() throws Exception {
+				SAXBuilder reader = new SAXBuilder();
+				Document document = reader.build(new StringReader(PAYLOAD));
+				return document.getRootElement();
+			}
+		};
+		Operation parsePooled = new Operation() {
+			@Override
+			public Object run() throws Exception {
+				SAXBuilder reader = XMLCodec.getBuilder();
+				Document document = reader.build(new StringReader(PAYLOAD));
+				return document.getRootElement();
+			}
+		};
+		Operation outputPerCall = new Operation() {
+			@Override
+			public Object run() throws Exception {
+				XMLOutputter out = new XMLOutputter();
+				return out.outputString(element);
+			}
+		};
+		Operation outputPooled = new Operation() {
+			@Override
+			public Object run() throws Exception {
+				XMLOutputter out = XMLCodec.getOutputter();
+				return out.outputString(element);
+			}
+		};
+
+		measure("parse, new SAXBuilder per call", parsePerCall, iterations);
+		measure("parse, pooled SAXBuilder", parsePooled, iterations);
+		measure("serialize, new XMLOutputter per call", outputPerCall, iterations);
+		measure("serialize, pooled XMLOutputter", outputPooled, iterations);
+	}
+
+	private static void measure(String name, Operation operation, int iterations) throws Exception {
+		int sink = 0;
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			sink += operation.run().hashCode();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += operation.run().hashCode();
+		}
+		long duration = System.nanoTime() - start;
+		System.out.println(String.format("%-40s %10.2f us/op (%d)", name, duration / 1000.0 / iterations, sink & 1));
+	}
+}
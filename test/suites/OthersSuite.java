@@ -5,13 +5,49 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import de.imc.mirror.sdk.java.CoalescingIndexTest;
+import de.imc.mirror.sdk.java.DataHandlerOutboxTest;
 import de.imc.mirror.sdk.java.DataObjectBuilderTest;
+import de.imc.mirror.sdk.java.DataObjectCacheTest;
+import de.imc.mirror.sdk.java.DataObjectDispatcherTest;
 import de.imc.mirror.sdk.java.DataObjectFilterTest;
+import de.imc.mirror.sdk.java.ListenerRegistryTest;
+import de.imc.mirror.sdk.java.OutboxLogTest;
+import de.imc.mirror.sdk.java.OutboxReplayTest;
+import de.imc.mirror.sdk.java.PublishBatchTest;
+import de.imc.mirror.sdk.java.PublishFlowControllerTest;
+import de.imc.mirror.sdk.java.PublishTargetCacheTest;
+import de.imc.mirror.sdk.java.PublishWindowTest;
+import de.imc.mirror.sdk.java.QueryCursorTest;
+import de.imc.mirror.sdk.java.QueryDeduplicatorTest;
+import de.imc.mirror.sdk.java.QueryStreamRouterTest;
+import de.imc.mirror.sdk.java.SeenItemIndexTest;
+import de.imc.mirror.sdk.java.filter.EnvelopeFilterTest;
+import de.imc.mirror.sdk.java.packet.PersistenceServiceQueryProviderTest;
+import de.imc.mirror.sdk.java.xml.DataObjectReaderTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
+	CoalescingIndexTest.class,
+	DataHandlerOutboxTest.class,
 	DataObjectBuilderTest.class,
-	DataObjectFilterTest.class
+	DataObjectCacheTest.class,
+	DataObjectDispatcherTest.class,
+	DataObjectFilterTest.class,
+	ListenerRegistryTest.class,
+	OutboxLogTest.class,
+	OutboxReplayTest.class,
+	PublishBatchTest.class,
+	PublishFlowControllerTest.class,
+	PublishTargetCacheTest.class,
+	PublishWindowTest.class,
+	QueryCursorTest.class,
+	QueryDeduplicatorTest.class,
+	QueryStreamRouterTest.class,
+	SeenItemIndexTest.class,
+	EnvelopeFilterTest.class,
+	PersistenceServiceQueryProviderTest.class,
+	DataObjectReaderTest.class
 })
 public class OthersSuite {
 }